@@ -0,0 +1,104 @@
+package fr.gondyb.datadog.website.monitor.alarm;
+
+import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.pipeline.SinkEventBus;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the handling of an availability by the {@link AlarmDetector}, either when the alarm of the
+ * website stays as it is, the usual case, or when every availability crosses the threshold, producing an alarm event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AlarmDetectorBenchmark {
+
+    /**
+     * The availability percentage under which an alarm is triggered.
+     */
+    private static final int THRESHOLD = 80;
+
+    /**
+     * The number of monitored websites.
+     */
+    @Param({"100", "1000", "10000"})
+    public int siteCount;
+
+    /**
+     * The detector.
+     */
+    private AlarmDetector detector;
+
+    /**
+     * The bus receiving the alarms.
+     */
+    private SinkEventBus eventBus;
+
+    /**
+     * An availability above the threshold for each website.
+     */
+    private AvailabilityCalculatedEvent[] stableEvents;
+
+    /**
+     * An availability under the threshold for each website, followed by one above it for each website.
+     */
+    private AvailabilityCalculatedEvent[] crossingEvents;
+
+    /**
+     * The index of the next stable event.
+     */
+    private int nextStable = 0;
+
+    /**
+     * The index of the next crossing event.
+     */
+    private int nextCrossing = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SiteRegistry registry = new SiteRegistry(siteCount);
+        eventBus = new SinkEventBus();
+        detector = new AlarmDetector(THRESHOLD, eventBus, registry);
+        stableEvents = new AvailabilityCalculatedEvent[siteCount];
+        crossingEvents = new AvailabilityCalculatedEvent[siteCount * 2];
+        for (int i = 0; i < siteCount; i++) {
+            URI uri = URI.create("http://site-" + i + ".test");
+            int siteId = registry.register(uri);
+            stableEvents[i] = new AvailabilityCalculatedEvent(siteId, uri, 99.5);
+            crossingEvents[i] = new AvailabilityCalculatedEvent(siteId, uri, THRESHOLD - 20);
+            crossingEvents[siteCount + i] = new AvailabilityCalculatedEvent(siteId, uri, THRESHOLD + 10);
+        }
+    }
+
+    @Benchmark
+    public Object handleStableAvailability() {
+        detector.handleAvailabilityCalculatedEvent(stableEvents[nextStable]);
+        nextStable = (nextStable + 1) % stableEvents.length;
+        return eventBus.getLast();
+    }
+
+    @Benchmark
+    public Object handleCrossingAvailability() {
+        detector.handleAvailabilityCalculatedEvent(crossingEvents[nextCrossing]);
+        nextCrossing = (nextCrossing + 1) % crossingEvents.length;
+        return eventBus.getLast();
+    }
+}
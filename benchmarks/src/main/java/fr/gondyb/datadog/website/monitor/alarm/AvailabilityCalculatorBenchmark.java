@@ -0,0 +1,108 @@
+package fr.gondyb.datadog.website.monitor.alarm;
+
+import fr.gondyb.datadog.website.monitor.pipeline.SinkEventBus;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the handling of a check by the {@link AvailabilityCalculator}: the check is recorded in the
+ * window of its website, and the new availability is produced. The checks go through the websites in turn, as they
+ * would with every website checked at the same rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityCalculatorBenchmark {
+
+    /**
+     * The delay in milliseconds between two checks of a website.
+     */
+    private static final long DELAY = TimeUnit.SECONDS.toMillis(1);
+
+    /**
+     * The number of monitored websites.
+     */
+    @Param({"100", "1000", "10000"})
+    public int siteCount;
+
+    /**
+     * The availability period in milliseconds: the default 2 minutes, or one hour.
+     */
+    @Param({"120000", "3600000"})
+    public long historyDuration;
+
+    /**
+     * The calculator.
+     */
+    private AvailabilityCalculator calculator;
+
+    /**
+     * The bus receiving the availabilities.
+     */
+    private SinkEventBus eventBus;
+
+    /**
+     * An up check of each website.
+     */
+    private WebsiteUpEvent[] upEvents;
+
+    /**
+     * A down check of each website.
+     */
+    private WebsiteDownEvent[] downEvents;
+
+    /**
+     * The index of the website checked next.
+     */
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SiteRegistry registry = new SiteRegistry(siteCount);
+        eventBus = new SinkEventBus();
+        calculator = new AvailabilityCalculator(historyDuration, eventBus, registry);
+        upEvents = new WebsiteUpEvent[siteCount];
+        downEvents = new WebsiteDownEvent[siteCount];
+        for (int i = 0; i < siteCount; i++) {
+            URI uri = URI.create("http://site-" + i + ".test");
+            int siteId = registry.register(uri);
+            calculator.handleStartMonitoring(new StartMonitorEvent(siteId, uri, DELAY));
+            upEvents[i] = new WebsiteUpEvent(120, 200, siteId, uri);
+            downEvents[i] = new WebsiteDownEvent(siteId, uri);
+        }
+    }
+
+    @Benchmark
+    public Object handleWebsiteUp() {
+        calculator.handleWebsiteUp(upEvents[next]);
+        next = (next + 1) % siteCount;
+        return eventBus.getLast();
+    }
+
+    @Benchmark
+    public Object handlerNewDownLog() {
+        calculator.handlerNewDownLog(downEvents[next]);
+        next = (next + 1) % siteCount;
+        return eventBus.getLast();
+    }
+}
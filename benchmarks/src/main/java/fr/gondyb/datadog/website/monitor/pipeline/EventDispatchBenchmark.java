@@ -0,0 +1,113 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This benchmark measures the dispatch of an event to its subscriber, either by a synchronous {@link EventBus}, or by
+ * the {@link PipelineEventBus}, one partition per core. With the pipeline, the measured rate is the rate at which the
+ * partitions dispatch the events, the producer waiting for free slots once the queues are full.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventDispatchBenchmark {
+
+    /**
+     * The number of websites the events belong to.
+     */
+    @Param({"100", "10000"})
+    public int siteCount;
+
+    /**
+     * The bus dispatching the events: "guava" for a synchronous {@link EventBus}, "pipeline" for a {@link
+     * PipelineEventBus}.
+     */
+    @Param({"guava", "pipeline"})
+    public String bus;
+
+    /**
+     * The bus.
+     */
+    private EventBus eventBus;
+
+    /**
+     * The subscriber receiving the events.
+     */
+    private final CountingSubscriber subscriber = new CountingSubscriber();
+
+    /**
+     * An event of each website.
+     */
+    private AvailabilityCalculatedEvent[] events;
+
+    /**
+     * The index of the next event.
+     */
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        eventBus = "pipeline".equals(bus)
+                ? new PipelineEventBus("benchmark", Runtime.getRuntime().availableProcessors(), 4096, 256)
+                : new EventBus("benchmark");
+        eventBus.register(subscriber);
+        events = new AvailabilityCalculatedEvent[siteCount];
+        for (int siteId = 0; siteId < siteCount; siteId++) {
+            events[siteId] = new AvailabilityCalculatedEvent(siteId, URI.create("http://site-" + siteId + ".test"), 99.5);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (eventBus instanceof PipelineEventBus) {
+            ((PipelineEventBus) eventBus).shutdown();
+        }
+    }
+
+    @Benchmark
+    public void post() {
+        eventBus.post(events[next]);
+        next = (next + 1) % siteCount;
+    }
+
+    /**
+     * This class counts the events it receives, from any thread.
+     */
+    public static class CountingSubscriber {
+
+        /**
+         * The number of events received.
+         */
+        private final LongAdder received = new LongAdder();
+
+        /**
+         * @param event An event dispatched by the bus
+         */
+        @Subscribe
+        public void handleAvailabilityCalculatedEvent(AvailabilityCalculatedEvent event) {
+            received.increment();
+        }
+    }
+}
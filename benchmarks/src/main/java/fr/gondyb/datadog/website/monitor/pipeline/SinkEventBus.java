@@ -0,0 +1,41 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import com.google.common.eventbus.EventBus;
+
+/**
+ * This class is an {@link EventBus} without subscribers, keeping the last event posted, so that a benchmark measures
+ * the component producing the events, and not the ones receiving them. Keeping the event also prevents the JIT from
+ * eliminating its allocation.
+ */
+public class SinkEventBus extends EventBus {
+
+    /**
+     * The number of events posted.
+     */
+    private long posted = 0;
+
+    /**
+     * The last event posted, null if none was.
+     */
+    private Object last = null;
+
+    @Override
+    public void post(Object event) {
+        posted++;
+        last = event;
+    }
+
+    /**
+     * @return The number of events posted
+     */
+    public long getPosted() {
+        return posted;
+    }
+
+    /**
+     * @return The last event posted, null if none was
+     */
+    public Object getLast() {
+        return last;
+    }
+}
@@ -0,0 +1,87 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the record of a check in a {@link RollupStore} holding a full hour of checks, ten per
+ * second, with a stable latency. This is the worst case of a window keeping its raw latencies, where evicting the
+ * minimum or maximum latency rescans the 36 000 checks of the window on nearly every check: the buckets merge their
+ * minimum and maximum instead, so a record costs the same whatever the window and the latencies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RollupStoreBenchmark {
+
+    /**
+     * The delay in milliseconds between two checks.
+     */
+    private static final long DELAY = 100;
+
+    /**
+     * The stable latency in milliseconds of every check.
+     */
+    private static final long LATENCY = 120;
+
+    /**
+     * The store of the checks.
+     */
+    private RollupStore store;
+
+    /**
+     * The bucket the hourly window is queried into.
+     */
+    private final RollupBucket bucket = new RollupBucket();
+
+    /**
+     * The time in milliseconds since the epoch of the latest check.
+     */
+    private long timestamp;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        store = new RollupStore(DELAY);
+        timestamp = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1);
+        for (long check = 0; check < TimeUnit.HOURS.toMillis(1) / DELAY; check++) {
+            timestamp += DELAY;
+            store.addUp(timestamp, LATENCY, 200, ProbeTimings.UNKNOWN);
+        }
+    }
+
+    /**
+     * The record of a check, the oldest check of the hourly window sliding out as time goes.
+     */
+    @Benchmark
+    public RollupStore recordCheck() {
+        timestamp += DELAY;
+        store.addUp(timestamp, LATENCY, 200, ProbeTimings.UNKNOWN);
+        return store;
+    }
+
+    /**
+     * The record of a check followed by the query of the minimum and maximum latency of the hourly window.
+     */
+    @Benchmark
+    public long recordCheckAndQueryMinMax() {
+        timestamp += DELAY;
+        store.addUp(timestamp, LATENCY, 200, ProbeTimings.UNKNOWN);
+        store.query(timestamp, TimeUnit.HOURS.toMillis(1), bucket);
+        return bucket.minLatency + bucket.maxLatency;
+    }
+}
@@ -0,0 +1,137 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.pipeline.SinkEventBus;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures a tick of a {@link StatisticsAggregator}: the query of the window of every changed website,
+ * computing its latencies, percentiles and response codes, and the production of the {@link
+ * fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent}. The stores hold one hour of checks,
+ * one every 10 seconds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsAggregatorBenchmark {
+
+    /**
+     * The delay in milliseconds between two checks of a website.
+     */
+    private static final long DELAY = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * The duration in milliseconds of the checks recorded in every store.
+     */
+    private static final long HISTORY = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * The number of monitored websites.
+     */
+    @Param({"100", "1000", "10000"})
+    public int siteCount;
+
+    /**
+     * The window of the aggregator, in milliseconds: 10 minutes or one hour.
+     */
+    @Param({"600000", "3600000"})
+    public long window;
+
+    /**
+     * The store of the checks of each website.
+     */
+    private RollupStore[] stores;
+
+    /**
+     * The aggregator, running its ticks on the calling thread.
+     */
+    private StatisticsAggregator aggregator;
+
+    /**
+     * The bus receiving the statistics.
+     */
+    private SinkEventBus eventBus;
+
+    /**
+     * The bucket a single website is queried into.
+     */
+    private final RollupBucket bucket = new RollupBucket();
+
+    /**
+     * The identifier of the website queried next by {@link #queryWindow()}.
+     */
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SiteRegistry registry = new SiteRegistry(siteCount);
+        stores = new RollupStore[siteCount];
+        double[] availabilities = new double[siteCount];
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < siteCount; i++) {
+            int siteId = registry.register(URI.create("http://site-" + i + ".test"));
+            RollupStore store = new RollupStore(DELAY);
+            for (long check = HISTORY / DELAY; check >= 0; check--) {
+                // One check in 20 is down, one in 7 is a server error
+                long timestamp = now - check * DELAY;
+                if (check % 20 == 0) {
+                    store.addDown(timestamp);
+                } else {
+                    store.addUp(timestamp, 50 + (check * 37 + i) % 450, check % 7 == 0 ? 503 : 200, ProbeTimings.UNKNOWN);
+                }
+            }
+            stores[siteId] = store;
+            availabilities[siteId] = 95;
+        }
+
+        // The ticks are run by the benchmark only, never by the scheduler
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(100, TimeUnit.MILLISECONDS, 64, 1);
+        scheduler.shutdown();
+        eventBus = new SinkEventBus();
+        aggregator = new StatisticsAggregator(window, DELAY, stores, availabilities, registry, eventBus,
+                ShardedExecutor.inline(), scheduler);
+    }
+
+    /**
+     * A tick after every website changed: the worst case, reached when the websites are checked more often than the
+     * statistics are pushed.
+     */
+    @Benchmark
+    public Object pushStatistics() {
+        for (int siteId = 0; siteId < siteCount; siteId++) {
+            aggregator.markChanged(siteId);
+        }
+        aggregator.pushStatistics();
+        return eventBus.getLast();
+    }
+
+    /**
+     * The query of the window of a single website, the inner loop of a tick.
+     */
+    @Benchmark
+    public RollupBucket queryWindow() {
+        stores[next].query(System.currentTimeMillis(), window, bucket);
+        next = (next + 1) % siteCount;
+        return bucket;
+    }
+}
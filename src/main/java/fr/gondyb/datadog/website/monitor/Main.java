@@ -1,45 +1,221 @@
 package fr.gondyb.datadog.website.monitor;
 
-import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import fr.gondyb.datadog.website.monitor.alarm.AlarmDetector;
 import fr.gondyb.datadog.website.monitor.alarm.AvailabilityCalculator;
+import fr.gondyb.datadog.website.monitor.api.MetricsExporter;
+import fr.gondyb.datadog.website.monitor.api.QueryServer;
+import fr.gondyb.datadog.website.monitor.api.StatisticsSnapshots;
+import fr.gondyb.datadog.website.monitor.config.TargetConfig;
+import fr.gondyb.datadog.website.monitor.config.TargetsDiff;
+import fr.gondyb.datadog.website.monitor.config.TargetsFile;
+import fr.gondyb.datadog.website.monitor.config.TargetsReconciler;
+import fr.gondyb.datadog.website.monitor.config.TargetsWatcher;
+import fr.gondyb.datadog.website.monitor.headless.HeadlessMonitor;
+import fr.gondyb.datadog.website.monitor.persistence.ProbeLog;
+import fr.gondyb.datadog.website.monitor.persistence.RecoveredState;
+import fr.gondyb.datadog.website.monitor.pipeline.PipelineEventBus;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
 import fr.gondyb.datadog.website.monitor.statistics.StatisticsManager;
 import fr.gondyb.datadog.website.monitor.ui.MainScreen;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeHttpClient;
 import fr.gondyb.datadog.website.monitor.watchdog.WatchdogsManager;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.LogManager;
 
 /**
  * This class handles the application start, and the initialisation of different modules.
  */
 public class Main {
-    public static void main(String[] args) throws IOException {
+    public static void main(String[] args) throws IOException, InterruptedException {
 
         int AVAILABILITY_THRESHOLD = 80; // Default availability threshold
         long AVAILABILITY_PERIOD = TimeUnit.MINUTES.toMillis(2); // Default availability check duration
+        int MAX_SITES = 65536; // Maximum number of monitored websites, sizing the per-website state arrays
+        long FIRST_ROUND_TIMEOUT = TimeUnit.SECONDS.toMillis(10); // Maximum wait for the first checks in headless mode
+        long LOG_RETENTION = TimeUnit.HOURS.toMillis(1); // Longest statistics window, rebuilt from the probe log
 
-        EventBus eventBus = new EventBus("default");
+        // The headless mode runs without a terminal, the websites are read from a targets file
+        List<String> arguments = Arrays.asList(args);
+        boolean headless = arguments.contains("--headless");
+        int targetsIndex = arguments.indexOf("--targets");
+        if (headless && (targetsIndex == -1 || targetsIndex + 1 >= args.length)) {
+            System.err.println("Usage: java -jar wsmonitor.jar --headless --targets <file> [--data <dir>] [--api [<host>:]<port>]");
+            System.exit(1);
+        }
+        Path targetsPath = targetsIndex == -1 ? null : Paths.get(args[targetsIndex + 1]);
+        List<TargetConfig> targets = Collections.emptyList();
+        if (targetsPath != null) {
+            try {
+                targets = TargetsFile.read(targetsPath);
+            } catch (IllegalArgumentException e) {
+                System.err.println(args[targetsIndex + 1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+        }
 
-        WatchdogsManager watchdogsManager = new WatchdogsManager(eventBus);
+        // Every website is owned by one shard: its events are dispatched, and its state mutated, by a single thread
+        PipelineEventBus eventBus = new PipelineEventBus("default", Runtime.getRuntime().availableProcessors(), 4096, 256);
+
+        SiteRegistry registry = new SiteRegistry(MAX_SITES, eventBus);
+        eventBus.register(registry);
+
+        // With a data directory, the checks are logged, and the windows rebuilt from the log after a restart
+        int dataIndex = arguments.indexOf("--data");
+        RecoveredState recovered = RecoveredState.empty();
+        if (dataIndex != -1 && dataIndex + 1 < args.length) {
+            Path dataPath = Paths.get(args[dataIndex + 1]);
+            long recoveryStart = System.nanoTime();
+            ProbeLog probeLog = new ProbeLog(dataPath, LOG_RETENTION, registry);
+            recovered = probeLog.recover(System.currentTimeMillis(), AVAILABILITY_PERIOD);
+            long recoveryMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - recoveryStart);
+            System.out.println("Recovered " + recovered.getRecordCount() + " checks of " + recovered.getSiteCount()
+                    + " websites from " + dataPath + " in " + recoveryMillis + "ms");
+            eventBus.register(probeLog);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    probeLog.close();
+                } catch (IOException e) {
+                    System.err.println("The probe log was not closed: " + e.getMessage());
+                }
+            }));
+        }
+
+        // One timing wheel with 10ms ticks drives every periodic task of the application
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(
+                10,
+                TimeUnit.MILLISECONDS,
+                512,
+                Runtime.getRuntime().availableProcessors()
+        );
+
+        // Every website check goes through the same HTTP client, keeping connections alive as long as the JDK client
+        // does (-Djdk.httpclient.keepalive.timeout), and giving up on a connection after 10 seconds. The blocking
+        // phase-timed probes run on their own bounded pool, the probes beyond its queue being reported as down
+        ProbeHttpClient probeHttpClient = new ProbeHttpClient(
+                Executors.newFixedThreadPool(
+                        Runtime.getRuntime().availableProcessors(),
+                        new ThreadFactoryBuilder().setNameFormat("http-client-%d").setDaemon(true).build()
+                ),
+                new ThreadPoolExecutor(
+                        4 * Runtime.getRuntime().availableProcessors(),
+                        4 * Runtime.getRuntime().availableProcessors(),
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(1024),
+                        new ThreadFactoryBuilder().setNameFormat("blocking-probe-%d").setDaemon(true).build()
+                ),
+                6,
+                ProbeHttpClient.configuredKeepAlive(),
+                Duration.ofSeconds(10)
+        );
+
+        WatchdogsManager watchdogsManager = new WatchdogsManager(eventBus, eventBus, scheduler, probeHttpClient, registry);
         eventBus.register(watchdogsManager);
 
         AvailabilityCalculator availabilityCalculator = new AvailabilityCalculator(
                 AVAILABILITY_PERIOD,
-                eventBus
+                eventBus,
+                registry,
+                recovered
         );
         eventBus.register(availabilityCalculator);
 
-        AlarmDetector detector = new AlarmDetector(AVAILABILITY_THRESHOLD, eventBus);
+        AlarmDetector detector = new AlarmDetector(AVAILABILITY_THRESHOLD, eventBus, registry);
         eventBus.register(detector);
 
-        StatisticsManager statisticsManager = new StatisticsManager(eventBus);
+        StatisticsManager statisticsManager = new StatisticsManager(eventBus, eventBus, scheduler, registry, recovered);
         eventBus.register(statisticsManager);
 
-        MainScreen mainScreen = new MainScreen(eventBus);
+        // With an API address, the latest statistics and alarms are served as JSON, from snapshots cached per update,
+        // and as OpenMetrics for scrapers
+        int apiIndex = arguments.indexOf("--api");
+        if (apiIndex != -1 && apiIndex + 1 < args.length) {
+            StatisticsSnapshots snapshots = new StatisticsSnapshots(registry);
+            eventBus.register(snapshots);
+            MetricsExporter metrics = new MetricsExporter(registry);
+            eventBus.register(metrics);
+            String address = args[apiIndex + 1];
+            int separator = address.lastIndexOf(':');
+            QueryServer queryServer = new QueryServer(separator == -1
+                    ? new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address))
+                    : new InetSocketAddress(address.substring(0, separator), Integer.parseInt(address.substring(separator + 1))),
+                    snapshots,
+                    metrics);
+            queryServer.start();
+            System.out.println("Serving the statistics on http://" + queryServer.getAddress().getHostString()
+                    + ":" + queryServer.getAddress().getPort() + "/statistics/10m");
+        }
+
+        // The monitored websites follow the edits of the targets file. The terminal belongs to the UI, thus the reloads
+        // are only reported in headless mode
+        PrintStream reloadReports = headless ? System.err : new PrintStream(OutputStream.nullOutputStream());
+        TargetsReconciler reconciler = new TargetsReconciler(eventBus, registry, reloadReports);
+
+        if (headless) {
+            HeadlessMonitor headlessMonitor = new HeadlessMonitor(watchdogsManager, System.out, registry);
+            eventBus.register(headlessMonitor);
+
+            long startNanos = System.nanoTime();
+            List<TargetConfig> started = reconciler.apply(targets).getAdded();
+            watchTargets(targetsPath, reconciler, reloadReports);
+            boolean firstRound = headlessMonitor.awaitFirstRound(started, FIRST_ROUND_TIMEOUT);
+            long startupMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            System.out.println(firstRound
+                    ? "Monitoring " + started.size() + " websites, first probe round issued in " + startupMillis + "ms"
+                    : "Monitoring " + started.size() + " websites, first probe round not issued after " + startupMillis + "ms");
+
+            new CountDownLatch(1).await(); // Run until the process is stopped
+            return;
+        }
+
+        // The failures logged by the event bus, the scheduler and the probe log would be written over the UI
+        LogManager.getLogManager().reset();
+
+        MainScreen mainScreen = new MainScreen(eventBus, registry, scheduler);
         eventBus.register(mainScreen);
+        reconciler.apply(targets);
+        watchTargets(targetsPath, reconciler, reloadReports);
 
         mainScreen.start(); // Start the UI
         System.exit(0); // Exit everything once its done
     }
+
+    /**
+     * This function applies every edit of the targets file, if any, without restarting.
+     *
+     * @param targetsPath The targets file, or null
+     * @param reconciler  The reconciler applying the new versions
+     * @param reports     The stream every reload, and every version that cannot be read, is reported to
+     * @throws IOException When the file cannot be watched
+     */
+    private static void watchTargets(Path targetsPath, TargetsReconciler reconciler, PrintStream reports) throws IOException {
+        if (targetsPath == null) {
+            return;
+        }
+        new TargetsWatcher(targetsPath, targets -> {
+            TargetsDiff diff = reconciler.apply(targets);
+            if (!diff.isEmpty()) {
+                reports.println(targetsPath + " reloaded: " + diff.getAdded().size() + " added, "
+                        + diff.getRemoved().size() + " removed, " + diff.getChanged().size() + " changed");
+            }
+        }, reports).start();
+    }
 }
@@ -5,10 +5,8 @@ import com.google.common.eventbus.Subscribe;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
 import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
-
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
 
 /**
  * This class triggers and untrigger alarms when it receives a {@link AvailabilityCalculatedEvent}.
@@ -28,20 +26,23 @@ public class AlarmDetector {
     private final EventBus eventBus;
 
     /**
-     * A map storing which alarms are triggered or not. The key is a website URL and the value is a boolean that is trus if the alarm is triggere.
+     * An array storing which alarms are triggered or not. The index is a website identifier and the value is true if
+     * the alarm is triggered. A boolean array, unlike a {@link java.util.BitSet}, lets each website be updated by its
+     * own thread without sharing a word with other websites.
      */
-    Map<URI, Boolean> triggeredAlarms;
+    final boolean[] triggeredAlarms;
 
     /**
      * Class constructor
      *
      * @param availabilityThreshold The thershold availability percentage after which an alarm should be triggered
      * @param eventBus              The global EventBus
+     * @param registry              The registry of the monitored websites
      */
-    public AlarmDetector(int availabilityThreshold, EventBus eventBus) {
+    public AlarmDetector(int availabilityThreshold, EventBus eventBus, SiteRegistry registry) {
         this.availabilityThreshold = availabilityThreshold;
         this.eventBus = eventBus;
-        this.triggeredAlarms = new HashMap<>();
+        this.triggeredAlarms = new boolean[registry.capacity()];
     }
 
     /**
@@ -52,22 +53,32 @@ public class AlarmDetector {
      */
     @Subscribe
     public void handleAvailabilityCalculatedEvent(AvailabilityCalculatedEvent event) {
-        URI uri = event.getUri();
+        int siteId = event.getSiteId();
 
         double percentage = event.getAvailability();
 
-        boolean alreadyTriggered = triggeredAlarms.getOrDefault(uri, false);
+        boolean alreadyTriggered = triggeredAlarms[siteId];
 
         if (percentage < availabilityThreshold && !alreadyTriggered) {
-            eventBus.post(new AlarmTriggeredEvent(uri, percentage));
-            triggeredAlarms.put(uri, true);
+            eventBus.post(new AlarmTriggeredEvent(siteId, event.getUri(), percentage, System.currentTimeMillis()));
+            triggeredAlarms[siteId] = true;
             return;
         }
 
         if (percentage >= availabilityThreshold && alreadyTriggered) {
-            eventBus.post(new AlarmStoppedEvent(uri, percentage));
-            triggeredAlarms.put(uri, false);
+            eventBus.post(new AlarmStoppedEvent(siteId, event.getUri(), percentage, System.currentTimeMillis()));
+            triggeredAlarms[siteId] = false;
         }
 
     }
+
+    /**
+     * This subscriber forgets the alarm of a website that is not monitored anymore.
+     *
+     * @param event The {@link StopMonitorEvent} of the website
+     */
+    @Subscribe
+    public void handleStopMonitorEvent(StopMonitorEvent event) {
+        triggeredAlarms[event.getSiteId()] = false;
+    }
 }
@@ -3,23 +3,24 @@ package fr.gondyb.datadog.website.monitor.alarm;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.persistence.RecoveredState;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.statistics.MemoryFootprint;
+import fr.gondyb.datadog.website.monitor.ui.event.ReconfigureMonitorEvent;
 import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
 
 import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * This class computes the availability of a website, when a {@link WebsiteUpEvent} or a {@link WebsiteDownEvent} is
- * received, for a given period {@code historyDration}. It produces {@link AvailabilityCalculatedEvent}.
+ * received, for a given period {@code historyDuration}. It produces {@link AvailabilityCalculatedEvent}.
  * <p>
- * The computation stores the number of {@link WebsiteUpEvent} and {@link WebsiteDownEvent} in counters for the given
- * period, then computes the availability percentage from these counters. A circular queue is used to know which
- * latencies are expiring when adding a new one. When the {@code latencies} queue is full, the class removes the last
- * element from the counters, so that the availability percentage only represents the {@code historyDuration}.
+ * Each website has a single {@link AvailabilityWindow}, indexed by the website identifier, storing one bit per check
+ * during the given period, along with the number of up and down checks. When the window is full, the oldest check
+ * expires from the counters, so that the availability percentage only represents the {@code historyDuration}.
  */
 public class AvailabilityCalculator {
 
@@ -29,135 +30,164 @@ public class AvailabilityCalculator {
     private final long historyDuration;
 
     /**
-     * A circular queue for each website, keeping track of latencies during {@code historyDuration}.
+     * The availability state of each website, indexed by website identifier, keeping track of the checks during
+     * {@code historyDuration}.
      */
-    private final Map<URI, CircularFifoQueue<Long>> latencies;
+    private final AvailabilityWindow[] windows;
 
     /**
-     * A counter for each website, keeping track of {@link WebsiteUpEvent}.
+     * The global EventBus.
      */
-    private final Map<URI, Integer> upCounters;
+    private final EventBus eventBus;
 
     /**
-     * A counter for each website, keeping track of {@link WebsiteDownEvent}.
+     * The registry of the monitored websites.
      */
-    private final Map<URI, Integer> downCounters;
+    private final SiteRegistry registry;
 
     /**
-     * The global EventBus.
+     * The outcomes rebuilt from the probe log at startup, claimed when their website starts to be monitored.
      */
-    private final EventBus eventBus;
+    private final RecoveredState recovered;
+
+    /**
+     * Class constructor, without any recovered state
+     *
+     * @param historyDuration   The duration in milliseconds for which the availability is stored
+     * @param eventBus          The global EventBus
+     * @param registry          The registry of the monitored websites
+     */
+    public AvailabilityCalculator(long historyDuration, EventBus eventBus, SiteRegistry registry) {
+        this(historyDuration, eventBus, registry, RecoveredState.empty());
+    }
 
     /**
      * Class constructor
      *
      * @param historyDuration   The duration in milliseconds for which the availability is stored
      * @param eventBus          The global EventBus
+     * @param registry          The registry of the monitored websites
+     * @param recovered         The outcomes rebuilt from the probe log at startup
      */
-    public AvailabilityCalculator(long historyDuration, EventBus eventBus) {
+    public AvailabilityCalculator(long historyDuration, EventBus eventBus, SiteRegistry registry, RecoveredState recovered) {
         this.historyDuration = historyDuration;
         this.eventBus = eventBus;
+        this.registry = registry;
+        this.recovered = recovered;
 
-        this.latencies = new HashMap<>();
-        this.upCounters = new HashMap<>();
-        this.downCounters = new HashMap<>();
+        this.windows = new AvailabilityWindow[registry.capacity()];
     }
 
     /**
-     * A subscriber of the {@link StartMonitorEvent}. This handler creates a queue for the given website and stores it.
+     * A subscriber of the {@link StartMonitorEvent}. This handler creates a window for the given website and stores it.
+     * The outcomes rebuilt from the probe log are recorded first, and their availability published, so that an alarm
+     * is raised without waiting for a whole period after a restart.
      *
      * @param event The event containing the website's URI
      */
     @Subscribe
     public void handleStartMonitoring(StartMonitorEvent event) {
-        this.latencies.put(event.getUri(), new CircularFifoQueue<>((int) (historyDuration / event.getDelay())));
+        AvailabilityWindow window = new AvailabilityWindow((int) (historyDuration / event.getDelay()));
+        this.windows[event.getSiteId()] = window;
+
+        boolean[] outcomes = recovered.takeOutcomes(event.getUri(), registry.nameOf(event.getSiteId()));
+        for (boolean up : outcomes) {
+            window.record(up);
+        }
+        if (outcomes.length > 0) {
+            publishAvailability(event.getSiteId(), event.getUri(), window);
+        }
+    }
+
+    /**
+     * A subscriber of the {@link ReconfigureMonitorEvent}. This handler resizes the window of the website to the new
+     * check delay, keeping its most recent checks.
+     *
+     * @param event The event containing the website's new delay
+     */
+    @Subscribe
+    public void handleReconfigureMonitoring(ReconfigureMonitorEvent event) {
+        AvailabilityWindow window = windows[event.getSiteId()];
+        int capacity = (int) (historyDuration / event.getDelay());
+        this.windows[event.getSiteId()] = window == null
+                ? new AvailabilityWindow(capacity)
+                : window.resized(capacity);
     }
 
     /**
-     * A subscriber of the {@link WebsiteUpEvent}. This handler stores the new latency, and asks to compute the new
+     * A subscriber of the {@link StopMonitorEvent}. This handler drops the window of the website.
+     *
+     * @param event The event containing the website's URI
+     */
+    @Subscribe
+    public void handleStopMonitoring(StopMonitorEvent event) {
+        this.windows[event.getSiteId()] = null;
+    }
+
+    /**
+     * A subscriber of the {@link WebsiteUpEvent}. This handler records an up check, and asks to compute the new
      * availability.
      *
-     * @param event The event containing the latency and the website's URI
+     * @param event The event containing the website's URI
      */
     @Subscribe
     public void handleWebsiteUp(WebsiteUpEvent event) {
-        CircularFifoQueue<Long> siteLatencies = latencies.get(event.getUri());
-
-        if (siteLatencies.isAtFullCapacity()) {
-            removeLastCounter(event.getUri());
+        AvailabilityWindow window = windows[event.getSiteId()];
+        if (window == null) {
+            // A check sent before the website was stopped
+            return;
         }
+        window.record(true);
 
-        Integer upCounter = this.upCounters.getOrDefault(event.getUri(), 0);
-        this.upCounters.put(event.getUri(), upCounter + 1);
-
-        siteLatencies.add(event.getResponseTime());
-        latencies.put(event.getUri(), siteLatencies);
-
-        publishAvailability(event.getUri());
+        publishAvailability(event.getSiteId(), event.getUri(), window);
     }
 
     /**
-     * A subscriber of the {@link WebsiteDownEvent}. This handler stores a down latency (-1), and asks to compute the
-     * new availability.
+     * A subscriber of the {@link WebsiteDownEvent}. This handler records a down check, and asks to compute the new
+     * availability.
      *
      * @param event The event containing the website's URI
      */
     @Subscribe
     public void handlerNewDownLog(WebsiteDownEvent event) {
-        CircularFifoQueue<Long> siteLatencies = latencies.get(event.getUri());
-
-        if (siteLatencies.isAtFullCapacity()) {
-            removeLastCounter(event.getUri());
+        AvailabilityWindow window = windows[event.getSiteId()];
+        if (window == null) {
+            // A check sent before the website was stopped
+            return;
         }
+        window.record(false);
 
-        Integer downCounter = this.downCounters.getOrDefault(event.getUri(), 0);
-        this.downCounters.put(event.getUri(), downCounter + 1);
-
-        siteLatencies.add((long) -1);
-        latencies.put(event.getUri(), siteLatencies);
-
-        publishAvailability(event.getUri());
-
+        publishAvailability(event.getSiteId(), event.getUri(), window);
     }
 
     /**
-     * This function removes the last latency from the queue. It also removes it from the appropriate counter, so that
-     * the counters represent the amount of UP and DOWN events from the queue.
+     * This function estimates the heap size of the availability state of a website: its window and its slot in the
+     * windows array.
      *
-     * @param uri   The website's URI
+     * @param siteId The identifier of the website
+     * @return The estimated heap size in bytes, 0 if the website is not monitored
      */
-    private void removeLastCounter(URI uri) {
-        CircularFifoQueue<Long> siteLatencies = latencies.getOrDefault(
-                uri,
-                new CircularFifoQueue<>()
-        );
-        Long removedLatency = siteLatencies.remove();
-        if (removedLatency == -1) {
-            Integer counter = downCounters.get(uri);
-            counter -= 1;
-            downCounters.put(uri, counter);
-        } else {
-            Integer counter = upCounters.get(uri);
-            counter -= 1;
-            upCounters.put(uri, counter);
+    public long footprintBytes(int siteId) {
+        AvailabilityWindow window = windows[siteId];
+        if (window == null) {
+            return 0;
         }
+        return window.footprintBytes() + MemoryFootprint.REFERENCE;
     }
 
     /**
      * This function produces {@link AvailabilityCalculatedEvent} with the availability percentage from the last
      * {@code historyDuration}.
      *
-     * @param uri   The website's URI.
+     * @param siteId The identifier of the website
+     * @param uri    The website's URI.
+     * @param window The availability state of the website
      */
-    private void publishAvailability(URI uri) {
-        Integer upCounter = upCounters.getOrDefault(uri, 0);
-        Integer downCounter = downCounters.getOrDefault(uri, 0);
-
-        double percentage = (double) upCounter * 100 / (upCounter + downCounter);
-
+    private void publishAvailability(int siteId, URI uri, AvailabilityWindow window) {
         AvailabilityCalculatedEvent event = new AvailabilityCalculatedEvent(
+                siteId,
                 uri,
-                percentage
+                window.availability()
         );
         eventBus.post(event);
     }
@@ -0,0 +1,105 @@
+package fr.gondyb.datadog.website.monitor.alarm;
+
+import fr.gondyb.datadog.website.monitor.statistics.MemoryFootprint;
+
+/**
+ * This class is the availability state of a website: the outcome of its last checks, one bit per check (1 when the
+ * website was up), in a fixed-capacity ring. The number of up and down checks in the ring is kept up to date on every
+ * check, thus the availability is computed without scanning the ring.
+ */
+class AvailabilityWindow {
+
+    /**
+     * The outcomes of the checks, 64 per word.
+     */
+    private final long[] bits;
+
+    /**
+     * The maximum number of checks in the ring.
+     */
+    private final int capacity;
+
+    /**
+     * The index of the bit written by the next check.
+     */
+    private int next = 0;
+
+    /**
+     * The number of checks in the ring.
+     */
+    private int size = 0;
+
+    /**
+     * The number of up checks in the ring.
+     */
+    private int upCount = 0;
+
+    /**
+     * Class constructor
+     *
+     * @param capacity The maximum number of checks in the ring
+     */
+    AvailabilityWindow(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        this.bits = new long[(this.capacity + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    /**
+     * This function records the outcome of a check. When the ring is full, the oldest outcome expires.
+     *
+     * @param up True if the website was up
+     */
+    void record(boolean up) {
+        int word = next >>> 6;
+        long mask = 1L << next;
+
+        if (size == capacity) {
+            if ((bits[word] & mask) != 0) {
+                upCount--;
+            }
+        } else {
+            size++;
+        }
+
+        if (up) {
+            bits[word] |= mask;
+            upCount++;
+        } else {
+            bits[word] &= ~mask;
+        }
+
+        next = next + 1 == capacity ? 0 : next + 1;
+    }
+
+    /**
+     * @return The availability percentage of the checks in the ring
+     */
+    double availability() {
+        return (double) upCount * 100 / size;
+    }
+
+    /**
+     * @return The estimated heap size of the state in bytes
+     */
+    long footprintBytes() {
+        return MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + MemoryFootprint.REFERENCE + 4 * Integer.BYTES)
+                + MemoryFootprint.ofArray(bits.length, Long.BYTES);
+    }
+
+    /**
+     * This function copies the state into a window of another capacity. The most recent outcomes are kept, in order.
+     *
+     * @param newCapacity The maximum number of checks in the new ring
+     * @return The new window
+     */
+    AvailabilityWindow resized(int newCapacity) {
+        AvailabilityWindow window = new AvailabilityWindow(newCapacity);
+        int kept = Math.min(size, window.capacity);
+        int index = Math.floorMod(next - kept, capacity);
+        for (int i = 0; i < kept; i++) {
+            window.record((bits[index >>> 6] & (1L << index)) != 0);
+            index = index + 1 == capacity ? 0 : index + 1;
+        }
+        return window;
+    }
+}
@@ -1,5 +1,6 @@
 package fr.gondyb.datadog.website.monitor.alarm.event;
 
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
 import lombok.Getter;
 
 import java.net.URI;
@@ -8,25 +9,39 @@ import java.net.URI;
  * This immutable class is an event informing that the availability alert for a website was triggered.
  */
 @Getter
-public class AlarmTriggeredEvent {
+public class AlarmTriggeredEvent implements SiteEvent {
     /**
      * The availability percentage when the alert was triggered.
      */
     private final double availabilityPercentage;
 
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
     /**
      * The URI of the website concerned with the alert.
      */
     private final URI uri;
 
+    /**
+     * The time in milliseconds since the epoch when the alert triggered.
+     */
+    private final long timestamp;
+
     /**
      * Class constructor
      *
+     * @param siteId                 The identifier of the website in the site registry
      * @param uri                    The URI of the website concerned with the alert
      * @param availabilityPercentage THe availability percentage when the alert was triggered
+     * @param timestamp              The time in milliseconds since the epoch when the alert triggered
      */
-    public AlarmTriggeredEvent(URI uri, double availabilityPercentage) {
+    public AlarmTriggeredEvent(int siteId, URI uri, double availabilityPercentage, long timestamp) {
+        this.siteId = siteId;
         this.uri = uri;
         this.availabilityPercentage = availabilityPercentage;
+        this.timestamp = timestamp;
     }
 }
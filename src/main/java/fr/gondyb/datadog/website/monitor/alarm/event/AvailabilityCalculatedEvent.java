@@ -1,5 +1,6 @@
 package fr.gondyb.datadog.website.monitor.alarm.event;
 
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
 import lombok.Getter;
 
 import java.net.URI;
@@ -8,7 +9,12 @@ import java.net.URI;
  * This immutable class is an event informing that the availability for a website was calculated.
  */
 @Getter
-public class AvailabilityCalculatedEvent {
+public class AvailabilityCalculatedEvent implements SiteEvent {
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
     /**
      * The URI of the website concerned with the availability.
      */
@@ -22,10 +28,12 @@ public class AvailabilityCalculatedEvent {
     /**
      * Class constructor
      *
+     * @param siteId       The identifier of the website in the site registry
      * @param uri          The URI of the website concerned with the availability
      * @param availability The availability percentage calculated
      */
-    public AvailabilityCalculatedEvent(URI uri, double availability) {
+    public AvailabilityCalculatedEvent(int siteId, URI uri, double availability) {
+        this.siteId = siteId;
         this.uri = uri;
         this.availability = availability;
     }
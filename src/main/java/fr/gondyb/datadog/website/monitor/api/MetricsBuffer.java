@@ -0,0 +1,137 @@
+package fr.gondyb.datadog.website.monitor.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class is a growable buffer of UTF-8 text, reused from one scrape to the next. The numbers are written digit by
+ * digit, without going through strings, so that rendering the metrics of every website allocates nothing once the
+ * buffer has grown to the size of a scrape. This class is not thread-safe.
+ */
+class MetricsBuffer {
+
+    /**
+     * The text written so far.
+     */
+    private byte[] bytes = new byte[1 << 16];
+
+    /**
+     * The number of bytes written so far.
+     */
+    private int length = 0;
+
+    /**
+     * A scratch area for the digits of a number, written from the end.
+     */
+    private final byte[] digits = new byte[20];
+
+    /**
+     * This function empties the buffer, keeping its capacity.
+     */
+    void reset() {
+        length = 0;
+    }
+
+    /**
+     * @return The number of bytes written since the buffer was reset
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * @param text Bytes to append
+     * @return This buffer
+     */
+    MetricsBuffer append(byte[] text) {
+        ensureCapacity(text.length);
+        System.arraycopy(text, 0, bytes, length, text.length);
+        length += text.length;
+        return this;
+    }
+
+    /**
+     * @param c An ASCII character to append
+     * @return This buffer
+     */
+    MetricsBuffer append(char c) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * @param value An integer to append in decimal
+     * @return This buffer
+     */
+    MetricsBuffer append(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int start = digits.length;
+        do {
+            digits[--start] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        ensureCapacity(digits.length - start);
+        System.arraycopy(digits, start, bytes, length, digits.length - start);
+        length += digits.length - start;
+        return this;
+    }
+
+    /**
+     * @param value A number to append in decimal, rounded to 6 decimals
+     * @return This buffer
+     */
+    MetricsBuffer appendDecimal(double value) {
+        long millionths = Math.round(value * 1_000_000);
+        if (millionths < 0) {
+            append('-');
+            millionths = -millionths;
+        }
+        append(millionths / 1_000_000).append('.');
+        ensureCapacity(6);
+        long decimals = millionths % 1_000_000;
+        for (int i = 5; i >= 0; i--) {
+            bytes[length + i] = (byte) ('0' + decimals % 10);
+            decimals /= 10;
+        }
+        length += 6;
+        return this;
+    }
+
+    /**
+     * This function writes the content of the buffer.
+     *
+     * @param output The stream to write to
+     * @throws IOException When the stream cannot be written
+     */
+    void writeTo(OutputStream output) throws IOException {
+        output.write(bytes, 0, length);
+    }
+
+    /**
+     * @return A copy of the content of the buffer, as text
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * This function grows the buffer if it cannot fit more bytes.
+     *
+     * @param more The number of bytes about to be appended
+     */
+    private void ensureCapacity(int more) {
+        if (length + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+        }
+    }
+}
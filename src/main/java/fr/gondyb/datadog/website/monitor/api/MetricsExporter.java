@@ -0,0 +1,464 @@
+package fr.gondyb.datadog.website.monitor.api;
+
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class exposes the availability, latencies, response code categories and alarm of every website in the
+ * OpenMetrics text format, for a Prometheus-compatible scraper.
+ * <p>
+ * The latest values received from the events are kept in primitive arrays indexed by website identifier, and rendered
+ * on each scrape into a {@link MetricsBuffer} reused from one scrape to the next. The labels of a website are encoded
+ * once, on its first scrape, and encoded again if its identifier was reused by another website. Thus a scrape only
+ * copies bytes and formats numbers, however many websites are monitored.
+ * <p>
+ * The values are written by the event handlers and read by the scrapes without synchronization: a scrape may mix the
+ * values of two consecutive updates of a website, which is harmless for metrics.
+ */
+public class MetricsExporter {
+
+    /**
+     * The value of the availability of a website that was not computed yet.
+     */
+    private static final double UNKNOWN = Double.NaN;
+
+    /**
+     * The quantile labels of the latency percentiles of {@link StatisticsUpdatedEvent#getLatencyPercentile(int, int)}.
+     */
+    private static final byte[][] QUANTILES = {
+            ascii(",quantile=\"0.5\"} "),
+            ascii(",quantile=\"0.9\"} "),
+            ascii(",quantile=\"0.99\"} "),
+            ascii(",quantile=\"0.999\"} ")
+    };
+
+    /**
+     * The class labels of the response code categories, indexed by category.
+     */
+    private static final byte[][] CLASSES = {
+            null,
+            ascii(",class=\"1xx\"} "),
+            ascii(",class=\"2xx\"} "),
+            ascii(",class=\"3xx\"} "),
+            ascii(",class=\"4xx\"} "),
+            ascii(",class=\"5xx\"} ")
+    };
+
+    /**
+     * The availability family: its metadata, then the start of a sample.
+     */
+    private static final byte[][] AVAILABILITY = family("wsmonitor_availability_ratio", "gauge",
+            "The availability of the website over the availability period.");
+
+    /**
+     * The alarm family: its metadata, then the start of a sample.
+     */
+    private static final byte[][] ALARM = family("wsmonitor_alarm_triggered", "gauge",
+            "Whether the availability alarm of the website is triggered.");
+
+    /**
+     * The latency percentiles family: its metadata, then the start of a sample.
+     */
+    private static final byte[][] LATENCY = family("wsmonitor_latency_seconds", "summary",
+            "The latency percentiles of the website over the window.");
+
+    /**
+     * The average, minimum and maximum latency families: their metadata, then the start of a sample.
+     */
+    private static final byte[][][] LATENCY_GAUGES = {
+            family("wsmonitor_latency_average_seconds", "gauge", "The average latency of the website over the window."),
+            family("wsmonitor_latency_min_seconds", "gauge", "The minimum latency of the website over the window."),
+            family("wsmonitor_latency_max_seconds", "gauge", "The maximum latency of the website over the window.")
+    };
+
+    /**
+     * The responses family: its metadata, then the start of a sample.
+     */
+    private static final byte[][] RESPONSES = family("wsmonitor_window_responses", "gauge",
+            "The number of responses of the website over the window, per class.");
+
+    /**
+     * The end of the labels of a sample, before its value.
+     */
+    private static final byte[] END_OF_LABELS = ascii("} ");
+
+    /**
+     * The end of the exposition.
+     */
+    private static final byte[] END_OF_METRICS = ascii("# EOF\n");
+
+    /**
+     * The registry of the monitored websites.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The availability of every website as a ratio, {@link #UNKNOWN} if it was not computed yet.
+     */
+    private final double[] availabilities;
+
+    /**
+     * Whether the alarm of every website is triggered.
+     */
+    private final boolean[] alarms;
+
+    /**
+     * The encoded {@code uri} and {@code name} labels of every website, null until its first scrape.
+     */
+    private final AtomicReferenceArray<Label> labels;
+
+    /**
+     * The statistics of every window, in the order of their first update. The array is replaced when a window is
+     * added.
+     */
+    private volatile WindowMetrics[] windows = new WindowMetrics[0];
+
+    /**
+     * Class constructor
+     *
+     * @param registry The registry of the monitored websites
+     */
+    public MetricsExporter(SiteRegistry registry) {
+        this.registry = registry;
+        this.availabilities = new double[registry.capacity()];
+        Arrays.fill(this.availabilities, UNKNOWN);
+        this.alarms = new boolean[registry.capacity()];
+        this.labels = new AtomicReferenceArray<>(registry.capacity());
+    }
+
+    /**
+     * This subscriber keeps the latest availability of a website.
+     *
+     * @param event The availability of the website
+     */
+    @Subscribe
+    public void handleAvailabilityCalculatedEvent(AvailabilityCalculatedEvent event) {
+        availabilities[event.getSiteId()] = event.getAvailability() / 100;
+    }
+
+    /**
+     * This subscriber keeps the latest statistics of the websites of the event.
+     *
+     * @param event The statistics of the changed websites over a window
+     */
+    @Subscribe
+    public void handleStatisticsUpdatedEvent(StatisticsUpdatedEvent event) {
+        WindowMetrics window = windowOf(event.getSavedStatisticsDuration());
+        for (int i = 0; i < event.getSiteCount(); i++) {
+            int siteId = event.getSiteIds()[i];
+            window.averageLatencies[siteId] = event.getAverageLatencies()[i];
+            window.minLatencies[siteId] = event.getMinLatencies()[i];
+            window.maxLatencies[siteId] = event.getMaxLatencies()[i];
+            for (int q = 0; q < QUANTILES.length; q++) {
+                window.latencyPercentiles[siteId * QUANTILES.length + q] = event.getLatencyPercentile(i, q);
+            }
+            for (int category = 1; category < CLASSES.length; category++) {
+                window.responseCodeHits[siteId * CLASSES.length + category] = event.getResponseCodeHits(i, category);
+            }
+            window.updated[siteId] = true;
+        }
+    }
+
+    /**
+     * This subscriber marks the alarm of a website as triggered.
+     *
+     * @param event The triggered alarm
+     */
+    @Subscribe
+    public void handleAlarmTriggeredEvent(AlarmTriggeredEvent event) {
+        alarms[event.getSiteId()] = true;
+    }
+
+    /**
+     * This subscriber marks the alarm of a website as stopped.
+     *
+     * @param event The stopped alarm
+     */
+    @Subscribe
+    public void handleAlarmStoppedEvent(AlarmStoppedEvent event) {
+        alarms[event.getSiteId()] = false;
+    }
+
+    /**
+     * This subscriber forgets the metrics of a website that is not monitored anymore.
+     *
+     * @param event The {@link StopMonitorEvent} of the website
+     */
+    @Subscribe
+    public void handleStopMonitorEvent(StopMonitorEvent event) {
+        int siteId = event.getSiteId();
+        availabilities[siteId] = UNKNOWN;
+        alarms[siteId] = false;
+        labels.set(siteId, null);
+        for (WindowMetrics window : windows) {
+            window.updated[siteId] = false;
+        }
+    }
+
+    /**
+     * This function renders the metrics of every website. Several scrapes may render at once, each into its own
+     * buffer.
+     *
+     * @param buffer The buffer to render into, reset first
+     * @return The buffer containing the metrics
+     */
+    MetricsBuffer render(MetricsBuffer buffer) {
+        buffer.reset();
+        int idLimit = registry.idLimit();
+        WindowMetrics[] windows = this.windows;
+
+        buffer.append(AVAILABILITY[0]);
+        for (int siteId = 0; siteId < idLimit; siteId++) {
+            double availability = availabilities[siteId];
+            byte[] label = labelOf(siteId);
+            if (label != null && !Double.isNaN(availability)) {
+                buffer.append(AVAILABILITY[1]).append(label).append(END_OF_LABELS).appendDecimal(availability).append('\n');
+            }
+        }
+
+        buffer.append(ALARM[0]);
+        for (int siteId = 0; siteId < idLimit; siteId++) {
+            byte[] label = labelOf(siteId);
+            if (label != null) {
+                buffer.append(ALARM[1]).append(label).append(END_OF_LABELS).append(alarms[siteId] ? 1 : 0).append('\n');
+            }
+        }
+
+        buffer.append(LATENCY[0]);
+        for (WindowMetrics window : windows) {
+            for (int siteId = 0; siteId < idLimit; siteId++) {
+                byte[] label = checkedLabelOf(window, siteId);
+                if (label == null) {
+                    continue;
+                }
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    long percentile = window.latencyPercentiles[siteId * QUANTILES.length + q];
+                    if (percentile != -1) {
+                        buffer.append(LATENCY[1]).append(label).append(window.label).append(QUANTILES[q])
+                                .appendDecimal(percentile / 1000.0).append('\n');
+                    }
+                }
+            }
+        }
+
+        for (int kind = 0; kind < LATENCY_GAUGES.length; kind++) {
+            buffer.append(LATENCY_GAUGES[kind][0]);
+            for (WindowMetrics window : windows) {
+                long[] latencies = kind == 0 ? window.averageLatencies : kind == 1 ? window.minLatencies : window.maxLatencies;
+                for (int siteId = 0; siteId < idLimit; siteId++) {
+                    byte[] label = checkedLabelOf(window, siteId);
+                    if (label != null) {
+                        buffer.append(LATENCY_GAUGES[kind][1]).append(label).append(window.label).append(END_OF_LABELS)
+                                .appendDecimal(latencies[siteId] / 1000.0).append('\n');
+                    }
+                }
+            }
+        }
+
+        buffer.append(RESPONSES[0]);
+        for (WindowMetrics window : windows) {
+            for (int siteId = 0; siteId < idLimit; siteId++) {
+                byte[] label = labelOf(siteId);
+                if (label == null || !window.updated[siteId]) {
+                    continue;
+                }
+                for (int category = 1; category < CLASSES.length; category++) {
+                    buffer.append(RESPONSES[1]).append(label).append(window.label).append(CLASSES[category])
+                            .append(window.responseCodeHits[siteId * CLASSES.length + category]).append('\n');
+                }
+            }
+        }
+
+        return buffer.append(END_OF_METRICS);
+    }
+
+    /**
+     * @param window The statistics of a window
+     * @param siteId The identifier of the website in the site registry
+     * @return The labels of the website if it was checked during the window, or null
+     */
+    private byte[] checkedLabelOf(WindowMetrics window, int siteId) {
+        if (!window.updated[siteId] || window.averageLatencies[siteId] == -1) {
+            return null;
+        }
+        return labelOf(siteId);
+    }
+
+    /**
+     * This function returns the cached labels of a website, if they were encoded for the website currently holding
+     * its identifier: a scrape racing the {@link StopMonitorEvent} of a website may cache its labels after they were
+     * dropped.
+     *
+     * @param siteId The identifier of the website in the site registry
+     * @return The encoded {@code uri} and {@code name} labels of the website, or null if it is not monitored
+     */
+    private byte[] labelOf(int siteId) {
+        URI uri = registry.uriOf(siteId);
+        if (uri == null) {
+            return null;
+        }
+        String name = registry.nameOf(siteId);
+        Label label = labels.get(siteId);
+        if (label != null && label.uri == uri && label.name == name) {
+            return label.bytes;
+        }
+        byte[] bytes = ("uri=\"" + escape(uri.toString()) + "\",name=\"" + escape(name == null ? "" : name) + "\"")
+                .getBytes(StandardCharsets.UTF_8);
+        labels.set(siteId, new Label(uri, name, bytes));
+        return bytes;
+    }
+
+    /**
+     * @param duration The duration in milliseconds of a window
+     * @return The statistics of the window, added if it is new
+     */
+    private WindowMetrics windowOf(long duration) {
+        for (WindowMetrics window : windows) {
+            if (window.duration == duration) {
+                return window;
+            }
+        }
+        WindowMetrics window = new WindowMetrics(duration, registry.capacity());
+        WindowMetrics[] added = Arrays.copyOf(windows, windows.length + 1);
+        added[added.length - 1] = window;
+        windows = added;
+        return window;
+    }
+
+    /**
+     * @param value A label value
+     * @return The value escaped as in the OpenMetrics format
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * @param name The name of a metric family
+     * @param type The type of the family
+     * @param help The description of the family
+     * @return The metadata of the family, then the start of its samples up to the opening brace of their labels
+     */
+    private static byte[][] family(String name, String type, String help) {
+        return new byte[][]{
+                ascii("# TYPE " + name + " " + type + "\n# HELP " + name + " " + help + "\n"),
+                ascii(name + "{")
+        };
+    }
+
+    /**
+     * @param text An ASCII text
+     * @return Its bytes
+     */
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * This class contains the encoded labels of a website, and the URI and name they were encoded from.
+     */
+    private static class Label {
+
+        /**
+         * The URI of the website, as registered.
+         */
+        final URI uri;
+
+        /**
+         * The name of the website, as registered.
+         */
+        final String name;
+
+        /**
+         * The encoded {@code uri} and {@code name} labels.
+         */
+        final byte[] bytes;
+
+        /**
+         * Class constructor
+         *
+         * @param uri   The URI of the website, as registered
+         * @param name  The name of the website, as registered
+         * @param bytes The encoded {@code uri} and {@code name} labels
+         */
+        Label(URI uri, String name, byte[] bytes) {
+            this.uri = uri;
+            this.name = name;
+            this.bytes = bytes;
+        }
+    }
+
+    /**
+     * This class contains the latest statistics of every website over a window.
+     */
+    private static class WindowMetrics {
+
+        /**
+         * The duration in milliseconds of the window.
+         */
+        final long duration;
+
+        /**
+         * The encoded {@code window} label.
+         */
+        final byte[] label;
+
+        /**
+         * Whether the statistics of every website were updated since it started to be monitored.
+         */
+        final boolean[] updated;
+
+        /**
+         * The average latency in milliseconds of every website, -1 if it was not checked.
+         */
+        final long[] averageLatencies;
+
+        /**
+         * The minimum latency in milliseconds of every website.
+         */
+        final long[] minLatencies;
+
+        /**
+         * The maximum latency in milliseconds of every website.
+         */
+        final long[] maxLatencies;
+
+        /**
+         * The latency percentiles in milliseconds of every website, flattened like in {@link StatisticsUpdatedEvent}.
+         */
+        final long[] latencyPercentiles;
+
+        /**
+         * The number of hits per response code category of every website, flattened like in
+         * {@link StatisticsUpdatedEvent}.
+         */
+        final int[] responseCodeHits;
+
+        /**
+         * Class constructor
+         *
+         * @param duration The duration in milliseconds of the window
+         * @param capacity The maximum number of websites
+         */
+        WindowMetrics(long duration, int capacity) {
+            this.duration = duration;
+            this.label = ascii(",window=\"" + StatisticsSnapshots.windowName(duration) + "\"");
+            this.updated = new boolean[capacity];
+            this.averageLatencies = new long[capacity];
+            this.minLatencies = new long[capacity];
+            this.maxLatencies = new long[capacity];
+            this.latencyPercentiles = new long[capacity * QUANTILES.length];
+            this.responseCodeHits = new int[capacity * CLASSES.length];
+        }
+    }
+}
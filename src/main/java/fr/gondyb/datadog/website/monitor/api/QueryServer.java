@@ -0,0 +1,195 @@
+package fr.gondyb.datadog.website.monitor.api;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class serves the statistics and alarms kept by a {@link StatisticsSnapshots} over HTTP, as JSON, and the
+ * metrics of a {@link MetricsExporter}:
+ * <ul>
+ * <li>{@code GET /statistics/<window>}: the statistics of every website over a window (Ex: 10m or 1h)</li>
+ * <li>{@code GET /statistics/<window>/<id>}: the statistics of one website over a window</li>
+ * <li>{@code GET /alarms}: the triggered alarms</li>
+ * <li>{@code GET /metrics}: the metrics of every website, in the OpenMetrics text format</li>
+ * </ul>
+ * The responses are served from the snapshots as they are, by a small pool of threads of its own.
+ */
+public class QueryServer implements AutoCloseable {
+
+    /**
+     * The number of threads serving the requests.
+     */
+    private static final int THREADS = 2;
+
+    /**
+     * The content type of the metrics.
+     */
+    private static final String OPENMETRICS_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    /**
+     * The HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * The threads serving the requests.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The statistics and alarms served.
+     */
+    private final StatisticsSnapshots snapshots;
+
+    /**
+     * The metrics served.
+     */
+    private final MetricsExporter metrics;
+
+    /**
+     * The buffers the metrics are rendered into, reused by the next scrapes once sent. There are at most as many as
+     * threads serving the requests.
+     */
+    private final Queue<MetricsBuffer> metricsBuffers = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Class constructor, the server is not started.
+     *
+     * @param address   The address to listen on
+     * @param snapshots The statistics and alarms served
+     * @param metrics   The metrics served
+     * @throws IOException When the address cannot be bound
+     */
+    public QueryServer(InetSocketAddress address, StatisticsSnapshots snapshots, MetricsExporter metrics) throws IOException {
+        this.snapshots = snapshots;
+        this.metrics = metrics;
+        this.server = HttpServer.create(address, 0);
+        this.executor = Executors.newFixedThreadPool(
+                THREADS,
+                new ThreadFactoryBuilder().setNameFormat("query-server-%d").setDaemon(true).build()
+        );
+        this.server.setExecutor(executor);
+        this.server.createContext("/statistics/", this::handleStatistics);
+        this.server.createContext("/alarms", exchange -> respond(exchange, snapshots.getAlarms()));
+        this.server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * This function starts serving the requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * @return The address the server listens on
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * This function stops the server, without waiting for the requests in progress.
+     */
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * This function serves the statistics of a window, of every website or of one of them.
+     *
+     * @param exchange The request and its response
+     * @throws IOException When the response cannot be sent
+     */
+    private void handleStatistics(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().substring("/statistics/".length()).split("/");
+        if (path.length == 1) {
+            respond(exchange, snapshots.getStatistics(path[0]));
+            return;
+        }
+        int siteId;
+        try {
+            siteId = path.length == 2 ? Integer.parseInt(path[1]) : -1;
+        } catch (NumberFormatException e) {
+            siteId = -1;
+        }
+        respond(exchange, snapshots.getStatistics(path[0], siteId));
+    }
+
+    /**
+     * This function renders the metrics and sends them. Every scrape renders into a buffer of its own, thus a slow
+     * scraper does not hold back the others.
+     *
+     * @param exchange The request and its response
+     * @throws IOException When the response cannot be sent
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", OPENMETRICS_TYPE);
+            MetricsBuffer buffer = metricsBuffers.poll();
+            if (buffer == null) {
+                buffer = new MetricsBuffer();
+            }
+            try {
+                metrics.render(buffer);
+                exchange.sendResponseHeaders(200, buffer.length());
+                try (OutputStream body = exchange.getResponseBody()) {
+                    buffer.writeTo(body);
+                }
+            } finally {
+                metricsBuffers.offer(buffer);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * This function sends a JSON document, or a 404 error if there is none.
+     *
+     * @param exchange The request and its response
+     * @param document The JSON document, or null
+     * @throws IOException When the response cannot be sent
+     */
+    private static void respond(HttpExchange exchange, byte[] document) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (document == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if (method.equals("HEAD")) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, document.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(document);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package fr.gondyb.datadog.website.monitor.api;
+
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class keeps the latest statistics and alarms of every website serialized as JSON, for the {@link QueryServer}.
+ * <p>
+ * Every {@link StatisticsUpdatedEvent} serializes the websites of its batch once, and every alarm event the alarm of
+ * its website. The documents listing every website are assembled from these parts on the first request following a
+ * change, then served as is until the next change. Thus the requests, however frequent, never query the statistics
+ * stores nor serialize anything twice.
+ */
+public class StatisticsSnapshots {
+
+    /**
+     * The names of the latency percentiles of {@link StatisticsUpdatedEvent#getLatencyPercentile(int, int)}.
+     */
+    private static final String[] PERCENTILES = {"p50", "p90", "p99", "p999"};
+
+    /**
+     * The names of the phases of {@link ProbeTimings#getPhaseNanos(int)}.
+     */
+    private static final String[] PHASES = {"dnsNanos", "connectNanos", "tlsNanos", "firstByteNanos", "bodyNanos"};
+
+    /**
+     * The registry of the monitored websites.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The statistics of every window, indexed by its name (Ex: 10m).
+     */
+    private final Map<String, Snapshot> windows = new ConcurrentHashMap<>();
+
+    /**
+     * The triggered alarms.
+     */
+    private final Snapshot alarms;
+
+    /**
+     * Class constructor
+     *
+     * @param registry The registry of the monitored websites
+     */
+    public StatisticsSnapshots(SiteRegistry registry) {
+        this.registry = registry;
+        this.alarms = new Snapshot(registry.capacity(), "{\"alarms\":[");
+    }
+
+    /**
+     * This subscriber serializes the statistics of the websites of the event.
+     *
+     * @param event The statistics of the changed websites over a window
+     */
+    @Subscribe
+    public void handleStatisticsUpdatedEvent(StatisticsUpdatedEvent event) {
+        String window = windowName(event.getSavedStatisticsDuration());
+        Snapshot snapshot = windows.computeIfAbsent(window, name ->
+                new Snapshot(registry.capacity(), "{\"window\":\"" + name + "\",\"sites\":["));
+
+        StringBuilder json = new StringBuilder(512);
+        for (int i = 0; i < event.getSiteCount(); i++) {
+            int siteId = event.getSiteIds()[i];
+            URI uri = registry.uriOf(siteId);
+            if (uri == null) {
+                // The website was removed after the statistics were computed
+                continue;
+            }
+            json.setLength(0);
+            appendSite(json, siteId, uri);
+            json.append(",\"minLatency\":").append(event.getMinLatencies()[i])
+                    .append(",\"maxLatency\":").append(event.getMaxLatencies()[i])
+                    .append(",\"averageLatency\":");
+            appendOptional(json, event.getAverageLatencies()[i]);
+            json.append(",\"percentiles\":{");
+            for (int q = 0; q < PERCENTILES.length; q++) {
+                json.append(q == 0 ? "\"" : ",\"").append(PERCENTILES[q]).append("\":");
+                appendOptional(json, event.getLatencyPercentile(i, q));
+            }
+            json.append("},\"availability\":");
+            appendPercentage(json, event.getAvailabilities()[i]);
+            json.append(",\"responseCodes\":{");
+            for (int category = 1; category < StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES; category++) {
+                json.append(category == 1 ? "\"" : ",\"").append(category).append("xx\":")
+                        .append(event.getResponseCodeHits(i, category));
+            }
+            json.append("},\"timings\":{");
+            for (int phase = 0; phase < ProbeTimings.PHASES; phase++) {
+                json.append(phase == 0 ? "\"" : ",\"").append(PHASES[phase]).append("\":");
+                appendOptional(json, event.getAverageTiming(i, phase));
+            }
+            json.append("}}");
+            snapshot.set(siteId, json);
+        }
+    }
+
+    /**
+     * This subscriber adds the alarm of a website to the triggered alarms.
+     *
+     * @param event The triggered alarm
+     */
+    @Subscribe
+    public void handleAlarmTriggeredEvent(AlarmTriggeredEvent event) {
+        StringBuilder json = new StringBuilder(256);
+        appendSite(json, event.getSiteId(), event.getUri());
+        json.append(",\"availability\":");
+        appendPercentage(json, event.getAvailabilityPercentage());
+        json.append('}');
+        alarms.set(event.getSiteId(), json);
+    }
+
+    /**
+     * This subscriber removes the alarm of a website from the triggered alarms.
+     *
+     * @param event The stopped alarm
+     */
+    @Subscribe
+    public void handleAlarmStoppedEvent(AlarmStoppedEvent event) {
+        alarms.set(event.getSiteId(), null);
+    }
+
+    /**
+     * This subscriber forgets the statistics and alarm of a website that is not monitored anymore.
+     *
+     * @param event The {@link StopMonitorEvent} of the website
+     */
+    @Subscribe
+    public void handleStopMonitorEvent(StopMonitorEvent event) {
+        alarms.set(event.getSiteId(), null);
+        for (Snapshot snapshot : windows.values()) {
+            snapshot.set(event.getSiteId(), null);
+        }
+    }
+
+    /**
+     * @param window The name of a window (Ex: 10m)
+     * @return The statistics of every website over the window, or null if the window has no statistics yet
+     */
+    public byte[] getStatistics(String window) {
+        Snapshot snapshot = windows.get(window);
+        return snapshot == null ? null : snapshot.document(registry.idLimit());
+    }
+
+    /**
+     * @param window The name of a window (Ex: 10m)
+     * @param siteId The identifier of the website in the site registry
+     * @return The statistics of the website over the window, or null if it has none
+     */
+    public byte[] getStatistics(String window, int siteId) {
+        Snapshot snapshot = windows.get(window);
+        return snapshot == null || siteId < 0 || siteId >= registry.capacity() ? null : snapshot.parts.get(siteId);
+    }
+
+    /**
+     * @return The triggered alarms
+     */
+    public byte[] getAlarms() {
+        return alarms.document(registry.idLimit());
+    }
+
+    /**
+     * @param duration A duration in milliseconds
+     * @return The name of a window of this duration (Ex: 10m for 10 minutes)
+     */
+    static String windowName(long duration) {
+        if (duration % TimeUnit.HOURS.toMillis(1) == 0) {
+            return TimeUnit.MILLISECONDS.toHours(duration) + "h";
+        }
+        if (duration % TimeUnit.MINUTES.toMillis(1) == 0) {
+            return TimeUnit.MILLISECONDS.toMinutes(duration) + "m";
+        }
+        return TimeUnit.MILLISECONDS.toSeconds(duration) + "s";
+    }
+
+    /**
+     * This function opens the JSON object of a website with its identifier, URI and name.
+     *
+     * @param json   The JSON being written
+     * @param siteId The identifier of the website in the site registry
+     * @param uri    The URI of the website
+     */
+    private void appendSite(StringBuilder json, int siteId, URI uri) {
+        String name = registry.nameOf(siteId);
+        json.append("{\"id\":").append(siteId).append(",\"uri\":");
+        appendString(json, uri.toString());
+        json.append(",\"name\":");
+        appendString(json, name == null ? "" : name);
+    }
+
+    /**
+     * @param json  The JSON being written
+     * @param value A value, -1 if it is unknown
+     */
+    private static void appendOptional(StringBuilder json, long value) {
+        if (value == -1) {
+            json.append("null");
+        } else {
+            json.append(value);
+        }
+    }
+
+    /**
+     * @param json       The JSON being written
+     * @param percentage A percentage, -1 if it is unknown
+     */
+    private static void appendPercentage(StringBuilder json, double percentage) {
+        if (percentage == -1) {
+            json.append("null");
+        } else {
+            json.append(Math.round(percentage * 10) / 10.0);
+        }
+    }
+
+    /**
+     * @param json  The JSON being written
+     * @param value A string, escaped as a JSON string
+     */
+    private static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * This class is a JSON array with one part per website, assembled into a document when it is requested after a
+     * change. The parts are written by the event handlers and read by the server threads.
+     */
+    private static class Snapshot {
+
+        /**
+         * The serialized part of every website, indexed by its identifier, null if it has none.
+         */
+        private final AtomicReferenceArray<byte[]> parts;
+
+        /**
+         * The start of the document, before the parts.
+         */
+        private final byte[] header;
+
+        /**
+         * True if a part changed since the document was assembled.
+         */
+        private volatile boolean changed = true;
+
+        /**
+         * The latest assembled document.
+         */
+        private byte[] document;
+
+        /**
+         * Class constructor
+         *
+         * @param capacity The maximum number of websites
+         * @param header   The start of the document, before the parts
+         */
+        Snapshot(int capacity, String header) {
+            this.parts = new AtomicReferenceArray<>(capacity);
+            this.header = header.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @param siteId The identifier of the website in the site registry
+         * @param part   The serialized part of the website, or null to remove it
+         */
+        void set(int siteId, CharSequence part) {
+            parts.set(siteId, part == null ? null : part.toString().getBytes(StandardCharsets.UTF_8));
+            changed = true;
+        }
+
+        /**
+         * @param idLimit The upper bound of the website identifiers
+         * @return The document with the parts of every website, assembled if a part changed since the previous call
+         */
+        synchronized byte[] document(int idLimit) {
+            if (!changed) {
+                return document;
+            }
+            // Cleared before reading the parts, so that a part set in the meantime is not missed by the next call
+            changed = false;
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.writeBytes(header);
+            boolean first = true;
+            for (int siteId = 0; siteId < idLimit; siteId++) {
+                byte[] part = parts.get(siteId);
+                if (part != null) {
+                    if (!first) {
+                        output.write(',');
+                    }
+                    output.writeBytes(part);
+                    first = false;
+                }
+            }
+            output.writeBytes("]}".getBytes(StandardCharsets.UTF_8));
+            document = output.toByteArray();
+            return document;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * This immutable class contains the configuration of a website to monitor, as read from a targets file.
+ */
+@Getter
+@EqualsAndHashCode
+public class TargetConfig {
+    /**
+     * The URI of the website to monitor.
+     */
+    private final URI uri;
+
+    /**
+     * The delay in milliseconds at which the website will be checked.
+     */
+    private final long interval;
+
+    /**
+     * The settings of the requests used to check the website, including their timeout.
+     */
+    private final ProbeSettings probeSettings;
+
+    /**
+     * The name of the monitor, empty by default, telling apart several monitors of the same URI.
+     */
+    private final String name;
+
+    /**
+     * Class constructor of an unnamed monitor
+     *
+     * @param uri           The URI of the website to monitor
+     * @param interval      The delay in milliseconds at which the website will be checked
+     * @param probeSettings The settings of the requests used to check the website, including their timeout
+     */
+    public TargetConfig(URI uri, long interval, ProbeSettings probeSettings) {
+        this(uri, interval, probeSettings, "");
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param uri           The URI of the website to monitor
+     * @param interval      The delay in milliseconds at which the website will be checked
+     * @param probeSettings The settings of the requests used to check the website, including their timeout
+     * @param name          The name of the monitor, empty by default
+     */
+    public TargetConfig(URI uri, long interval, ProbeSettings probeSettings, String name) {
+        this.uri = uri;
+        this.interval = interval;
+        this.probeSettings = probeSettings;
+        this.name = name;
+    }
+
+    /**
+     * @return The identity of the monitor: its URI and name
+     */
+    public Map.Entry<URI, String> getKey() {
+        return Map.entry(uri, name);
+    }
+}
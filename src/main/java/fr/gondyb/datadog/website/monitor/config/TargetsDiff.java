@@ -0,0 +1,85 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import lombok.Getter;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This immutable class is the difference between two versions of a targets file: the websites added, the websites
+ * removed, and the websites whose interval, timeout or mode changed. A website is identified by its URI and name. The
+ * websites left unchanged are not part of it.
+ */
+@Getter
+public class TargetsDiff {
+    /**
+     * The websites of the new version only.
+     */
+    private final List<TargetConfig> added;
+
+    /**
+     * The websites of the old version only, with the configuration of the old version.
+     */
+    private final List<TargetConfig> removed;
+
+    /**
+     * The websites of both versions, with the configuration of the new version.
+     */
+    private final List<TargetConfig> changed;
+
+    /**
+     * Class constructor
+     *
+     * @param added   The websites of the new version only
+     * @param removed The websites of the old version only, with the configuration of the old version
+     * @param changed The websites of both versions, with the configuration of the new version
+     */
+    public TargetsDiff(List<TargetConfig> added, List<TargetConfig> removed, List<TargetConfig> changed) {
+        this.added = List.copyOf(added);
+        this.removed = List.copyOf(removed);
+        this.changed = List.copyOf(changed);
+    }
+
+    /**
+     * This function computes the difference between the current websites and a new version of the targets file.
+     *
+     * @param current The current websites, by URI and name
+     * @param next    The websites of the new version
+     * @return The difference
+     */
+    public static TargetsDiff between(Map<Map.Entry<URI, String>, TargetConfig> current, List<TargetConfig> next) {
+        List<TargetConfig> added = new ArrayList<>();
+        List<TargetConfig> changed = new ArrayList<>();
+        Set<Map.Entry<URI, String>> kept = new HashSet<>();
+
+        for (TargetConfig target : next) {
+            TargetConfig previous = current.get(target.getKey());
+            if (previous == null) {
+                added.add(target);
+            } else if (!previous.equals(target)) {
+                changed.add(target);
+            }
+            kept.add(target.getKey());
+        }
+
+        List<TargetConfig> removed = new ArrayList<>();
+        for (TargetConfig target : current.values()) {
+            if (!kept.contains(target.getKey())) {
+                removed.add(target);
+            }
+        }
+
+        return new TargetsDiff(added, removed, changed);
+    }
+
+    /**
+     * @return True if both versions contain the same websites, with the same configuration
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+}
@@ -0,0 +1,150 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeMode;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This class reads the websites to monitor from a targets file. Every line describes a website, with fields separated
+ * by spaces or tabs:
+ * <pre>
+ * # url                      interval(ms)  timeout(ms)  mode              name
+ * https://www.datadoghq.com/ 1000          800          HEAD
+ * https://www.datadoghq.com/ 5000          800          HEAD              team-b
+ * https://example.com/big    5000          2000         GET_CAPPED:65536
+ * </pre>
+ * The timeout, the mode and the name are optional: the checks then time out after the interval, use
+ * {@link ProbeMode#GET_DISCARD}, and the monitor is unnamed. The mode is one of {@link ProbeMode}, followed by the byte
+ * cap for {@link ProbeMode#GET_CAPPED}. A {@code +phases} suffix measures every phase of the checks. A URI can be
+ * listed several times with different names. Blank lines and lines starting with {@code #} are ignored.
+ */
+public final class TargetsFile {
+
+    /**
+     * The suffix of the mode enabling the measure of every phase of the checks.
+     */
+    private static final String PHASES_SUFFIX = "+phases";
+
+    private TargetsFile() {
+    }
+
+    /**
+     * This function reads a targets file.
+     *
+     * @param path The path of the file
+     * @return The websites to monitor, in the file order
+     * @throws IOException              When the file cannot be read
+     * @throws IllegalArgumentException When a line is malformed, or a website is listed twice with the same name
+     */
+    public static List<TargetConfig> read(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            List<TargetConfig> targets = new ArrayList<>();
+            Set<Map.Entry<URI, String>> keys = new HashSet<>();
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                TargetConfig target = parseLine(line, lineNumber);
+                if (!keys.add(target.getKey())) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + target.getUri()
+                            + (target.getName().isEmpty() ? "" : " named " + target.getName()) + " is listed twice");
+                }
+                targets.add(target);
+            }
+            return targets;
+        }
+    }
+
+    /**
+     * This function parses a line of a targets file.
+     *
+     * @param line       The line, trimmed
+     * @param lineNumber The line number, for error messages
+     * @return The website described by the line
+     * @throws IllegalArgumentException When the line is malformed
+     */
+    static TargetConfig parseLine(String line, int lineNumber) {
+        String[] fields = line.split("\\s+");
+        if (fields.length < 2 || fields.length > 5) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": expected <url> <interval> [timeout] [mode] [name]");
+        }
+
+        URI uri;
+        try {
+            // Same validation as the UI form: the URL has to start with http:// or https://
+            uri = new URL(fields[0]).toURI();
+        } catch (MalformedURLException | URISyntaxException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": invalid URL " + fields[0], e);
+        }
+
+        long interval = parsePositive(fields[1], "interval", lineNumber);
+        long timeout = fields.length > 2 ? parsePositive(fields[2], "timeout", lineNumber) : 0;
+
+        String mode = fields.length > 3 ? fields[3].toUpperCase(Locale.ROOT) : ProbeMode.GET_DISCARD.name();
+        boolean phaseTimings = mode.endsWith(PHASES_SUFFIX.toUpperCase(Locale.ROOT));
+        if (phaseTimings) {
+            mode = mode.substring(0, mode.length() - PHASES_SUFFIX.length());
+        }
+        long byteCap = Long.MAX_VALUE;
+        int separator = mode.indexOf(':');
+        if (separator != -1) {
+            byteCap = parsePositive(mode.substring(separator + 1), "byte cap", lineNumber);
+            mode = mode.substring(0, separator);
+        }
+
+        ProbeMode probeMode;
+        try {
+            probeMode = ProbeMode.valueOf(mode);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": unknown mode " + fields[3], e);
+        }
+        if (probeMode == ProbeMode.GET_CAPPED && separator == -1) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": GET_CAPPED requires a byte cap, as GET_CAPPED:<bytes>");
+        }
+
+        String name = fields.length > 4 ? fields[4] : "";
+
+        return new TargetConfig(uri, interval, new ProbeSettings(probeMode, byteCap, phaseTimings, timeout), name);
+    }
+
+    /**
+     * This function parses a strictly positive number of a line.
+     *
+     * @param field      The field to parse
+     * @param name       The field name, for error messages
+     * @param lineNumber The line number, for error messages
+     * @return The number
+     * @throws IllegalArgumentException When the field is not a strictly positive number
+     */
+    private static long parsePositive(String field, String name, int lineNumber) {
+        long value;
+        try {
+            value = Long.parseLong(field);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": invalid " + name + " " + field, e);
+        }
+        if (value <= 0) {
+            throw new IllegalArgumentException("Line " + lineNumber + ": the " + name + " must be positive");
+        }
+        return value;
+    }
+}
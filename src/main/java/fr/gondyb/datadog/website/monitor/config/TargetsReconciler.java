@@ -0,0 +1,132 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import com.google.common.eventbus.EventBus;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.ui.event.ReconfigureMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps the monitored websites in line with a targets file. Every version of the file is compared with the
+ * previous one, and only the affected websites are started, stopped or reconfigured. The statistics, availability and
+ * alarm state of the unchanged websites are left untouched.
+ * <p>
+ * It is not thread-safe: the versions should be applied by a single thread, see {@link TargetsWatcher}.
+ */
+public class TargetsReconciler {
+
+    /**
+     * The websites of the last applied version, by URI and name.
+     */
+    private final Map<Map.Entry<URI, String>, TargetConfig> targets = new HashMap<>();
+
+    /**
+     * The global EventBus.
+     */
+    private final EventBus eventBus;
+
+    /**
+     * The registry of the monitored websites.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The stream the websites that could not be started are reported to.
+     */
+    private final PrintStream reports;
+
+    /**
+     * Class constructor
+     *
+     * @param eventBus The global EventBus
+     * @param registry The registry of the monitored websites
+     * @param reports  The stream the websites that could not be started are reported to
+     */
+    public TargetsReconciler(EventBus eventBus, SiteRegistry registry, PrintStream reports) {
+        this.eventBus = eventBus;
+        this.registry = registry;
+        this.reports = reports;
+    }
+
+    /**
+     * This function applies a new version of the targets file. It produces a {@link StopMonitorEvent} for every
+     * removed website, a {@link ReconfigureMonitorEvent} for every changed website, and a {@link StartMonitorEvent}
+     * for every added website. An added website already monitored, from the UI, is reconfigured instead, so that its
+     * statistics and availability are kept.
+     *
+     * @param next The websites of the new version
+     * @return The difference with the previous version, where the websites that could not be registered are missing,
+     * and the websites already monitored are changed rather than added
+     */
+    public TargetsDiff apply(List<TargetConfig> next) {
+        TargetsDiff diff = TargetsDiff.between(targets, next);
+        List<TargetConfig> added = new ArrayList<>(diff.getAdded());
+        List<TargetConfig> changed = new ArrayList<>(diff.getChanged().size());
+
+        for (TargetConfig target : diff.getRemoved()) {
+            targets.remove(target.getKey());
+            int siteId = registry.idOf(target.getUri(), target.getName());
+            // Retired right away, the website is seen as stopped by the next versions, even before its stop is handled
+            if (siteId != -1 && registry.retire(siteId, target.getUri())) {
+                eventBus.post(new StopMonitorEvent(siteId, target.getUri()));
+            }
+        }
+
+        for (TargetConfig target : diff.getChanged()) {
+            int siteId = registry.idOf(target.getUri(), target.getName());
+            if (siteId == -1) {
+                // Removed from the UI since the previous version, it is started again as a new website
+                added.add(target);
+                continue;
+            }
+            changed.add(target);
+            reconfigure(siteId, target);
+        }
+
+        for (int i = 0; i < added.size(); i++) {
+            TargetConfig target = added.get(i);
+            int siteId = registry.idOf(target.getUri(), target.getName());
+            if (siteId != -1) {
+                // Starting it again would replace its statistics and availability windows
+                added.remove(i--);
+                changed.add(target);
+                reconfigure(siteId, target);
+                continue;
+            }
+            try {
+                siteId = registry.register(target.getUri(), target.getName());
+            } catch (IllegalStateException e) {
+                reports.println(e.getMessage() + ", " + (added.size() - i) + " websites were not started");
+                added.subList(i, added.size()).clear();
+                break;
+            }
+            targets.put(target.getKey(), target);
+            eventBus.post(new StartMonitorEvent(siteId, target.getUri(), target.getInterval(), target.getProbeSettings()));
+        }
+
+        return new TargetsDiff(added, diff.getRemoved(), changed);
+    }
+
+    /**
+     * This function produces the {@link ReconfigureMonitorEvent} of a monitored website.
+     *
+     * @param siteId The identifier of the website in the site registry
+     * @param target The new configuration of the website
+     */
+    private void reconfigure(int siteId, TargetConfig target) {
+        targets.put(target.getKey(), target);
+        eventBus.post(new ReconfigureMonitorEvent(
+                siteId,
+                target.getUri(),
+                target.getInterval(),
+                target.getProbeSettings()
+        ));
+    }
+}
@@ -0,0 +1,149 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * This class watches a targets file with a {@link WatchService}, and reads it again every time it is edited. The
+ * directory of the file is watched, so that editors replacing the file instead of writing it are supported.
+ * <p>
+ * An edit usually produces several events: they are coalesced until the file is quiet for {@link #SETTLE_DELAY}
+ * milliseconds. A version that cannot be read is reported and ignored, the previous one stays applied.
+ */
+public class TargetsWatcher implements AutoCloseable {
+
+    /**
+     * The time in milliseconds without any event after which the file is read again.
+     */
+    private static final long SETTLE_DELAY = 200;
+
+    /**
+     * The targets file.
+     */
+    private final Path file;
+
+    /**
+     * The consumer of every new version of the file, called on the watcher thread.
+     */
+    private final Consumer<List<TargetConfig>> onChange;
+
+    /**
+     * The stream the versions that cannot be read are reported to.
+     */
+    private final PrintStream reports;
+
+    /**
+     * The service watching the directory of the file.
+     */
+    private final WatchService watchService;
+
+    /**
+     * The thread waiting for the events of the directory.
+     */
+    private final Thread thread;
+
+    /**
+     * Class constructor. The file is watched once {@link #start()} is called.
+     *
+     * @param file     The targets file
+     * @param onChange The consumer of every new version of the file, called on the watcher thread
+     * @param reports  The stream the versions that cannot be read are reported to
+     * @throws IOException When the directory of the file cannot be watched
+     */
+    public TargetsWatcher(Path file, Consumer<List<TargetConfig>> onChange, PrintStream reports) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.reports = reports;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(
+                watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY
+        );
+        this.thread = new Thread(this::watch, "targets-watcher");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * This function starts watching the file.
+     */
+    public void start() {
+        thread.start();
+    }
+
+    /**
+     * This function stops watching the file.
+     *
+     * @throws IOException When the watch service cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * The watcher loop. It waits for an edit of the file, waits for the edit to settle, then reads the file.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean edited = concernsFile(key);
+                while (edited) {
+                    // Coalesce the events of the same edit
+                    WatchKey next = watchService.poll(SETTLE_DELAY, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    concernsFile(next);
+                }
+                if (edited) {
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // The watcher is stopped
+        }
+    }
+
+    /**
+     * This function consumes the events of a key, and resets it.
+     *
+     * @param key The key of the watched directory
+     * @return True if one of the events concerns the targets file
+     */
+    private boolean concernsFile(WatchKey key) {
+        boolean concerned = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                concerned = true;
+            }
+        }
+        key.reset();
+        return concerned;
+    }
+
+    /**
+     * This function reads the targets file, and hands the new version to the consumer.
+     */
+    private void reload() {
+        List<TargetConfig> targets;
+        try {
+            targets = TargetsFile.read(file);
+        } catch (IOException | IllegalArgumentException e) {
+            reports.println(file + " was not reloaded: " + e.getMessage());
+            return;
+        }
+        onChange.accept(targets);
+    }
+}
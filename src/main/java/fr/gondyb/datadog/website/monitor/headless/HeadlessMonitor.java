@@ -0,0 +1,132 @@
+package fr.gondyb.datadog.website.monitor.headless;
+
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.config.TargetConfig;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.watchdog.WatchdogsManager;
+
+import java.io.PrintStream;
+import java.net.URI;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class replaces the UI when the application runs without a terminal (Ex: in a container). The websites are
+ * read from a targets file and started in bulk by a {@link fr.gondyb.datadog.website.monitor.config.TargetsReconciler},
+ * and the alarms are printed to the console.
+ */
+public class HeadlessMonitor {
+
+    /**
+     * The delay in milliseconds between two checks of the first probe round progress.
+     */
+    private static final long POLL_INTERVAL = 1;
+
+    /**
+     * The format of the time of an alarm.
+     */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    /**
+     * The manager of the probe streams, recording the first check issued for every website.
+     */
+    private final WatchdogsManager watchdogs;
+
+    /**
+     * The console the alarms are printed to.
+     */
+    private final PrintStream out;
+
+    /**
+     * The registry of the websites, naming the websites of the alarms.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The formatter of the availabilities. Only accessed while holding the monitor lock, as the alarms of websites
+     * owned by different shards are printed by different threads.
+     */
+    private final NumberFormat percentageFormat = new DecimalFormat("#0.0");
+
+    /**
+     * Class constructor
+     *
+     * @param watchdogs The manager of the probe streams, recording the first check issued for every website
+     * @param out       The console the alarms are printed to
+     * @param registry  The registry of the websites, naming the websites of the alarms
+     */
+    public HeadlessMonitor(WatchdogsManager watchdogs, PrintStream out, SiteRegistry registry) {
+        this.watchdogs = watchdogs;
+        this.out = out;
+        this.registry = registry;
+    }
+
+    /**
+     * This function waits until a first check was issued for every started website. The websites sharing a URI and
+     * probe settings share a stream, thus a single request may be their first check. A stream checked often does not
+     * count for the other streams, as every website waits for a check of its own stream.
+     *
+     * @param started The started websites
+     * @param timeout The maximum time to wait in milliseconds
+     * @return True if the first probe round was issued before the timeout
+     * @throws InterruptedException When the thread is interrupted while waiting
+     */
+    public boolean awaitFirstRound(List<TargetConfig> started, long timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        // A website stays probed once it is, thus every website is only waited for once
+        for (TargetConfig target : started) {
+            int siteId = registry.idOf(target.getUri(), target.getName());
+            while (siteId != -1 && !watchdogs.isProbed(siteId)) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(POLL_INTERVAL);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * This function prints an {@link AlarmTriggeredEvent} to the console.
+     *
+     * @param event The event to print
+     */
+    @Subscribe
+    public void handleAlarmTriggeredEvent(AlarmTriggeredEvent event) {
+        print(event.getSiteId(), event.getUri(), "down", event.getAvailabilityPercentage(), event.getTimestamp());
+    }
+
+    /**
+     * This function prints an {@link AlarmStoppedEvent} to the console.
+     *
+     * @param event The event to print
+     */
+    @Subscribe
+    public void handleAlarmStoppedEvent(AlarmStoppedEvent event) {
+        print(event.getSiteId(), event.getUri(), "up", event.getAvailabilityPercentage(), event.getTimestamp());
+    }
+
+    /**
+     * This function prints an alarm to the console, the website being labelled by its URI followed by its name.
+     *
+     * @param siteId       The identifier of the website in the site registry
+     * @param uri          The URI of the website, printed alone if the website was removed since
+     * @param state        The state of the website, down or up
+     * @param availability The availability percentage of the website
+     * @param timestamp    The time in milliseconds since the epoch of the alarm
+     */
+    private synchronized void print(int siteId, URI uri, String state, double availability, long timestamp) {
+        String name = registry.nameOf(siteId);
+        String label = name == null || name.isEmpty() ? uri.toString() : uri + " (" + name + ")";
+        out.println("Website " + label + " is " + state + ".\tavailability: " + percentageFormat.format(availability)
+                + "%\ttime: " + TIME_FORMAT.format(Instant.ofEpochMilli(timestamp)));
+    }
+}
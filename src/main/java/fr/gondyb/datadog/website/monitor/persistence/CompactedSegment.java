@@ -0,0 +1,194 @@
+package fr.gondyb.datadog.website.monitor.persistence;
+
+import fr.gondyb.datadog.website.monitor.statistics.SampleDecoder;
+import fr.gondyb.datadog.website.monitor.statistics.SampleEncoder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * This class rewrites a closed segment of the {@link ProbeLog} as one compressed block of checks per website, encoded
+ * by a {@link SampleEncoder}. A compacted segment takes about a tenth of the size of the segment, and is replayed one
+ * website at a time.
+ * <p>
+ * The file starts with the newest timestamp of its checks and its number of websites, followed by the URI, name,
+ * polling rate and block of every website, and ends with a CRC32C checksum of the whole file. A file whose checksum
+ * does not match is not replayed. A compacted segment replays the same checks as the segment, response codes included.
+ */
+final class CompactedSegment {
+
+    /**
+     * The logger of the corrupted segments.
+     */
+    private static final Logger LOGGER = Logger.getLogger(CompactedSegment.class.getName());
+
+    /**
+     * The extension of the compacted segments.
+     */
+    static final String EXTENSION = ".blk";
+
+    /**
+     * The first bytes of a compacted segment.
+     */
+    private static final int MAGIC = 0x50424c4b;
+
+    private CompactedSegment() {
+    }
+
+    /**
+     * This function compacts a segment. The compacted segment is written to a temporary file, then moved next to the
+     * segment, so that a crash never leaves a partial compacted segment.
+     *
+     * @param segment The path of the closed segment
+     * @return The path of the compacted segment
+     * @throws IOException When the segment cannot be read or the compacted segment written
+     */
+    static Path compact(Path segment) throws IOException {
+        Map<Map.Entry<URI, String>, Series> series = new LinkedHashMap<>();
+        long newest = ProbeLog.read(segment, new SegmentVisitor() {
+            /**
+             * The series of the websites declared in the segment, indexed by their identifier at the time of the
+             * segment.
+             */
+            private Series[] sites = new Series[64];
+
+            @Override
+            public void declare(int siteId, long interval, URI uri, String name) {
+                if (siteId >= sites.length) {
+                    sites = Arrays.copyOf(sites, Math.max(siteId + 1, sites.length * 2));
+                }
+                Series site = series.computeIfAbsent(Map.entry(uri, name), key -> new Series());
+                site.interval = interval;
+                sites[siteId] = site;
+            }
+
+            @Override
+            public void up(int siteId, long timestamp, long latency, int responseCode) {
+                if (siteId < sites.length && sites[siteId] != null) {
+                    sites[siteId].encoder.appendUp(timestamp, latency, responseCode);
+                }
+            }
+
+            @Override
+            public void down(int siteId, long timestamp) {
+                if (siteId < sites.length && sites[siteId] != null) {
+                    sites[siteId].encoder.appendDown(timestamp);
+                }
+            }
+        });
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeLong(newest);
+        output.writeInt(series.size());
+        for (Map.Entry<Map.Entry<URI, String>, Series> site : series.entrySet()) {
+            output.writeUTF(site.getKey().getKey().toString());
+            output.writeUTF(site.getKey().getValue());
+            output.writeLong(site.getValue().interval);
+            output.writeInt(site.getValue().encoder.getCount());
+            byte[] block = site.getValue().encoder.toByteArray();
+            output.writeInt(block.length);
+            output.write(block);
+        }
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes.toByteArray());
+        output.writeInt((int) checksum.getValue());
+        output.flush();
+
+        String name = segment.getFileName().toString();
+        Path compacted = segment.resolveSibling(name.substring(0, name.lastIndexOf('.')) + EXTENSION);
+        Path temporary = segment.resolveSibling(compacted.getFileName() + ".tmp");
+        Files.write(temporary, bytes.toByteArray());
+        Files.move(temporary, compacted, StandardCopyOption.ATOMIC_MOVE);
+        return compacted;
+    }
+
+    /**
+     * This function replays the checks of a compacted segment newer than a horizon.
+     *
+     * @param path                The path of the compacted segment
+     * @param state               The state to rebuild
+     * @param horizon             The time in milliseconds since the epoch from which the checks are replayed
+     * @param availabilityHorizon The time in milliseconds since the epoch from which the outcomes are kept
+     * @return The time in milliseconds since the epoch of the newest check of the segment, 0 if it is corrupted
+     * @throws IOException When the compacted segment cannot be read
+     */
+    static long replay(Path path, RecoveredState state, long horizon, long availabilityHorizon) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        CRC32C checksum = new CRC32C();
+        checksum.update(bytes, 0, Math.max(bytes.length - Integer.BYTES, 0));
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (bytes.length < 20 || input.readInt() != MAGIC
+                || (int) checksum.getValue() != readInt(bytes, bytes.length - Integer.BYTES)) {
+            LOGGER.warning(path + " is corrupted, it was not replayed");
+            return 0;
+        }
+
+        long newest = input.readLong();
+        if (newest < horizon) {
+            return newest;
+        }
+        int siteCount = input.readInt();
+        for (int i = 0; i < siteCount; i++) {
+            URI uri = URI.create(input.readUTF());
+            String name = input.readUTF();
+            long interval = input.readLong();
+            int count = input.readInt();
+            byte[] block = new byte[input.readInt()];
+            input.readFully(block);
+
+            RecoveredState.Site site = state.siteOf(Map.entry(uri, name), interval);
+            SampleDecoder decoder = new SampleDecoder(block, count);
+            while (decoder.next()) {
+                if (decoder.getTimestamp() < horizon) {
+                    continue;
+                }
+                if (decoder.isUp()) {
+                    site.replayUp(decoder.getTimestamp(), decoder.getLatency(), decoder.getResponseCode(), availabilityHorizon);
+                } else {
+                    site.replayDown(decoder.getTimestamp(), availabilityHorizon);
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * @param bytes  An array
+     * @param offset The index of the first byte of the int
+     * @return The big-endian int at this index
+     */
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xff) << 24 | (bytes[offset + 1] & 0xff) << 16
+                | (bytes[offset + 2] & 0xff) << 8 | bytes[offset + 3] & 0xff;
+    }
+
+    /**
+     * This class is the series of checks of a website being compacted.
+     */
+    private static final class Series {
+
+        /**
+         * The encoder of the checks.
+         */
+        private final SampleEncoder encoder = new SampleEncoder();
+
+        /**
+         * The polling rate of the website in milliseconds, the latest declared.
+         */
+        private long interval;
+    }
+}
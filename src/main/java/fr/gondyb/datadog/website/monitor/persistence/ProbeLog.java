@@ -0,0 +1,752 @@
+package fr.gondyb.datadog.website.monitor.persistence;
+
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.ui.event.ReconfigureMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+/**
+ * This class persists the outcome of every check in an append-only log, so that the statistics and availability of
+ * the websites survive a restart. The log is a directory of segments of {@link #SEGMENT_SIZE} bytes, written through
+ * memory-mapped files. A new segment is started when the current one is full, and every time the application starts.
+ * The segments older than the retention are deleted.
+ * <p>
+ * The records are written by the shards, under a lock, to the mapped segment: an append is a copy to memory. They are
+ * forced to the disk by a committer thread every {@link #COMMIT_INTERVAL} milliseconds, so that a single disk write
+ * commits every record appended in the meantime. A record is framed by its length and a CRC32C checksum: the torn
+ * record at the tail of a segment after a crash is detected, and the segment replayed up to it.
+ * <p>
+ * The website identifiers are not kept across restarts: a segment declares the URI, name and polling rate of a
+ * website before its first check, and the checks refer to the website by its identifier at the time of the segment.
+ * <p>
+ * Once closed, a segment is rewritten by a compactor thread as a {@link CompactedSegment}, about ten times smaller,
+ * which replaces it.
+ */
+public class ProbeLog implements AutoCloseable {
+
+    /**
+     * The logger of the segments that could not be deleted or compacted.
+     */
+    private static final Logger LOGGER = Logger.getLogger(ProbeLog.class.getName());
+
+    /**
+     * The size in bytes of a segment.
+     */
+    static final int SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * The delay in milliseconds between two commits of the appended records.
+     */
+    private static final long COMMIT_INTERVAL = 100;
+
+    /**
+     * The size in bytes of the frame of a record: its length and checksum.
+     */
+    private static final int FRAME_SIZE = 8;
+
+    /**
+     * The size in bytes of the largest record of a check, with its frame.
+     */
+    private static final int MAX_CHECK_SIZE = FRAME_SIZE + 25;
+
+    /**
+     * The size in bytes of the declaration of a website, with its frame, without its URI and name.
+     */
+    private static final int DECLARE_SIZE = FRAME_SIZE + 21;
+
+    /**
+     * The type of the record declaring a website.
+     */
+    private static final byte DECLARE = 1;
+
+    /**
+     * The type of the record of an up check.
+     */
+    private static final byte UP = 2;
+
+    /**
+     * The type of the record of a down check.
+     */
+    private static final byte DOWN = 3;
+
+    /**
+     * The directory of the segments.
+     */
+    private final Path directory;
+
+    /**
+     * The duration in milliseconds for which the checks are kept.
+     */
+    private final long retention;
+
+    /**
+     * The registry of the monitored websites, naming the websites declared in the segments.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The polling rate of each website, indexed by website identifier.
+     */
+    private final long[] intervals;
+
+    /**
+     * The URI each website identifier was declared with in the current segment, null if it is not declared.
+     */
+    private final URI[] declaredUris;
+
+    /**
+     * The name each website identifier was declared with in the current segment.
+     */
+    private final String[] declaredNames;
+
+    /**
+     * The time in milliseconds since the epoch of the newest check of each closed segment, by path.
+     */
+    private final NavigableMap<Path, Long> closedSegments = new TreeMap<>();
+
+    /**
+     * The checksum of the record being appended.
+     */
+    private final CRC32C checksum = new CRC32C();
+
+    /**
+     * The record being appended, before it is copied to the segment.
+     */
+    private final ByteBuffer record = ByteBuffer.allocate(FRAME_SIZE + 1024);
+
+    /**
+     * The thread periodically forcing the appended records to the disk.
+     */
+    private final Thread committer;
+
+    /**
+     * The closed segments waiting to be compacted.
+     */
+    private final BlockingQueue<Path> toCompact = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread compacting the closed segments.
+     */
+    private final Thread compactor;
+
+    /**
+     * True once the log is closing: the committer and the compactor stop after their current commit or compaction.
+     */
+    private volatile boolean closing = false;
+
+    /**
+     * The sequence number of the current segment.
+     */
+    private long sequence;
+
+    /**
+     * The path of the current segment.
+     */
+    private Path segmentPath;
+
+    /**
+     * The channel of the current segment.
+     */
+    private FileChannel channel;
+
+    /**
+     * The mapping of the current segment, positioned after its last record.
+     */
+    private MappedByteBuffer segment;
+
+    /**
+     * The time in milliseconds since the epoch of the newest check of the current segment.
+     */
+    private long newestTimestamp = 0;
+
+    /**
+     * True if records were appended since the last commit.
+     */
+    private boolean dirty = false;
+
+    /**
+     * The number of records appended.
+     */
+    private long appendedRecords = 0;
+
+    /**
+     * Class constructor. The checks are logged once the log is registered with the EventBus, after the existing
+     * segments are replayed by {@link #recover(long, long)}.
+     *
+     * @param directory The directory of the segments, created if needed
+     * @param retention The duration in milliseconds for which the checks are kept
+     * @param registry  The registry of the monitored websites
+     * @throws IOException When the directory cannot be listed or the first segment cannot be created
+     */
+    public ProbeLog(Path directory, long retention, SiteRegistry registry) throws IOException {
+        this.directory = directory;
+        this.retention = retention;
+        this.registry = registry;
+        this.intervals = new long[registry.capacity()];
+        this.declaredUris = new URI[registry.capacity()];
+        this.declaredNames = new String[registry.capacity()];
+
+        Files.createDirectories(directory);
+        long lastSequence = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "probes-*")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    // A compaction interrupted by a crash, the segment is still there
+                    Files.delete(file);
+                } else if (name.endsWith(".log") || name.endsWith(CompactedSegment.EXTENSION)) {
+                    closedSegments.put(file, Long.MAX_VALUE);
+                    lastSequence = Math.max(lastSequence, sequenceOf(file));
+                }
+            }
+        }
+        // A segment compacted just before a crash, but not deleted yet
+        for (Path compacted : closedSegments.keySet().toArray(new Path[0])) {
+            if (compacted.toString().endsWith(CompactedSegment.EXTENSION)) {
+                Path segment = logPathOf(compacted);
+                if (closedSegments.remove(segment) != null) {
+                    Files.delete(segment);
+                }
+            }
+        }
+        this.sequence = lastSequence;
+        openSegment();
+
+        this.committer = new Thread(this::commitPeriodically, "probe-log-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+        this.compactor = new Thread(this::compactClosedSegments, "probe-log-compactor");
+        this.compactor.setDaemon(true);
+        this.compactor.start();
+    }
+
+    /**
+     * This function replays the segments written before the log was opened, and deletes the segments older than the
+     * retention.
+     *
+     * @param now                The current time in milliseconds since the epoch
+     * @param availabilityPeriod The duration in milliseconds for which the outcomes of the checks are kept
+     * @return The state of the websites, rebuilt from the checks of the retention
+     * @throws IOException When a segment cannot be read
+     */
+    public RecoveredState recover(long now, long availabilityPeriod) throws IOException {
+        RecoveredState state = new RecoveredState();
+        long horizon = now - retention;
+        long availabilityHorizon = now - availabilityPeriod;
+        synchronized (this) {
+            for (Map.Entry<Path, Long> closed : closedSegments.entrySet()) {
+                closed.setValue(replay(closed.getKey(), state, horizon, availabilityHorizon));
+            }
+        }
+        deleteExpiredSegments(now);
+        synchronized (this) {
+            for (Path closed : closedSegments.keySet()) {
+                if (closed.toString().endsWith(".log")) {
+                    toCompact.add(closed);
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * @return The number of records appended since the log was opened
+     */
+    public synchronized long getAppendedRecords() {
+        return appendedRecords;
+    }
+
+    /**
+     * This function keeps the polling rate of a website, declared with its checks.
+     *
+     * @param event The event containing the website's polling rate
+     */
+    @Subscribe
+    public void handleStartMonitorEvent(StartMonitorEvent event) {
+        declare(event.getSiteId(), event.getDelay());
+    }
+
+    /**
+     * This function keeps the new polling rate of a website, declared again with its next check.
+     *
+     * @param event The event containing the website's new polling rate
+     */
+    @Subscribe
+    public void handleReconfigureMonitorEvent(ReconfigureMonitorEvent event) {
+        declare(event.getSiteId(), event.getDelay());
+    }
+
+    /**
+     * This function forgets the declaration of a removed website, whose identifier may be reused.
+     *
+     * @param event The event containing the website not monitored anymore
+     */
+    @Subscribe
+    public synchronized void handleStopMonitorEvent(StopMonitorEvent event) {
+        declaredUris[event.getSiteId()] = null;
+    }
+
+    /**
+     * This function appends an up check to the log.
+     *
+     * @param event The event to be logged
+     */
+    @Subscribe
+    public void handleWebsiteUpEvent(WebsiteUpEvent event) {
+        String name = registry.nameOf(event.getSiteId());
+        if (name == null) {
+            // A check sent before the website was removed
+            return;
+        }
+        synchronized (this) {
+            reserve(MAX_CHECK_SIZE);
+            declareIfNeeded(event.getSiteId(), event.getUri(), name);
+            record.clear();
+            record.position(FRAME_SIZE);
+            record.put(UP)
+                    .putInt(event.getSiteId())
+                    .putLong(event.getTimestamp())
+                    .putLong(event.getResponseTime())
+                    .putInt(event.getResponseCode());
+            append(event.getTimestamp());
+        }
+    }
+
+    /**
+     * This function appends a down check to the log.
+     *
+     * @param event The event to be logged
+     */
+    @Subscribe
+    public void handleWebsiteDownEvent(WebsiteDownEvent event) {
+        String name = registry.nameOf(event.getSiteId());
+        if (name == null) {
+            // A check sent before the website was removed
+            return;
+        }
+        synchronized (this) {
+            reserve(MAX_CHECK_SIZE);
+            declareIfNeeded(event.getSiteId(), event.getUri(), name);
+            record.clear();
+            record.position(FRAME_SIZE);
+            record.put(DOWN)
+                    .putInt(event.getSiteId())
+                    .putLong(event.getTimestamp());
+            append(event.getTimestamp());
+        }
+    }
+
+    /**
+     * This function forces the records appended since the last commit to the disk.
+     */
+    public void commit() {
+        MappedByteBuffer toForce;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            toForce = segment;
+        }
+        // Outside of the lock: the shards keep appending while the disk is written
+        toForce.force();
+    }
+
+    /**
+     * This function stops the committer and the compactor, waits for them to finish their current commit or
+     * compaction, then commits the appended records and unmaps the current segment. The records appended after the
+     * log is closed are rejected.
+     *
+     * @throws IOException When the threads cannot be waited for, or the current segment cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        closing = true;
+        // Only wakes up the committer from its sleep: forcing a mapping cannot be interrupted
+        committer.interrupt();
+        try {
+            committer.join();
+            compactor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The probe log threads were not stopped");
+        }
+        synchronized (this) {
+            if (segment == null) {
+                return;
+            }
+            segment.force();
+            unmap(segment);
+            segment = null;
+            dirty = false;
+            channel.close();
+        }
+    }
+
+    /**
+     * This function keeps the polling rate of a website, and forgets its declaration so that the next check
+     * declares it again.
+     *
+     * @param siteId   The identifier of the website
+     * @param interval The polling rate of the website
+     */
+    private synchronized void declare(int siteId, long interval) {
+        intervals[siteId] = interval;
+        declaredUris[siteId] = null;
+    }
+
+    /**
+     * This function appends the declaration of a website to the current segment, if the website is not declared in
+     * it yet. The segment is left with room for a check of the website.
+     *
+     * @param siteId The identifier of the website
+     * @param uri    The URI of the website
+     * @param name   The name of the website
+     */
+    private void declareIfNeeded(int siteId, URI uri, String name) {
+        if (uri.equals(declaredUris[siteId]) && name.equals(declaredNames[siteId])) {
+            return;
+        }
+        byte[] uriBytes = uri.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int size = DECLARE_SIZE + uriBytes.length + nameBytes.length;
+        // A new segment clears the declarations, thus the check has to follow its declaration in the same segment
+        reserve(size + MAX_CHECK_SIZE);
+        ByteBuffer declaration = record.capacity() >= size ? record : ByteBuffer.allocate(size);
+        declaration.clear();
+        declaration.position(FRAME_SIZE);
+        declaration.put(DECLARE)
+                .putInt(siteId)
+                .putLong(intervals[siteId])
+                .putInt(uriBytes.length)
+                .put(uriBytes)
+                .putInt(nameBytes.length)
+                .put(nameBytes);
+        write(declaration);
+        declaredUris[siteId] = uri;
+        declaredNames[siteId] = name;
+    }
+
+    /**
+     * This function appends the record being built to the current segment.
+     *
+     * @param timestamp The time in milliseconds since the epoch of the check of the record
+     */
+    private void append(long timestamp) {
+        write(record);
+        newestTimestamp = Math.max(newestTimestamp, timestamp);
+        appendedRecords++;
+    }
+
+    /**
+     * This function starts a new segment if the current one has not enough room left.
+     *
+     * @param size The size in bytes of the records about to be appended
+     */
+    private void reserve(int size) {
+        if (segment == null) {
+            throw new IllegalStateException("The probe log is closed");
+        }
+        if (segment.remaining() < size) {
+            try {
+                rollSegment();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * This function frames a record and copies it to the current segment, whose room was reserved.
+     *
+     * @param buffer The buffer of the record, its payload written after the frame
+     */
+    private void write(ByteBuffer buffer) {
+        int length = buffer.position() - FRAME_SIZE;
+        checksum.reset();
+        checksum.update(buffer.array(), FRAME_SIZE, length);
+        buffer.putInt(0, length);
+        buffer.putInt(4, (int) checksum.getValue());
+        buffer.flip();
+        segment.put(buffer);
+        dirty = true;
+    }
+
+    /**
+     * This function closes the current segment, and starts a new one. The websites are declared again in it, and the
+     * expired segments are deleted.
+     *
+     * @throws IOException When the new segment cannot be created
+     */
+    private void rollSegment() throws IOException {
+        segment.force();
+        channel.close();
+        closedSegments.put(segmentPath, newestTimestamp);
+        toCompact.add(segmentPath);
+        deleteExpiredSegments(newestTimestamp);
+        openSegment();
+    }
+
+    /**
+     * This function creates and maps a new segment.
+     *
+     * @throws IOException When the segment cannot be created
+     */
+    private void openSegment() throws IOException {
+        sequence++;
+        segmentPath = directory.resolve(String.format("probes-%020d.log", sequence));
+        channel = FileChannel.open(
+                segmentPath,
+                StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        newestTimestamp = 0;
+        Arrays.fill(declaredUris, null);
+    }
+
+    /**
+     * This function deletes the closed segments whose newest check is older than the retention.
+     *
+     * @param now The current time in milliseconds since the epoch
+     */
+    private synchronized void deleteExpiredSegments(long now) {
+        Iterator<Map.Entry<Path, Long>> iterator = closedSegments.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> closed = iterator.next();
+            if (closed.getValue() < now - retention) {
+                try {
+                    Files.deleteIfExists(closed.getKey());
+                    iterator.remove();
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, closed.getKey() + " was not deleted", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * This function replays the checks of a segment newer than a horizon, up to its last valid record.
+     *
+     * @param path                The path of the segment
+     * @param state               The state to rebuild
+     * @param horizon             The time in milliseconds since the epoch from which the checks are replayed
+     * @param availabilityHorizon The time in milliseconds since the epoch from which the outcomes are kept
+     * @return The time in milliseconds since the epoch of the newest check of the segment
+     * @throws IOException When the segment cannot be read
+     */
+    private static long replay(Path path, RecoveredState state, long horizon, long availabilityHorizon) throws IOException {
+        if (path.toString().endsWith(CompactedSegment.EXTENSION)) {
+            return CompactedSegment.replay(path, state, horizon, availabilityHorizon);
+        }
+        return read(path, new SegmentVisitor() {
+            /**
+             * The websites declared in the segment, indexed by their identifier at the time of the segment.
+             */
+            private RecoveredState.Site[] sites = new RecoveredState.Site[64];
+
+            @Override
+            public void declare(int siteId, long interval, URI uri, String name) {
+                if (siteId >= sites.length) {
+                    sites = Arrays.copyOf(sites, Math.max(siteId + 1, sites.length * 2));
+                }
+                sites[siteId] = state.siteOf(Map.entry(uri, name), interval);
+            }
+
+            @Override
+            public void up(int siteId, long timestamp, long latency, int responseCode) {
+                RecoveredState.Site site = siteId < sites.length ? sites[siteId] : null;
+                if (site != null && timestamp >= horizon) {
+                    site.replayUp(timestamp, latency, responseCode, availabilityHorizon);
+                }
+            }
+
+            @Override
+            public void down(int siteId, long timestamp) {
+                RecoveredState.Site site = siteId < sites.length ? sites[siteId] : null;
+                if (site != null && timestamp >= horizon) {
+                    site.replayDown(timestamp, availabilityHorizon);
+                }
+            }
+        });
+    }
+
+    /**
+     * This function reads the records of a segment, up to its last valid record.
+     *
+     * @param path    The path of the segment
+     * @param visitor The receiver of the records
+     * @return The time in milliseconds since the epoch of the newest check of the segment
+     * @throws IOException When the segment cannot be read
+     */
+    static long read(Path path, SegmentVisitor visitor) throws IOException {
+        long newest = 0;
+        CRC32C checksum = new CRC32C();
+
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            while (buffer.remaining() >= FRAME_SIZE) {
+                int length = buffer.getInt();
+                int expected = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    // The end of the segment, or a record torn by a crash
+                    break;
+                }
+                int start = buffer.position();
+                buffer.limit(start + length);
+                checksum.reset();
+                checksum.update(buffer);
+                buffer.limit(buffer.capacity());
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+
+                byte type = buffer.get(start);
+                int siteId = buffer.getInt(start + 1);
+                if (type == DECLARE) {
+                    ByteBuffer payload = buffer.duplicate().position(start + 5);
+                    long interval = payload.getLong();
+                    URI uri = URI.create(readString(payload));
+                    String name = readString(payload);
+                    visitor.declare(siteId, interval, uri, name);
+                    continue;
+                }
+
+                long timestamp = buffer.getLong(start + 5);
+                newest = Math.max(newest, timestamp);
+                if (type == UP) {
+                    visitor.up(siteId, timestamp, buffer.getLong(start + 13), buffer.getInt(start + 21));
+                } else if (type == DOWN) {
+                    visitor.down(siteId, timestamp);
+                }
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * This function reads a string of a record, prefixed by its length in bytes.
+     *
+     * @param payload The payload of the record, positioned at the string
+     * @return The string
+     */
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param file The path of a segment, compacted or not
+     * @return The sequence number of the segment
+     */
+    private static long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring("probes-".length(), name.lastIndexOf('.')));
+    }
+
+    /**
+     * @param compacted The path of a compacted segment
+     * @return The path of the segment it was compacted from
+     */
+    private static Path logPathOf(Path compacted) {
+        String name = compacted.getFileName().toString();
+        return compacted.resolveSibling(name.substring(0, name.lastIndexOf('.')) + ".log");
+    }
+
+    /**
+     * This function compacts the closed segments as they are queued, until the log is closed. A compacted segment
+     * replaces its segment, unless the segment expired in the meantime.
+     */
+    private void compactClosedSegments() {
+        while (!closing) {
+            Path closed;
+            try {
+                // Not interrupted when the log is closed: an interrupted compaction would leave a temporary file
+                closed = toCompact.poll(COMMIT_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (closed == null) {
+                continue;
+            }
+            try {
+                Path compacted = CompactedSegment.compact(closed);
+                synchronized (this) {
+                    Long newest = closedSegments.remove(closed);
+                    if (newest == null) {
+                        Files.deleteIfExists(compacted);
+                        continue;
+                    }
+                    closedSegments.put(compacted, newest);
+                }
+                Files.delete(closed);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, closed + " was not compacted", e);
+            }
+        }
+    }
+
+    /**
+     * This function forces the appended records to the disk every {@link #COMMIT_INTERVAL} milliseconds, until the log
+     * is closed.
+     */
+    private void commitPeriodically() {
+        while (!closing) {
+            try {
+                Thread.sleep(COMMIT_INTERVAL);
+            } catch (InterruptedException e) {
+                return;
+            }
+            commit();
+        }
+    }
+
+    /**
+     * This function releases a mapping without waiting for it to be garbage collected, so that the file of a closed
+     * log can be deleted or mapped again right away. The mapping must not be accessed anymore.
+     *
+     * @param mapping The mapping to release
+     */
+    private static void unmap(MappedByteBuffer mapping) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(theUnsafe.get(null), mapping);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The mapping is released once it is garbage collected
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package fr.gondyb.datadog.website.monitor.persistence;
+
+import fr.gondyb.datadog.website.monitor.statistics.RollupStore;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+
+import java.net.URI;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the state of the websites rebuilt from a {@link ProbeLog} at startup, by URI and name: the store of
+ * the checks of each website, and its most recent outcomes. The website identifiers are not kept across restarts, thus
+ * the state is claimed by the components when a website with the same URI and name starts to be monitored again.
+ * <p>
+ * A state can be claimed once: it is then owned by the shard of the website.
+ */
+public class RecoveredState {
+
+    /**
+     * The stores rebuilt from the log, not claimed yet.
+     */
+    private final ConcurrentMap<Map.Entry<URI, String>, RollupStore> stores = new ConcurrentHashMap<>();
+
+    /**
+     * The outcomes of the checks of the availability period, oldest first, not claimed yet.
+     */
+    private final ConcurrentMap<Map.Entry<URI, String>, Outcomes> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * The number of checks replayed.
+     */
+    private long recordCount = 0;
+
+    /**
+     * @return A state without any website, when the application runs without a log
+     */
+    public static RecoveredState empty() {
+        return new RecoveredState();
+    }
+
+    /**
+     * This function claims the store of a website.
+     *
+     * @param uri  The URI of the website
+     * @param name The name of the website, empty if it is unnamed
+     * @return The store rebuilt from the log, null if the website is not in the log or was already claimed
+     */
+    public RollupStore takeStore(URI uri, String name) {
+        if (uri == null || name == null) {
+            return null;
+        }
+        return stores.remove(Map.entry(uri, name));
+    }
+
+    /**
+     * This function claims the outcomes of the availability period of a website.
+     *
+     * @param uri  The URI of the website
+     * @param name The name of the website, empty if it is unnamed
+     * @return True for every up check and false for every down check, oldest first, empty if the website is not in
+     * the log or was already claimed
+     */
+    public boolean[] takeOutcomes(URI uri, String name) {
+        Outcomes recovered = uri == null || name == null ? null : outcomes.remove(Map.entry(uri, name));
+        if (recovered == null || recovered.count == 0) {
+            return new boolean[0];
+        }
+        boolean[] result = new boolean[recovered.count];
+        for (int i = 0; i < recovered.count; i++) {
+            result[i] = recovered.bits.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of checks replayed
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return The number of websites whose store is not claimed yet
+     */
+    public int getSiteCount() {
+        return stores.size();
+    }
+
+    /**
+     * This function finds the state of a website declared in the log, creating it on its first declaration.
+     *
+     * @param key         The URI and name of the website
+     * @param downLatency The latency in milliseconds recorded for a down check of the website, its polling rate
+     * @return The state of the website, to replay its checks into
+     */
+    Site siteOf(Map.Entry<URI, String> key, long downLatency) {
+        RollupStore store = stores.computeIfAbsent(key, k -> new RollupStore(downLatency));
+        store.setDownLatency(downLatency);
+        return new Site(store, outcomes.computeIfAbsent(key, k -> new Outcomes()));
+    }
+
+    /**
+     * This class is the state of a website being replayed, resolved once per declaration so that replaying a check
+     * does not look the website up.
+     */
+    final class Site {
+
+        /**
+         * The store of the checks of the website.
+         */
+        private final RollupStore store;
+
+        /**
+         * The outcomes of the checks of the availability period of the website.
+         */
+        private final Outcomes outcomes;
+
+        /**
+         * Class constructor
+         *
+         * @param store    The store of the checks of the website
+         * @param outcomes The outcomes of the checks of the availability period of the website
+         */
+        private Site(RollupStore store, Outcomes outcomes) {
+            this.store = store;
+            this.outcomes = outcomes;
+        }
+
+        /**
+         * This function replays an up check.
+         *
+         * @param timestamp           The time in milliseconds since the epoch of the check
+         * @param latency             The latency in milliseconds of the check
+         * @param responseCode        The HTTP response code
+         * @param availabilityHorizon The time in milliseconds since the epoch from which the outcome is kept
+         */
+        void replayUp(long timestamp, long latency, int responseCode, long availabilityHorizon) {
+            store.addUp(timestamp, latency, responseCode, ProbeTimings.UNKNOWN);
+            if (timestamp >= availabilityHorizon) {
+                outcomes.add(true);
+            }
+            recordCount++;
+        }
+
+        /**
+         * This function replays a down check.
+         *
+         * @param timestamp           The time in milliseconds since the epoch of the check
+         * @param availabilityHorizon The time in milliseconds since the epoch from which the outcome is kept
+         */
+        void replayDown(long timestamp, long availabilityHorizon) {
+            store.addDown(timestamp);
+            if (timestamp >= availabilityHorizon) {
+                outcomes.add(false);
+            }
+            recordCount++;
+        }
+    }
+
+    /**
+     * This class is a growable list of check outcomes, one bit per check.
+     */
+    private static final class Outcomes {
+
+        /**
+         * The outcomes, true for an up check.
+         */
+        private final BitSet bits = new BitSet();
+
+        /**
+         * The number of outcomes.
+         */
+        private int count = 0;
+
+        /**
+         * This function appends an outcome.
+         *
+         * @param up True for an up check
+         */
+        private void add(boolean up) {
+            bits.set(count++, up);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package fr.gondyb.datadog.website.monitor.persistence;
+
+import java.net.URI;
+
+/**
+ * This interface receives the records of a segment of the {@link ProbeLog}, in the order they were appended.
+ */
+interface SegmentVisitor {
+
+    /**
+     * This function receives the declaration of a website, preceding its checks in the segment.
+     *
+     * @param siteId   The identifier of the website at the time of the segment
+     * @param interval The polling rate of the website in milliseconds
+     * @param uri      The URI of the website
+     * @param name     The name of the website, empty if it is unnamed
+     */
+    void declare(int siteId, long interval, URI uri, String name);
+
+    /**
+     * This function receives an up check.
+     *
+     * @param siteId       The identifier of the website at the time of the segment
+     * @param timestamp    The time in milliseconds since the epoch of the check
+     * @param latency      The latency in milliseconds of the check
+     * @param responseCode The HTTP response code
+     */
+    void up(int siteId, long timestamp, long latency, int responseCode);
+
+    /**
+     * This function receives a down check.
+     *
+     * @param siteId    The identifier of the website at the time of the segment
+     * @param timestamp The time in milliseconds since the epoch of the check
+     */
+    void down(int siteId, long timestamp);
+}
@@ -0,0 +1,314 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import com.google.common.eventbus.EventBus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is an {@link EventBus} dispatching events asynchronously, through partitions made of a preallocated
+ * {@link RingBuffer} and a consumer thread.
+ * <p>
+ * The events implementing {@link SiteEvent} are assigned to a partition according to their website identifier, so that
+ * every event of a website is dispatched in order, by the same thread. The consumer threads read their queue by
+ * batches, and call the subscribers as a synchronous {@link EventBus} would. Events posted by a subscriber from a
+ * consumer thread are dispatched inline when they belong to the same partition.
+ * <p>
+ * The queues are bounded: when a partition is full, the producer waits for free slots (backpressure). A consumer thread
+ * posting to another full partition cannot wait, as the two partitions could wait for each other: its event goes to the
+ * overflow queue of the partition, dispatched by the partition thread once its queue is empty. An event is thus never
+ * dispatched by another thread than the one of its partition, and the events of a producer stay in order, as no event
+ * enters the queue while the overflow holds events. Each partition keeps throughput counters, see
+ * {@link #getStageStatistics()}.
+ * <p>
+ * The partitions are also the shards of a {@link ShardedExecutor}: a task submitted to a shard is queued with the
+ * events, and run by the consumer thread which dispatches the events of the websites it owns.
+ */
+public class PipelineEventBus extends EventBus implements ShardedExecutor {
+
+    /**
+     * The longest time in nanoseconds an idle consumer or a blocked producer sleeps before checking again.
+     */
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * The partitions of the bus.
+     */
+    private final Partition[] partitions;
+
+    /**
+     * The maximum number of events read from a queue at once.
+     */
+    private final int maxBatch;
+
+    /**
+     * The logger of the failing tasks, the one {@link EventBus} reports the failing subscribers to.
+     */
+    private final Logger logger;
+
+    /**
+     * False once the bus is shut down.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Class constructor. The consumer threads start right away.
+     *
+     * @param identifier     The bus name
+     * @param partitionCount The number of partitions, thus of consumer threads
+     * @param queueCapacity  The capacity of each partition queue
+     * @param maxBatch       The maximum number of events read from a queue at once
+     */
+    public PipelineEventBus(String identifier, int partitionCount, int queueCapacity, int maxBatch) {
+        super(identifier);
+        this.maxBatch = maxBatch;
+        this.logger = Logger.getLogger(EventBus.class.getName() + "." + identifier);
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            partitions[i] = new Partition(i, queueCapacity, identifier);
+        }
+        for (Partition partition : partitions) {
+            partition.thread.start();
+        }
+    }
+
+    /**
+     * This function queues an event in its partition. It waits for a free slot when the partition is full.
+     *
+     * @param event The event to post
+     */
+    @Override
+    public void post(Object event) {
+        enqueue(partitionOf(event), event);
+    }
+
+    @Override
+    public int getShardCount() {
+        return partitions.length;
+    }
+
+    @Override
+    public void execute(int shard, Runnable task) {
+        enqueue(partitions[shard], new ShardTask(task));
+    }
+
+    /**
+     * This function queues an event or a task in a partition. It waits for a free slot when the partition is full,
+     * unless it is called by a consumer thread: the event then goes to the overflow queue. An event posted by the
+     * consumer of its own partition is dispatched right away, after the event being dispatched.
+     *
+     * @param partition The partition
+     * @param event     The event or {@link ShardTask} to queue
+     */
+    private void enqueue(Partition partition, Object event) {
+        // A task is always queued: run right away, it would run before the other subscribers of the current event
+        if (Thread.currentThread() == partition.thread && !(event instanceof ShardTask)) {
+            partition.dispatch(event);
+            return;
+        }
+
+        long parkNanos = 1_000;
+        // The events overflowed are dispatched after the queue: a new event goes after them
+        while (!partition.overflow.isEmpty() || !partition.queue.offer(event)) {
+            if (!running) {
+                return;
+            }
+            if (Thread.currentThread() instanceof ConsumerThread) {
+                // Waiting on another partition from a consumer thread could deadlock
+                partition.overflow.add(event);
+                partition.overflowedEvents.increment();
+                break;
+            }
+            partition.backpressureWaits.increment();
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+        }
+        partition.publishedEvents.increment();
+    }
+
+    /**
+     * This function stops the consumer threads. Queued events are dropped.
+     */
+    public void shutdown() {
+        running = false;
+        for (Partition partition : partitions) {
+            LockSupport.unpark(partition.thread);
+        }
+    }
+
+    /**
+     * @return A snapshot of the throughput counters of each partition
+     */
+    public List<StageStatistics> getStageStatistics() {
+        List<StageStatistics> statistics = new ArrayList<>(partitions.length);
+        for (Partition partition : partitions) {
+            statistics.add(new StageStatistics(
+                    partition.index,
+                    partition.publishedEvents.sum(),
+                    partition.dispatchedEvents.sum(),
+                    partition.batches.sum(),
+                    partition.backpressureWaits.sum(),
+                    partition.overflowedEvents.sum(),
+                    partition.queue.size() + partition.overflow.size()
+            ));
+        }
+        return statistics;
+    }
+
+    /**
+     * This function finds the partition of an event.
+     *
+     * @param event The event
+     * @return The partition of the event's website, or the first partition for other events
+     */
+    private Partition partitionOf(Object event) {
+        if (event instanceof SiteEvent) {
+            return partitions[shardOf(((SiteEvent) event).getSiteId())];
+        }
+        return partitions[0];
+    }
+
+    /**
+     * A task queued with the events of a partition.
+     */
+    private static class ShardTask {
+        /**
+         * The task to run.
+         */
+        final Runnable task;
+
+        /**
+         * Class constructor
+         *
+         * @param task The task to run
+         */
+        ShardTask(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    /**
+     * The thread consuming a partition queue.
+     */
+    private static class ConsumerThread extends Thread {
+        ConsumerThread(Runnable target, String name) {
+            super(target, name);
+            setDaemon(true);
+        }
+    }
+
+    /**
+     * A partition of the bus: a queue, the thread consuming it, and its counters.
+     */
+    private class Partition implements Runnable {
+        /**
+         * The partition index.
+         */
+        final int index;
+
+        /**
+         * The queue of the events to dispatch.
+         */
+        final RingBuffer<Object> queue;
+
+        /**
+         * The events posted by the consumer threads of other partitions while the queue was full, dispatched once the
+         * queue is empty.
+         */
+        final Queue<Object> overflow = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The thread consuming the queue.
+         */
+        final Thread thread;
+
+        /**
+         * The number of events published in the queue.
+         */
+        final LongAdder publishedEvents = new LongAdder();
+
+        /**
+         * The number of events dispatched to the subscribers.
+         */
+        final LongAdder dispatchedEvents = new LongAdder();
+
+        /**
+         * The number of batches read from the queue.
+         */
+        final LongAdder batches = new LongAdder();
+
+        /**
+         * The number of times a producer had to wait because the queue was full.
+         */
+        final LongAdder backpressureWaits = new LongAdder();
+
+        /**
+         * The number of events posted to the overflow queue.
+         */
+        final LongAdder overflowedEvents = new LongAdder();
+
+        /**
+         * Class constructor
+         *
+         * @param index         The partition index
+         * @param queueCapacity The capacity of the queue
+         * @param identifier    The bus name, used to name the thread
+         */
+        Partition(int index, int queueCapacity, String identifier) {
+            this.index = index;
+            this.queue = new RingBuffer<>(queueCapacity);
+            this.thread = new ConsumerThread(this, identifier + "-partition-" + index);
+        }
+
+        /**
+         * This function dispatches an event to the subscribers, or runs a task, on the current thread.
+         *
+         * @param event The event to dispatch, or the {@link ShardTask} to run
+         */
+        void dispatch(Object event) {
+            if (event instanceof ShardTask) {
+                try {
+                    ((ShardTask) event).task.run();
+                } catch (RuntimeException e) {
+                    // A failing task must not stop the consumer thread
+                    logger.log(Level.SEVERE, "A task of " + thread.getName() + " failed", e);
+                }
+                return;
+            }
+            dispatchedEvents.increment();
+            PipelineEventBus.super.post(event);
+        }
+
+        /**
+         * The consumer loop. It reads the queue by batches, then the overflow queue once the queue is empty, and
+         * sleeps with an increasing delay when both are empty.
+         */
+        @Override
+        public void run() {
+            long parkNanos = 1_000;
+            while (running) {
+                int consumed = queue.drain(this::dispatch, maxBatch);
+                if (consumed == 0) {
+                    // The queue is empty, the events overflowed come next
+                    for (Object event; consumed < maxBatch && (event = overflow.poll()) != null; consumed++) {
+                        dispatch(event);
+                    }
+                }
+                if (consumed > 0) {
+                    batches.increment();
+                    parkNanos = 1_000;
+                    continue;
+                }
+                LockSupport.parkNanos(parkNanos);
+                parkNanos = Math.min(parkNanos * 2, MAX_PARK_NANOS);
+            }
+        }
+    }
+}
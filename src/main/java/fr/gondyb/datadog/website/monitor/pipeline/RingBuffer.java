@@ -0,0 +1,128 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * This class is a bounded, preallocated and lock-free ring buffer, with many producers and a single consumer.
+ * <p>
+ * Producers claim a sequence number with a CAS, write their element in the matching slot, then mark the slot as
+ * published. The consumer reads the published slots in sequence order, by batches, and only then frees them. The
+ * slots array is allocated once, no node is allocated per element.
+ *
+ * @param <E> The type of the elements
+ */
+public class RingBuffer<E> {
+
+    /**
+     * The slots holding the elements.
+     */
+    private final Object[] slots;
+
+    /**
+     * For each slot, the sequence number of the element published in it.
+     */
+    private final AtomicLongArray publishedSequences;
+
+    /**
+     * The mask used to find a slot from a sequence number. The capacity is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * The last sequence number claimed by a producer.
+     */
+    private final AtomicLong claimedSequence = new AtomicLong(-1);
+
+    /**
+     * The last sequence number read by the consumer.
+     */
+    private volatile long consumedSequence = -1;
+
+    /**
+     * Class constructor
+     *
+     * @param capacity The number of slots, rounded up to a power of two
+     */
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        this.slots = new Object[size];
+        this.publishedSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            publishedSequences.set(i, -1);
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * This function publishes an element, if there is a free slot. It never blocks.
+     *
+     * @param element The element to publish
+     * @return True if the element was published, false if the buffer is full
+     */
+    public boolean offer(E element) {
+        long sequence;
+        do {
+            long claimed = claimedSequence.get();
+            sequence = claimed + 1;
+            if (sequence - consumedSequence > slots.length) {
+                return false;
+            }
+            if (claimedSequence.compareAndSet(claimed, sequence)) {
+                break;
+            }
+        } while (true);
+
+        int index = (int) (sequence & mask);
+        slots[index] = element;
+        publishedSequences.set(index, sequence);
+        return true;
+    }
+
+    /**
+     * This function gives the next published elements to the consumer, in sequence order. It must only be called by
+     * the single consumer thread.
+     *
+     * @param consumer The consumer of the elements
+     * @param maxBatch The maximum number of elements to consume
+     * @return The number of consumed elements
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<E> consumer, int maxBatch) {
+        long next = consumedSequence + 1;
+        int count = 0;
+        try {
+            while (count < maxBatch) {
+                int index = (int) (next & mask);
+                if (publishedSequences.get(index) != next) {
+                    break;
+                }
+                E element = (E) slots[index];
+                slots[index] = null;
+                next++;
+                count++;
+                consumer.accept(element);
+            }
+        } finally {
+            if (count > 0) {
+                consumedSequence = next - 1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of elements published and not consumed yet
+     */
+    public long size() {
+        return Math.max(claimedSequence.get() - consumedSequence, 0);
+    }
+
+    /**
+     * @return The number of slots
+     */
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,49 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+/**
+ * This interface runs tasks on shards. Every website is owned by one shard, chosen from its identifier, and every
+ * mutation of the state of a website is applied by the thread of its shard. Thus this state needs no lock: a task
+ * submitted to the shard of a website reads a consistent snapshot of it.
+ */
+public interface ShardedExecutor {
+
+    /**
+     * @return The number of shards
+     */
+    int getShardCount();
+
+    /**
+     * This function finds the shard owning a website.
+     *
+     * @param siteId The identifier of the website in the site registry
+     * @return The index of the shard
+     */
+    default int shardOf(int siteId) {
+        return siteId % getShardCount();
+    }
+
+    /**
+     * This function runs a task on a shard, after the tasks and events already queued on it.
+     *
+     * @param shard The index of the shard
+     * @param task  The task to run
+     */
+    void execute(int shard, Runnable task);
+
+    /**
+     * @return An executor made of a single shard, running the tasks on the calling thread
+     */
+    static ShardedExecutor inline() {
+        return new ShardedExecutor() {
+            @Override
+            public int getShardCount() {
+                return 1;
+            }
+
+            @Override
+            public void execute(int shard, Runnable task) {
+                task.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import java.net.URI;
+
+/**
+ * This interface is implemented by the events concerning a single website. The {@link PipelineEventBus} uses it to
+ * dispatch every event of a website on the same partition, in order.
+ */
+public interface SiteEvent {
+    /**
+     * @return The identifier of the website in the site registry
+     */
+    int getSiteId();
+
+    /**
+     * @return The URI of the website concerned with the event
+     */
+    URI getUri();
+}
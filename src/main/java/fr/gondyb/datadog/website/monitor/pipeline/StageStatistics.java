@@ -0,0 +1,65 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import lombok.Getter;
+
+/**
+ * This immutable class is a snapshot of the throughput counters of a {@link PipelineEventBus} partition.
+ */
+@Getter
+public class StageStatistics {
+    /**
+     * The partition index.
+     */
+    private final int partition;
+
+    /**
+     * The number of events published in the partition queue.
+     */
+    private final long publishedEvents;
+
+    /**
+     * The number of events dispatched to the subscribers, including the events posted by the subscribers themselves.
+     */
+    private final long dispatchedEvents;
+
+    /**
+     * The number of batches read from the partition queue.
+     */
+    private final long batches;
+
+    /**
+     * The number of times a producer had to wait because the partition queue was full.
+     */
+    private final long backpressureWaits;
+
+    /**
+     * The number of events posted by other partitions to the overflow queue, while the partition queue was full.
+     */
+    private final long overflowedEvents;
+
+    /**
+     * The number of events waiting in the partition queue and its overflow queue.
+     */
+    private final long queueDepth;
+
+    /**
+     * Class constructor
+     *
+     * @param partition         The partition index
+     * @param publishedEvents   The number of events published in the partition queue
+     * @param dispatchedEvents  The number of events dispatched to the subscribers
+     * @param batches           The number of batches read from the partition queue
+     * @param backpressureWaits The number of times a producer had to wait because the partition queue was full
+     * @param overflowedEvents  The number of events posted by other partitions to the overflow queue
+     * @param queueDepth        The number of events waiting in the partition queue and its overflow queue
+     */
+    public StageStatistics(int partition, long publishedEvents, long dispatchedEvents, long batches, long backpressureWaits, long overflowedEvents, long queueDepth) {
+        this.partition = partition;
+        this.publishedEvents = publishedEvents;
+        this.dispatchedEvents = dispatchedEvents;
+        this.batches = batches;
+        this.backpressureWaits = backpressureWaits;
+        this.overflowedEvents = overflowedEvents;
+        this.queueDepth = queueDepth;
+    }
+}
@@ -0,0 +1,239 @@
+package fr.gondyb.datadog.website.monitor.registry;
+
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * This class gives every monitored website a compact int identifier, between 0 and {@link #capacity()}. The
+ * identifier is assigned when the website starts to be monitored, and is carried by every event concerning the
+ * website. It is retired when the {@link StopMonitorEvent} of the website is posted: the website is not found by its
+ * URI and name anymore, and registering it again assigns a new identifier. It is released once every subscriber
+ * handled the event, and then reused by the next registered website, so that the identifiers stay dense while websites
+ * are added and removed.
+ * <p>
+ * A website is identified by its URI and a name, empty by default. Naming them allows several monitors of the same
+ * URI (Ex: one per team, with their own interval), each with its own identifier and state.
+ * <p>
+ * The per-website state of the other modules is stored in arrays indexed by this identifier, sized by the capacity of
+ * the registry. Thus handling an event is an array access, instead of hashing the website URI in a map.
+ */
+public class SiteRegistry {
+
+    /**
+     * The URI of each identifier, null for the identifiers not assigned yet.
+     */
+    private final AtomicReferenceArray<URI> uris;
+
+    /**
+     * The name of each identifier, null for the identifiers not assigned.
+     */
+    private final AtomicReferenceArray<String> names;
+
+    /**
+     * The identifier of each registered URI and name. Only read when a website is registered.
+     */
+    private final Map<Map.Entry<URI, String>, Integer> ids = new ConcurrentHashMap<>();
+
+    /**
+     * The released identifiers, reused before new ones are assigned. Only accessed while holding the registry lock.
+     */
+    private final int[] freeIds;
+
+    /**
+     * The number of released identifiers in {@code freeIds}.
+     */
+    private int freeCount = 0;
+
+    /**
+     * The next identifier never assigned.
+     */
+    private volatile int nextId = 0;
+
+    /**
+     * The shards dispatching the events of the websites, releasing the identifiers.
+     */
+    private final ShardedExecutor shards;
+
+    /**
+     * Class constructor. The identifiers are released by the thread handling the {@link StopMonitorEvent}, as soon
+     * as it is handled by the registry.
+     *
+     * @param capacity The maximum number of websites
+     */
+    public SiteRegistry(int capacity) {
+        this(capacity, ShardedExecutor.inline());
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param capacity The maximum number of websites
+     * @param shards   The shards dispatching the events of the websites, releasing their identifiers
+     */
+    public SiteRegistry(int capacity, ShardedExecutor shards) {
+        this.shards = shards;
+        this.uris = new AtomicReferenceArray<>(capacity);
+        this.names = new AtomicReferenceArray<>(capacity);
+        this.freeIds = new int[capacity];
+    }
+
+    /**
+     * This function assigns an identifier to an unnamed website. A website registered twice keeps its identifier.
+     *
+     * @param uri The website URI
+     * @return The identifier of the website
+     * @throws IllegalStateException When the registry is full
+     */
+    public int register(URI uri) {
+        return register(uri, "");
+    }
+
+    /**
+     * This function assigns an identifier to a website. A website registered twice keeps its identifier.
+     *
+     * @param uri  The website URI
+     * @param name The website name, empty by default
+     * @return The identifier of the website
+     * @throws IllegalStateException When the registry is full
+     */
+    public synchronized int register(URI uri, String name) {
+        Map.Entry<URI, String> key = Map.entry(uri, name);
+        Integer id = ids.get(key);
+        if (id != null) {
+            return id;
+        }
+
+        int siteId;
+        if (freeCount > 0) {
+            siteId = freeIds[--freeCount];
+        } else if (nextId < uris.length()) {
+            siteId = nextId;
+            nextId = siteId + 1;
+        } else {
+            throw new IllegalStateException("Cannot monitor more than " + uris.length() + " websites");
+        }
+
+        uris.set(siteId, uri);
+        names.set(siteId, name);
+        ids.put(key, siteId);
+        return siteId;
+    }
+
+    /**
+     * This function retires the identifier of a website that is being stopped, before its {@link StopMonitorEvent} is
+     * posted. The website is not found by {@link #idOf(URI, String)} anymore, thus is not stopped or reconfigured
+     * twice, and registering it again assigns a new identifier. The identifier itself, with its URI and name, stays
+     * assigned until it is released.
+     *
+     * @param siteId The identifier of the website
+     * @param uri    The website URI, the identifier is not retired if it was assigned to another website since
+     * @return True if the identifier was retired, false if it was already
+     */
+    public synchronized boolean retire(int siteId, URI uri) {
+        if (!uri.equals(uris.get(siteId))) {
+            return false;
+        }
+        return ids.remove(Map.entry(uri, names.get(siteId)), siteId);
+    }
+
+    /**
+     * This function releases the identifier of a website, so that it can be assigned to another website. It is
+     * retired first, if it was not.
+     *
+     * @param siteId The identifier of the website
+     * @param uri    The website URI, the identifier is not released if it was assigned to another website since
+     * @return True if the identifier was released
+     */
+    public synchronized boolean release(int siteId, URI uri) {
+        if (!uri.equals(uris.get(siteId))) {
+            return false;
+        }
+        // The website may be registered again under a new identifier since it was retired
+        ids.remove(Map.entry(uri, names.get(siteId)), siteId);
+        uris.set(siteId, null);
+        names.set(siteId, null);
+        freeIds[freeCount++] = siteId;
+        return true;
+    }
+
+    /**
+     * This subscriber releases the identifier of a website that is not monitored anymore. The identifier is retired
+     * right away, if the poster of the event did not, and the release is queued on the shard owning the website,
+     * behind the event being dispatched, thus it happens once every other subscriber dropped the website state,
+     * whatever the order of the subscribers.
+     *
+     * @param event The {@link StopMonitorEvent} of the website
+     */
+    @Subscribe
+    public void handleStopMonitorEvent(StopMonitorEvent event) {
+        retire(event.getSiteId(), event.getUri());
+        shards.execute(shards.shardOf(event.getSiteId()), () -> release(event.getSiteId(), event.getUri()));
+    }
+
+    /**
+     * @param uri A website URI
+     * @return The identifier of the unnamed website, -1 if it is not registered or was retired
+     */
+    public int idOf(URI uri) {
+        return idOf(uri, "");
+    }
+
+    /**
+     * @param uri  A website URI
+     * @param name The website name
+     * @return The identifier of the website, -1 if it is not registered or was retired
+     */
+    public int idOf(URI uri, String name) {
+        return ids.getOrDefault(Map.entry(uri, name), -1);
+    }
+
+    /**
+     * @param siteId A website identifier
+     * @return The URI of the website followed by its name, if any, null if the identifier is not assigned
+     */
+    public String labelOf(int siteId) {
+        URI uri = uris.get(siteId);
+        String name = names.get(siteId);
+        if (uri == null || name == null) {
+            return null;
+        }
+        return name.isEmpty() ? uri.toString() : uri + " (" + name + ")";
+    }
+
+    /**
+     * @param siteId A website identifier
+     * @return The name of the website, empty if it is unnamed, null if the identifier is not assigned
+     */
+    public String nameOf(int siteId) {
+        return names.get(siteId);
+    }
+
+    /**
+     * @param siteId A website identifier
+     * @return The URI of the website, null if the identifier is not assigned
+     */
+    public URI uriOf(int siteId) {
+        return uris.get(siteId);
+    }
+
+    /**
+     * @return An upper bound of the assigned identifiers: every assigned identifier is lower. It does not decrease
+     * when identifiers are released.
+     */
+    public int idLimit() {
+        return nextId;
+    }
+
+    /**
+     * @return The maximum number of websites, thus the size of the per-website state arrays
+     */
+    public int capacity() {
+        return uris.length();
+    }
+}
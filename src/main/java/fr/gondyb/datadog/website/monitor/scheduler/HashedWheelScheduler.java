@@ -0,0 +1,291 @@
+package fr.gondyb.datadog.website.monitor.scheduler;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * This class is the central scheduler of the application. It replaces one {@link java.util.Timer} (and thus one
+ * thread) per periodic task with a single hashed timing wheel, driving a small pool of worker threads.
+ * <p>
+ * The wheel is an array of buckets, each one covering {@code tickDuration}. A single tick thread advances through the
+ * buckets, and hands expired tasks over to the workers. Registering or cancelling a task is O(1), so tens of thousands
+ * of periodic probes can be handled with a handful of threads.
+ * <p>
+ * The scheduling lag (the delay between a task deadline and the moment a worker actually runs it) is measured for
+ * every execution.
+ */
+public class HashedWheelScheduler {
+
+    /**
+     * The logger of the failing tasks.
+     */
+    private static final Logger LOGGER = Logger.getLogger(HashedWheelScheduler.class.getName());
+
+    /**
+     * The duration of one wheel bucket, in nanoseconds.
+     */
+    private final long tickNanos;
+
+    /**
+     * The wheel buckets. Only accessed by the tick thread.
+     */
+    private final List<ScheduledTask>[] wheel;
+
+    /**
+     * The mask used to find a bucket from a tick number. The wheel size is a power of two.
+     */
+    private final int mask;
+
+    /**
+     * Tasks waiting to be placed in the wheel by the tick thread.
+     */
+    private final Queue<ScheduledTask> pendingTasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * The pool running the expired tasks.
+     */
+    private final ExecutorService workers;
+
+    /**
+     * The thread advancing the wheel.
+     */
+    private final Thread tickThread;
+
+    /**
+     * The {@link System#nanoTime()} value at which the wheel started. Every deadline is relative to it.
+     */
+    private final long startNanos;
+
+    /**
+     * The number of tasks executed since the start.
+     */
+    private final LongAdder executedTasks = new LongAdder();
+
+    /**
+     * The sum of every scheduling lag in nanoseconds, used to compute the average lag.
+     */
+    private final LongAdder totalLagNanos = new LongAdder();
+
+    /**
+     * The maximum scheduling lag in nanoseconds.
+     */
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * The number of registered tasks that are not cancelled yet.
+     */
+    private final LongAdder activeTasks = new LongAdder();
+
+    /**
+     * The current tick number. Only accessed by the tick thread.
+     */
+    private long tick = 0;
+
+    /**
+     * False once the scheduler is shut down.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Class constructor. The tick thread starts right away.
+     *
+     * @param tickDuration  The duration of one wheel bucket
+     * @param unit          The unit of {@code tickDuration}
+     * @param wheelSize     The number of buckets, rounded up to a power of two
+     * @param workerThreads The number of threads running the tasks
+     */
+    @SuppressWarnings("unchecked")
+    public HashedWheelScheduler(long tickDuration, TimeUnit unit, int wheelSize, int workerThreads) {
+        this.tickNanos = unit.toNanos(tickDuration);
+
+        int size = Integer.highestOneBit(Math.max(wheelSize, 1) * 2 - 1);
+        this.wheel = new List[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = size - 1;
+
+        this.workers = Executors.newFixedThreadPool(
+                workerThreads,
+                new ThreadFactoryBuilder().setNameFormat("scheduler-worker-%d").setDaemon(true).build()
+        );
+
+        this.startNanos = System.nanoTime();
+        this.tickThread = new Thread(this::runWheel, "scheduler-tick");
+        this.tickThread.setDaemon(true);
+        this.tickThread.start();
+    }
+
+    /**
+     * This function registers a task to be run periodically, at a fixed rate.
+     *
+     * @param task   The task to run
+     * @param delay  The delay in milliseconds before the first execution
+     * @param period The period in milliseconds between two executions
+     * @return A handle allowing to cancel the task
+     */
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long delay, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("The period must be positive");
+        }
+        ScheduledTask scheduledTask = new ScheduledTask(
+                task,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay),
+                TimeUnit.MILLISECONDS.toNanos(period)
+        );
+        activeTasks.increment();
+        pendingTasks.add(scheduledTask);
+        return scheduledTask;
+    }
+
+    /**
+     * This function stops the tick thread and the workers. Registered tasks will not run anymore.
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(tickThread);
+        workers.shutdownNow();
+    }
+
+    /**
+     * @return The number of tasks executed since the start
+     */
+    public long getExecutedTasks() {
+        return executedTasks.sum();
+    }
+
+    /**
+     * @return The number of registered tasks that are not cancelled yet
+     */
+    public long getActiveTasks() {
+        return activeTasks.sum();
+    }
+
+    /**
+     * @return The average scheduling lag in nanoseconds, or 0 if no task ran yet
+     */
+    public long getAverageLagNanos() {
+        long executed = executedTasks.sum();
+        return executed == 0 ? 0 : totalLagNanos.sum() / executed;
+    }
+
+    /**
+     * @return The maximum scheduling lag in nanoseconds
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos.get();
+    }
+
+    /**
+     * The tick thread loop. It waits for the end of the current tick, places the new tasks in the wheel, then expires
+     * the tasks of the current bucket.
+     */
+    private void runWheel() {
+        while (running) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long sleepNanos;
+            while (running && (sleepNanos = tickDeadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+
+            transferPendingTasks();
+            expireBucket(wheel[(int) (tick & mask)], tickDeadline);
+            tick++;
+        }
+    }
+
+    /**
+     * This function places the newly registered tasks in their bucket, according to their deadline.
+     */
+    private void transferPendingTasks() {
+        ScheduledTask task;
+        while ((task = pendingTasks.poll()) != null) {
+            if (task.isCancelled()) {
+                activeTasks.decrement();
+                continue;
+            }
+            long expirationTick = Math.max((task.deadline - startNanos) / tickNanos, tick);
+            task.remainingRounds = (expirationTick - tick) / wheel.length;
+            wheel[(int) (expirationTick & mask)].add(task);
+        }
+    }
+
+    /**
+     * This function hands the expired tasks of a bucket over to the workers, and reschedules them for their next
+     * period. Cancelled tasks are dropped from the wheel.
+     *
+     * @param bucket       The bucket of the current tick
+     * @param tickDeadline The end of the current tick, as a {@link System#nanoTime()} value
+     */
+    private void expireBucket(List<ScheduledTask> bucket, long tickDeadline) {
+        int i = 0;
+        while (i < bucket.size()) {
+            ScheduledTask task = bucket.get(i);
+
+            boolean expired = !task.isCancelled() && task.remainingRounds <= 0 && task.deadline <= tickDeadline;
+            if (!task.isCancelled() && !expired) {
+                if (task.remainingRounds > 0) {
+                    task.remainingRounds--;
+                }
+                i++;
+                continue;
+            }
+
+            // Swap-remove, the order inside a bucket does not matter
+            int last = bucket.size() - 1;
+            bucket.set(i, bucket.get(last));
+            bucket.remove(last);
+
+            if (task.isCancelled()) {
+                activeTasks.decrement();
+                continue;
+            }
+
+            execute(task, task.deadline);
+            task.deadline += task.periodNanos;
+            pendingTasks.add(task);
+        }
+    }
+
+    /**
+     * This function runs a task on a worker, and measures its scheduling lag.
+     *
+     * @param task     The task to run
+     * @param deadline The deadline of this execution
+     */
+    private void execute(ScheduledTask task, long deadline) {
+        try {
+            workers.execute(() -> {
+                long lag = System.nanoTime() - deadline;
+                executedTasks.increment();
+                totalLagNanos.add(Math.max(lag, 0));
+                maxLagNanos.accumulateAndGet(lag, Math::max);
+
+                if (task.isCancelled()) {
+                    return;
+                }
+                try {
+                    task.task.run();
+                } catch (RuntimeException e) {
+                    // A failing task must not stop its next executions
+                    LOGGER.log(Level.SEVERE, "A scheduled task failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The scheduler is shutting down
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package fr.gondyb.datadog.website.monitor.scheduler;
+
+/**
+ * This class is a handle on a periodic task registered in a {@link HashedWheelScheduler}.
+ * It is only mutated by the scheduler tick thread, except for the {@code cancelled} flag.
+ */
+public class ScheduledTask {
+
+    /**
+     * The task to run at every deadline.
+     */
+    final Runnable task;
+
+    /**
+     * The period in nanoseconds between two executions.
+     */
+    final long periodNanos;
+
+    /**
+     * The next execution deadline, as a {@link System#nanoTime()} value.
+     */
+    long deadline;
+
+    /**
+     * The number of full wheel rotations left before the task expires.
+     */
+    long remainingRounds;
+
+    /**
+     * True when the task should not be executed anymore.
+     */
+    private volatile boolean cancelled = false;
+
+    /**
+     * Class constructor
+     *
+     * @param task        The task to run at every deadline
+     * @param deadline    The first execution deadline, as a {@link System#nanoTime()} value
+     * @param periodNanos The period in nanoseconds between two executions
+     */
+    ScheduledTask(Runnable task, long deadline, long periodNanos) {
+        this.task = task;
+        this.deadline = deadline;
+        this.periodNanos = periodNanos;
+    }
+
+    /**
+     * This function cancels the task. It is lazily removed from the wheel on its next expiration.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return True if the task was cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,192 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import java.util.Arrays;
+
+/**
+ * This class is a mergeable quantile sketch of latencies, in the manner of DDSketch. Latencies are counted in
+ * logarithmic bins, such that any quantile is returned with a relative error of at most {@link #RELATIVE_ACCURACY}.
+ * <p>
+ * Only the non-empty bins are stored, as sorted parallel arrays of bin indexes and counts. The number of bins only
+ * depends on the range of the latencies, not on the number of latencies: about 750 bins cover 1ms to 1 hour. Two
+ * sketches are merged by adding the counts of their bins, thus windows and websites can be combined without keeping
+ * the latencies themselves.
+ */
+public class LatencySketch {
+
+    /**
+     * The maximum relative error of the quantiles.
+     */
+    public static final double RELATIVE_ACCURACY = 0.01;
+
+    /**
+     * The ratio between the bounds of a bin.
+     */
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+    /**
+     * The logarithm of {@link #GAMMA}, used to compute the bin of a latency.
+     */
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    /**
+     * The number of bins allocated for an empty sketch.
+     */
+    private static final int INITIAL_CAPACITY = 8;
+
+    /**
+     * The indexes of the non-empty bins, sorted. The bin {@code i} holds the latencies in
+     * {@code ]GAMMA^(i-1), GAMMA^i]}.
+     */
+    private int[] indexes = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of latencies in each bin of {@code indexes}.
+     */
+    private int[] counts = new int[INITIAL_CAPACITY];
+
+    /**
+     * The number of non-empty bins.
+     */
+    private int size = 0;
+
+    /**
+     * The number of latencies lower than 1ms, which are not binned.
+     */
+    private long zeroCount = 0;
+
+    /**
+     * The number of latencies in the sketch.
+     */
+    private long count = 0;
+
+    /**
+     * This function adds a latency to the sketch.
+     *
+     * @param latency The latency in milliseconds
+     */
+    public void add(long latency) {
+        count++;
+        if (latency < 1) {
+            zeroCount++;
+            return;
+        }
+
+        int index = (int) Math.ceil(Math.log(latency) / LOG_GAMMA);
+        int position = Arrays.binarySearch(indexes, 0, size, index);
+        if (position >= 0) {
+            counts[position]++;
+            return;
+        }
+
+        position = -position - 1;
+        ensureCapacity(size + 1);
+        System.arraycopy(indexes, position, indexes, position + 1, size - position);
+        System.arraycopy(counts, position, counts, position + 1, size - position);
+        indexes[position] = index;
+        counts[position] = 1;
+        size++;
+    }
+
+    /**
+     * This function adds every latency of another sketch to this one.
+     *
+     * @param other The sketch to merge
+     */
+    public void merge(LatencySketch other) {
+        count += other.count;
+        zeroCount += other.zeroCount;
+        if (other.size == 0) {
+            return;
+        }
+
+        // Merge both sorted bin lists from their end, into the end of this sketch's arrays
+        ensureCapacity(size + other.size);
+        int mine = size - 1;
+        int theirs = other.size - 1;
+        int write = size + other.size - 1;
+        while (theirs >= 0) {
+            if (mine >= 0 && indexes[mine] > other.indexes[theirs]) {
+                indexes[write] = indexes[mine];
+                counts[write--] = counts[mine--];
+            } else if (mine >= 0 && indexes[mine] == other.indexes[theirs]) {
+                indexes[write] = indexes[mine];
+                counts[write--] = counts[mine--] + other.counts[theirs--];
+            } else {
+                indexes[write] = other.indexes[theirs];
+                counts[write--] = other.counts[theirs--];
+            }
+        }
+        while (mine >= 0) {
+            indexes[write] = indexes[mine];
+            counts[write--] = counts[mine--];
+        }
+
+        // Shared bins leave a gap at the start of the arrays
+        int merged = size + other.size - 1 - write;
+        System.arraycopy(indexes, write + 1, indexes, 0, merged);
+        System.arraycopy(counts, write + 1, counts, 0, merged);
+        size = merged;
+    }
+
+    /**
+     * This function empties the sketch. The bins arrays are kept, to be reused.
+     */
+    public void clear() {
+        size = 0;
+        zeroCount = 0;
+        count = 0;
+    }
+
+    /**
+     * @param quantile The quantile, between 0 and 1 (Ex: 0.99 for the 99th percentile)
+     * @return The latency in milliseconds at this quantile, -1 if the sketch is empty
+     */
+    public long quantile(double quantile) {
+        if (count == 0) {
+            return -1;
+        }
+
+        long rank = (long) (quantile * (count - 1));
+        long cumulated = zeroCount;
+        if (rank < cumulated) {
+            return 0;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulated += counts[i];
+            if (rank < cumulated) {
+                // The middle of the bin, so that the error is the same on both sides
+                return Math.round(2 * Math.pow(GAMMA, indexes[i]) / (GAMMA + 1));
+            }
+        }
+        return Math.round(2 * Math.pow(GAMMA, indexes[size - 1]) / (GAMMA + 1));
+    }
+
+    /**
+     * @return The number of latencies in the sketch
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * @return The estimated heap size of the sketch in bytes
+     */
+    public long footprintBytes() {
+        return MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 2 * MemoryFootprint.REFERENCE
+                + Integer.BYTES + 2 * Long.BYTES)
+                + 2 * MemoryFootprint.ofArray(indexes.length, Integer.BYTES);
+    }
+
+    /**
+     * This function grows the bins arrays, so that they can hold a number of bins.
+     *
+     * @param capacity The number of bins
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > indexes.length) {
+            int length = Math.max(capacity, indexes.length * 2);
+            indexes = Arrays.copyOf(indexes, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+/**
+ * This class contains the constants used to estimate the heap size of the statistics structures, on a 64 bits JVM
+ * with compressed references (the default below 32GB of heap).
+ */
+public final class MemoryFootprint {
+    /**
+     * The size in bytes of an object header.
+     */
+    public static final long OBJECT_HEADER = 12;
+
+    /**
+     * The size in bytes of an array header.
+     */
+    public static final long ARRAY_HEADER = 16;
+
+    /**
+     * The size in bytes of a reference.
+     */
+    public static final long REFERENCE = 4;
+
+    private MemoryFootprint() {
+    }
+
+    /**
+     * @param length      The array length
+     * @param elementSize The size in bytes of an element
+     * @return The size in bytes of the array, aligned on 8 bytes
+     */
+    public static long ofArray(long length, long elementSize) {
+        return align(ARRAY_HEADER + length * elementSize);
+    }
+
+    /**
+     * @param size A size in bytes
+     * @return The size aligned on 8 bytes, like objects in the heap
+     */
+    public static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,167 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+
+import java.util.Arrays;
+
+/**
+ * This class aggregates the checks of a website during a period of time: their count, latency sum, min, max and
+ * sketch, the hits per response code category, and the duration sum of each phase. Buckets are mergeable, so that the
+ * buckets of a period roll into the bucket of the enclosing period, and a window is answered by merging the buckets it
+ * spans.
+ */
+class RollupBucket {
+
+    /**
+     * The number of response code categories, indexed by {@code responseCode / 100}.
+     */
+    static final int RESPONSE_CODE_CATEGORIES = StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES;
+
+    /**
+     * The start in milliseconds since the epoch of the period of this bucket, -1 if the bucket is unused.
+     */
+    long start = -1;
+
+    /**
+     * The number of checks in this bucket.
+     */
+    int count = 0;
+
+    /**
+     * The sum of the latencies in milliseconds of the checks.
+     */
+    long sumLatencies = 0;
+
+    /**
+     * The minimum latency in milliseconds of the checks.
+     */
+    long minLatency = Long.MAX_VALUE;
+
+    /**
+     * The maximum latency in milliseconds of the checks.
+     */
+    long maxLatency = 0;
+
+    /**
+     * The sketch of the latencies of the checks, to compute percentiles.
+     */
+    final LatencySketch latencies = new LatencySketch();
+
+    /**
+     * The number of hits per response code category (1xx to 5xx).
+     */
+    final int[] responseCodesHits = new int[RESPONSE_CODE_CATEGORIES];
+
+    /**
+     * The sum of each phase duration in nanoseconds.
+     */
+    final long[] phaseSums = new long[ProbeTimings.PHASES];
+
+    /**
+     * The number of checks where each phase was measured.
+     */
+    final int[] phaseCounts = new int[ProbeTimings.PHASES];
+
+    /**
+     * This function empties the bucket, and assigns it to a new period.
+     *
+     * @param start The start in milliseconds since the epoch of the new period
+     */
+    void reset(long start) {
+        this.start = start;
+        count = 0;
+        sumLatencies = 0;
+        minLatency = Long.MAX_VALUE;
+        maxLatency = 0;
+        latencies.clear();
+        Arrays.fill(responseCodesHits, 0);
+        Arrays.fill(phaseSums, 0);
+        Arrays.fill(phaseCounts, 0);
+    }
+
+    /**
+     * This function adds a check to the bucket.
+     *
+     * @param latency      The latency in milliseconds of the check
+     * @param responseCode The HTTP response code, or -1 if the website was down
+     * @param timings      The duration of each phase of the check
+     */
+    void add(long latency, int responseCode, ProbeTimings timings) {
+        count++;
+        sumLatencies += latency;
+        minLatency = Math.min(minLatency, latency);
+        maxLatency = Math.max(maxLatency, latency);
+        latencies.add(latency);
+        if (responseCode >= 0) {
+            responseCodesHits[categoryOf(responseCode)]++;
+        }
+        for (int phase = 0; phase < ProbeTimings.PHASES; phase++) {
+            long duration = timings.getPhaseNanos(phase);
+            if (duration >= 0) {
+                phaseSums[phase] += duration;
+                phaseCounts[phase]++;
+            }
+        }
+    }
+
+    /**
+     * This function adds every check of another bucket to this one.
+     *
+     * @param other The bucket to merge
+     */
+    void merge(RollupBucket other) {
+        count += other.count;
+        sumLatencies += other.sumLatencies;
+        minLatency = Math.min(minLatency, other.minLatency);
+        maxLatency = Math.max(maxLatency, other.maxLatency);
+        latencies.merge(other.latencies);
+        for (int category = 0; category < RESPONSE_CODE_CATEGORIES; category++) {
+            responseCodesHits[category] += other.responseCodesHits[category];
+        }
+        for (int phase = 0; phase < ProbeTimings.PHASES; phase++) {
+            phaseSums[phase] += other.phaseSums[phase];
+            phaseCounts[phase] += other.phaseCounts[phase];
+        }
+    }
+
+    /**
+     * @return The average latency in milliseconds, -1 if the bucket is empty
+     */
+    long averageLatency() {
+        return count == 0 ? -1 : sumLatencies / count;
+    }
+
+    /**
+     * This function writes the average duration of each phase into an array, -1 for the phases that were never
+     * measured.
+     *
+     * @param averages The array to write into
+     * @param offset   The index of the first phase in the array
+     */
+    void averageTimingsInto(long[] averages, int offset) {
+        for (int phase = 0; phase < ProbeTimings.PHASES; phase++) {
+            averages[offset + phase] = phaseCounts[phase] == 0 ? -1 : phaseSums[phase] / phaseCounts[phase];
+        }
+    }
+
+    /**
+     * @return The estimated heap size of the bucket in bytes
+     */
+    long footprintBytes() {
+        return MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 4 * MemoryFootprint.REFERENCE
+                + 4 * Long.BYTES + Integer.BYTES)
+                + latencies.footprintBytes()
+                + MemoryFootprint.ofArray(RESPONSE_CODE_CATEGORIES, Integer.BYTES)
+                + MemoryFootprint.ofArray(ProbeTimings.PHASES, Long.BYTES)
+                + MemoryFootprint.ofArray(ProbeTimings.PHASES, Integer.BYTES);
+    }
+
+    /**
+     * @param responseCode A HTTP response code
+     * @return The response code category, between 0 and 5
+     */
+    private static int categoryOf(int responseCode) {
+        return Math.min(Math.max(responseCode / 100, 0), RESPONSE_CODE_CATEGORIES - 1);
+    }
+}
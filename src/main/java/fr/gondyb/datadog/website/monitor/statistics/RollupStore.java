@@ -0,0 +1,256 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class stores the checks of a website in time buckets: 60 buckets of one second, which roll into 60 buckets of
+ * one minute, which roll into 24 buckets of one hour. Every statistics window of the website (10 minutes, 1 hour, up
+ * to 24 hours) is answered from the same buckets, so that the memory used per website is bounded, whatever the
+ * polling rate.
+ * <p>
+ * A bucket of a level is rolled into the enclosing bucket of the next level when its period ends. Thus every check is
+ * counted exactly once: in the hour buckets for the ended minutes, in the current minute bucket for the ended seconds,
+ * and in the current second bucket. A window is aligned on the resolution of the level answering it: the 10 minutes
+ * window merges the current minute with the 9 previous ones.
+ * <p>
+ * The buckets are allocated the first time their slot is used, so that starting to monitor thousands of websites
+ * does not allocate every bucket up front. The memory used is still bounded by the number of slots.
+ * <p>
+ * This class is not thread-safe: it is only used by the shard owning its website, see
+ * {@link fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor}.
+ */
+public class RollupStore {
+
+    /**
+     * The duration in milliseconds of the buckets of each level.
+     */
+    private static final long[] RESOLUTIONS = {
+            TimeUnit.SECONDS.toMillis(1),
+            TimeUnit.MINUTES.toMillis(1),
+            TimeUnit.HOURS.toMillis(1)
+    };
+
+    /**
+     * The number of buckets of each level.
+     */
+    private static final int[] LENGTHS = {60, 60, 24};
+
+    /**
+     * The longest window that can be answered, in milliseconds.
+     */
+    public static final long MAX_WINDOW = RESOLUTIONS[2] * LENGTHS[2];
+
+    /**
+     * The buckets of each level, in rings indexed by {@code start / resolution}. A slot is null until first used.
+     */
+    private final RollupBucket[][] levels = new RollupBucket[RESOLUTIONS.length][];
+
+    /**
+     * The latency in milliseconds recorded for a down check.
+     */
+    private long downLatency;
+
+    /**
+     * The start in milliseconds since the epoch of the current second, -1 before the first check.
+     */
+    private long currentSecond = -1;
+
+    /**
+     * Class constructor
+     *
+     * @param downLatency The latency in milliseconds recorded for a down check, usually the polling rate
+     */
+    public RollupStore(long downLatency) {
+        this.downLatency = downLatency;
+        for (int level = 0; level < levels.length; level++) {
+            levels[level] = new RollupBucket[LENGTHS[level]];
+        }
+    }
+
+    /**
+     * This function changes the latency recorded for the next down checks, when the polling rate changes.
+     *
+     * @param downLatency The latency in milliseconds recorded for a down check
+     */
+    public void setDownLatency(long downLatency) {
+        this.downLatency = downLatency;
+    }
+
+    /**
+     * This function records a check of a website that was up.
+     *
+     * @param timestamp    The time in milliseconds since the epoch of the check
+     * @param latency      The latency in milliseconds of the check
+     * @param responseCode The HTTP response code
+     * @param timings      The duration of each phase of the check
+     */
+    public void addUp(long timestamp, long latency, int responseCode, ProbeTimings timings) {
+        advance(timestamp);
+        currentBucket(0).add(latency, responseCode, timings);
+    }
+
+    /**
+     * This function records a check of a website that was down.
+     *
+     * @param timestamp The time in milliseconds since the epoch of the check
+     */
+    public void addDown(long timestamp) {
+        advance(timestamp);
+        currentBucket(0).add(downLatency, -1, ProbeTimings.UNKNOWN);
+    }
+
+    /**
+     * This function merges the checks of a window ending now into a bucket.
+     *
+     * @param now    The current time in milliseconds since the epoch
+     * @param window The window duration in milliseconds, at most {@link #MAX_WINDOW}
+     * @param result The bucket to fill, emptied first
+     */
+    public void query(long now, long window, RollupBucket result) {
+        advance(now);
+        result.reset(now);
+
+        int level = levelOf(window);
+
+        // The checks not rolled into this level yet
+        for (int finer = 0; finer < level; finer++) {
+            mergeIfCurrent(levels[finer], RESOLUTIONS[finer], currentSecond, result);
+        }
+
+        long resolution = RESOLUTIONS[level];
+        long buckets = Math.min((window + resolution - 1) / resolution, LENGTHS[level]);
+        long lastStart = floor(Math.max(now, currentSecond), resolution);
+        for (long i = 0; i < buckets; i++) {
+            mergeIfCurrent(levels[level], resolution, lastStart - i * resolution, result);
+        }
+    }
+
+    /**
+     * @param window A window duration in milliseconds, at most {@link #MAX_WINDOW}
+     * @return The duration in milliseconds of the buckets answering the window: the window slides by this step
+     */
+    public static long resolutionOf(long window) {
+        return RESOLUTIONS[levelOf(window)];
+    }
+
+    /**
+     * @param window A window duration in milliseconds, at most {@link #MAX_WINDOW}
+     * @return The finest level whose buckets cover the window
+     */
+    private static int levelOf(long window) {
+        int level = 0;
+        while (level < RESOLUTIONS.length - 1 && window > RESOLUTIONS[level] * LENGTHS[level]) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * @return The estimated heap size of the store in bytes
+     */
+    public long footprintBytes() {
+        long size = MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + MemoryFootprint.REFERENCE + 2 * Long.BYTES)
+                + MemoryFootprint.ofArray(levels.length, MemoryFootprint.REFERENCE);
+        for (RollupBucket[] buckets : levels) {
+            size += MemoryFootprint.ofArray(buckets.length, MemoryFootprint.REFERENCE);
+            for (RollupBucket bucket : buckets) {
+                if (bucket != null) {
+                    size += bucket.footprintBytes();
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * This function moves the current second to the one of a timestamp, rolling the ended second into its minute,
+     * and the ended minute into its hour. A timestamp older than the current second is counted in the current second.
+     *
+     * @param timestamp The time in milliseconds since the epoch
+     */
+    private void advance(long timestamp) {
+        long second = floor(timestamp, RESOLUTIONS[0]);
+        if (currentSecond == -1) {
+            currentSecond = second;
+            bucketAt(0, second).reset(second);
+            return;
+        }
+        if (second <= currentSecond) {
+            return;
+        }
+
+        long endedMinute = floor(currentSecond, RESOLUTIONS[1]);
+        bucketFor(1, endedMinute).merge(bucketAt(0, currentSecond));
+        if (floor(second, RESOLUTIONS[1]) != endedMinute) {
+            bucketFor(2, floor(endedMinute, RESOLUTIONS[2])).merge(bucketAt(1, endedMinute));
+        }
+
+        currentSecond = second;
+        bucketAt(0, second).reset(second);
+    }
+
+    /**
+     * @param level The level
+     * @return The bucket of the level containing the current second
+     */
+    private RollupBucket currentBucket(int level) {
+        return bucketAt(level, floor(currentSecond, RESOLUTIONS[level]));
+    }
+
+    /**
+     * This function finds the bucket of a period, emptying it if it still holds an older period.
+     *
+     * @param level The level
+     * @param start The start in milliseconds since the epoch of the period
+     * @return The bucket of the period
+     */
+    private RollupBucket bucketFor(int level, long start) {
+        RollupBucket bucket = bucketAt(level, start);
+        if (bucket.start != start) {
+            bucket.reset(start);
+        }
+        return bucket;
+    }
+
+    /**
+     * @param level The level
+     * @param start The start in milliseconds since the epoch of the period
+     * @return The bucket where the period is stored, whichever period it currently holds, allocated if needed
+     */
+    private RollupBucket bucketAt(int level, long start) {
+        int slot = (int) Math.floorMod(start / RESOLUTIONS[level], (long) LENGTHS[level]);
+        RollupBucket bucket = levels[level][slot];
+        if (bucket == null) {
+            bucket = new RollupBucket();
+            levels[level][slot] = bucket;
+        }
+        return bucket;
+    }
+
+    /**
+     * This function merges the bucket of a period into a result, if the bucket still holds this period.
+     *
+     * @param buckets    The buckets of a level
+     * @param resolution The duration in milliseconds of the buckets
+     * @param timestamp  A time in milliseconds since the epoch in the period
+     * @param result     The bucket to merge into
+     */
+    private static void mergeIfCurrent(RollupBucket[] buckets, long resolution, long timestamp, RollupBucket result) {
+        long start = floor(timestamp, resolution);
+        RollupBucket bucket = buckets[(int) Math.floorMod(start / resolution, (long) buckets.length)];
+        if (bucket != null && bucket.start == start) {
+            result.merge(bucket);
+        }
+    }
+
+    /**
+     * @param timestamp  A time in milliseconds since the epoch
+     * @param resolution A duration in milliseconds
+     * @return The start of the period of this duration containing the timestamp
+     */
+    private static long floor(long timestamp, long resolution) {
+        return Math.floorDiv(timestamp, resolution) * resolution;
+    }
+}
@@ -0,0 +1,156 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+/**
+ * This class reads back, one check at a time, a block of checks written by a {@link SampleEncoder}. This class is not
+ * thread-safe.
+ */
+public class SampleDecoder {
+
+    /**
+     * The block.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The number of checks of the block.
+     */
+    private final int count;
+
+    /**
+     * The position in bits of the next check.
+     */
+    private long position = 0;
+
+    /**
+     * The number of checks read so far.
+     */
+    private int read = 0;
+
+    /**
+     * The timestamp of the current check.
+     */
+    private long timestamp;
+
+    /**
+     * The difference between the timestamps of the current and previous checks.
+     */
+    private long delta;
+
+    /**
+     * The latency of the current check, meaningless for a down check.
+     */
+    private long latency;
+
+    /**
+     * The status of the current check: its response code, or {@link SampleEncoder#DOWN}.
+     */
+    private int status;
+
+    /**
+     * Class constructor
+     *
+     * @param bytes The block
+     * @param count The number of checks of the block
+     */
+    public SampleDecoder(byte[] bytes, int count) {
+        this.bytes = bytes;
+        this.count = count;
+    }
+
+    /**
+     * This function reads the next check.
+     *
+     * @return False if every check was read
+     */
+    public boolean next() {
+        if (read == count) {
+            return false;
+        }
+        if (read == 0) {
+            timestamp = readBits(64);
+            latency = readSigned();
+            status = (int) readBits(SampleEncoder.STATUS_BITS);
+        } else {
+            delta += readSigned();
+            timestamp += delta;
+            latency += readSigned();
+            if (readBits(1) == 1) {
+                status = (int) readBits(SampleEncoder.STATUS_BITS);
+            }
+        }
+        read++;
+        return true;
+    }
+
+    /**
+     * @return The time in milliseconds since the epoch of the current check
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return The latency in milliseconds of the current check, meaningless for a down check
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return True if the website was up at the current check
+     */
+    public boolean isUp() {
+        return status != SampleEncoder.DOWN;
+    }
+
+    /**
+     * @return The response code of the current check, -1 for a down check
+     */
+    public int getResponseCode() {
+        return isUp() ? status : -1;
+    }
+
+    /**
+     * This function reads a signed value written by {@link SampleEncoder}.
+     *
+     * @return The value
+     */
+    private long readSigned() {
+        if (readBits(1) == 0) {
+            return 0;
+        }
+        if (readBits(1) == 0) {
+            return readBits(7) - 63;
+        }
+        if (readBits(1) == 0) {
+            return readBits(9) - 255;
+        }
+        if (readBits(1) == 0) {
+            return readBits(12) - 2047;
+        }
+        if (readBits(1) == 0) {
+            return (int) readBits(32);
+        }
+        return readBits(64);
+    }
+
+    /**
+     * This function reads bits, most significant first.
+     *
+     * @param bits The number of bits to read, at most 64
+     * @return The bits, in the lowest bits of the value
+     */
+    private long readBits(int bits) {
+        long value = 0;
+        while (bits > 0) {
+            int index = (int) (position >>> 3);
+            int available = 8 - (int) (position & 7);
+            int chunk = Math.min(available, bits);
+            int part = (bytes[index] >>> (available - chunk)) & ((1 << chunk) - 1);
+            value = (value << chunk) | part;
+            position += chunk;
+            bits -= chunk;
+        }
+        return value;
+    }
+}
@@ -1,30 +1,31 @@
 package fr.gondyb.datadog.website.monitor.statistics;
 
 import com.google.common.eventbus.EventBus;
-import fr.gondyb.datadog.website.monitor.alarm.AvailabilityCalculator;
-import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.scheduler.ScheduledTask;
 import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
-import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
-import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
-import org.apache.commons.collections4.queue.CircularFifoQueue;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
 
-import java.net.URI;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * This class constains diverse statistics about a website. It handles {@link WebsiteUpEvent}, {@link WebsiteDownEvent}
- * and {@link AvailabilityCalculatedEvent}. From these events, the class computes statistics and produces
- * {@link StatisticsUpdatedEvent} accordingly.
+ * This class aggregates the statistics of every website over a window of time (Ex: the last 10 minutes). The checks
+ * are stored once per website in a {@link RollupStore}, shared by every window. At every tick, the class queries the
+ * stores of the websites that changed since the previous tick, and produces a single {@link StatisticsUpdatedEvent}
+ * for all of them. A website checked less often than the window slides is changed by the slide alone: the websites
+ * whose window had checks are queried again every time the window drops a bucket.
+ * <p>
+ * The stores are only written by the shard owning their website. Thus a tick is run on every shard, each one querying
+ * the websites it owns without any lock, and the last shard to finish merges the parts into the event.
  */
 public class StatisticsAggregator {
 
     /**
-     * The URI of the websited concerned with the statistics.
+     * The percentiles of the latencies reported for each website.
      */
-    private final URI websiteUri;
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
 
     /**
      * The aggrgation time in milliseconds.
@@ -32,175 +33,290 @@ public class StatisticsAggregator {
     private final long savedStatisticsDuration;
 
     /**
-     * The latencies during the last {@code savedStatisticsDuration}.
+     * The store of the checks of each website, indexed by website identifier.
      */
-    private final CircularFifoQueue<Long> latencies;
+    private final RollupStore[] stores;
 
     /**
-     * The response codes during the last {@code savedStatisticsDuration}.
+     * The availability percentage of each website, indexed by website identifier.
      */
-    private final CircularFifoQueue<Integer> responseCodes;
+    private final double[] availabilities;
 
     /**
-     * A map containing the number of hits per response code category during the last {@code savedStatisticsDuration}.
+     * For each website, true if its statistics changed since the previous tick. Only read and written by the shard
+     * owning the website.
      */
-    private final Map<Integer, Integer> responseCodesHits;
+    private final boolean[] changed;
 
     /**
-     * The global EventBus.
+     * For each website, true if its window had checks when it was last published, thus may change when the window
+     * slides. Only read and written by the shard owning the website.
      */
-    private final EventBus eventBus;
+    private final boolean[] filled;
+
     /**
-     * The period of time in milliseconds at which requests are sent to the website.
+     * The step in milliseconds by which the window slides, the resolution of the buckets answering it.
      */
-    private final long pollingRate;
+    private final long slideStep;
+
     /**
-     * The minimum latency of the last {@code savedStatisticsDuration}.
+     * The time in milliseconds since the epoch of the previous tick. Only accessed by the ticks.
      */
-    private long minLatency = Long.MAX_VALUE;
+    private long previousTick = Long.MIN_VALUE;
+
     /**
-     * The maximum latency of the last {@code savedStatisticsDuration}.
+     * The periodic task pushing the statistics.
      */
-    private long maxLatency = 0;
+    private final ScheduledTask pushTask;
+
     /**
-     * The average latency of the last {@code savedStatisticsDuration}
+     * The bucket each window is merged into, one per shard, reused to avoid allocations.
      */
-    private long avgLatency = -1;
+    private final RollupBucket[] windows;
+
     /**
-     * The sum of latencies currently contained in {@code latencies} queue. Used to compute the {@code avgLatency}.
+     * The registry of the monitored websites.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The global EventBus.
      */
-    private long sumLatencies = 0;
+    private final EventBus eventBus;
+
     /**
-     * The availability percentage for the last {@code savedStatisticsDuration}.
+     * The shards owning the websites.
      */
-    private double availability = -1;
+    private final ShardedExecutor shards;
 
     /**
      * Class constructor
      *
-     * @param websiteUri              The URI of the websited concerned with the statistics
-     * @param pollingRate             The period of time in milliseconds at which requests are sent to the website
-     * @param savedStatisticsDuration The aggrgation time in milliseconds
+     * @param savedStatisticsDuration The aggrgation time in milliseconds, at most {@link RollupStore#MAX_WINDOW}
      * @param eventPushingRate        The update frequency of statistics (Ex: Statistics are updated every 10s)
+     * @param stores                  The store of the checks of each website, indexed by website identifier
+     * @param availabilities          The availability percentage of each website, indexed by website identifier
+     * @param registry                The registry of the monitored websites
      * @param eventBus                The global EventBus
+     * @param shards                  The shards owning the websites, running the ticks
+     * @param scheduler               The shared scheduler pushing the statistics
      */
-    public StatisticsAggregator(URI websiteUri, long pollingRate, long savedStatisticsDuration, long eventPushingRate, EventBus eventBus) {
-        this.pollingRate = pollingRate;
-        this.websiteUri = websiteUri;
+    public StatisticsAggregator(long savedStatisticsDuration, long eventPushingRate, RollupStore[] stores, double[] availabilities, SiteRegistry registry, EventBus eventBus, ShardedExecutor shards, HashedWheelScheduler scheduler) {
         this.savedStatisticsDuration = savedStatisticsDuration;
+        this.stores = stores;
+        this.availabilities = availabilities;
+        this.registry = registry;
         this.eventBus = eventBus;
+        this.shards = shards;
+        this.changed = new boolean[registry.capacity()];
+        this.filled = new boolean[registry.capacity()];
+        this.slideStep = RollupStore.resolutionOf(savedStatisticsDuration);
+        this.windows = new RollupBucket[shards.getShardCount()];
+        for (int shard = 0; shard < windows.length; shard++) {
+            windows[shard] = new RollupBucket();
+        }
 
-        // These queues' size is designed to hold exactly the amount of events during the duration of these statistics
-        this.latencies = new CircularFifoQueue<>((int) (savedStatisticsDuration / pollingRate));
-        responseCodes = new CircularFifoQueue<>((int) (savedStatisticsDuration / pollingRate));
-        responseCodesHits = new HashMap<>();
+        this.pushTask = scheduler.scheduleAtFixedRate(this::pushStatistics, 0, eventPushingRate);
+    }
 
-        Timer updateTimer = new Timer();
-        updateTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                pushStatistics();
-            }
-        }, 0, eventPushingRate);
+    /**
+     * This function stops pushing the statistics of the window.
+     */
+    public void stop() {
+        pushTask.cancel();
     }
 
     /**
-     * Handles {@link WebsiteUpEvent}. It triggers a new calculation of statistics.
+     * This function marks the statistics of a website as changed, so that they are part of the next tick. It must be
+     * called by the shard owning the website.
      *
-     * @param event The event containing the latency, and response code
+     * @param siteId The identifier of the website
      */
-    protected void handleWebsiteUpEvent(WebsiteUpEvent event) {
-        computeTimeStatistics(event.getResponseTime());
-        computeResponseCodesStatistics(event.getResponseCode());
+    void markChanged(int siteId) {
+        changed[siteId] = true;
     }
 
     /**
-     * Handles the {@link WebsiteDownEvent}. It triggers a new calculation of statistics?
-     *
-     * @param event The event containing the URI
+     * @return The estimated heap size in bytes of this window
      */
-    protected void handleWebsiteDownEvent(WebsiteDownEvent event) {
-        computeTimeStatistics(pollingRate);
+    public long footprintBytes() {
+        long footprint = MemoryFootprint.align(MemoryFootprint.OBJECT_HEADER + 9 * MemoryFootprint.REFERENCE + 3 * Long.BYTES)
+                + MemoryFootprint.ofArray(changed.length, 1)
+                + MemoryFootprint.ofArray(filled.length, 1)
+                + MemoryFootprint.ofArray(windows.length, MemoryFootprint.REFERENCE);
+        for (RollupBucket window : windows) {
+            footprint += window.footprintBytes();
+        }
+        return footprint;
     }
 
     /**
-     * Handles the {@link AvailabilityCalculatedEvent}. It updates the store availability.
-     *
-     * @param event The event containing the availability
-     * @see AvailabilityCalculator
+     * This functions produces a {@link StatisticsUpdatedEvent} to the EventBus, with the statistics of the window of
+     * every website that changed since the previous tick. Nothing is produced if no website changed.
+     * <p>
+     * The websites are queried by their shard, the event is produced by the last shard to finish.
      */
-    protected void handleAvailabilityCalculatedEvent(AvailabilityCalculatedEvent event) {
-        this.availability = event.getAvailability();
+    void pushStatistics() {
+        pushStatistics(System.currentTimeMillis());
     }
 
     /**
-     * This method computes the min, max and average latencies.
-     * To do so, it stores everything in a sum of every latency in the queue, then computes the average.
-     * For the min and max, we have to check if we remove the min or max from the queue. In that case, we need to find
-     * the second min and max before finding a new one.
+     * This functions produces a {@link StatisticsUpdatedEvent} to the EventBus, with the statistics of the window of
+     * every website that changed since the previous tick, or whose window slid away from some of its checks.
      *
-     * @param newLatency The latency to add to statistics
+     * @param now The current time in milliseconds since the epoch
      */
-    private void computeTimeStatistics(long newLatency) {
-        if (latencies.isAtFullCapacity()) {
-            long removedLatency = latencies.remove();
-            if (removedLatency == minLatency) {
-                minLatency = latencies.stream().mapToLong(v -> v).min().orElse(-1);
-            }
-            if (removedLatency == maxLatency) {
-                maxLatency = latencies.stream().mapToLong(v -> v).max().orElse(-1);
-            }
+    void pushStatistics(long now) {
+        boolean slid = Math.floorDiv(now, slideStep) != Math.floorDiv(previousTick, slideStep);
+        previousTick = now;
+        StatisticsUpdatedEvent[] parts = new StatisticsUpdatedEvent[shards.getShardCount()];
+        AtomicInteger pendingShards = new AtomicInteger(parts.length);
 
-            sumLatencies -= removedLatency;
+        for (int shard = 0; shard < parts.length; shard++) {
+            int owner = shard;
+            shards.execute(owner, () -> {
+                parts[owner] = collect(owner, now, slid);
+                // The atomic decrement publishes the part to the shard merging them
+                if (pendingShards.decrementAndGet() == 0) {
+                    publish(parts);
+                }
+            });
         }
-        latencies.add(newLatency);
-
-        minLatency = Math.min(minLatency, newLatency);
-        maxLatency = Math.max(maxLatency, newLatency);
-
-        sumLatencies += newLatency;
-        avgLatency = sumLatencies / latencies.size();
     }
 
     /**
-     * This methods stores the number of hits per response code categories.
-     * To do so, it increments the counter of {@code responseCodes}.
-     * If the queue is full, it firstly removes the last item from the queue, then decrements the appropriate counters.
-     * That way, there are only statistics from the correct duration in the couters.
+     * This function queries the window of the changed websites owned by a shard. It must be run by the shard.
      *
-     * @param responseCode The response code to add
+     * @param shard The index of the shard
+     * @param now   The current time in milliseconds since the epoch
+     * @param slid  True if the window dropped a bucket since the previous tick, changing the websites it had checks of
+     * @return The statistics of the changed websites of the shard, or null if none changed
      */
-    private void computeResponseCodesStatistics(Integer responseCode) {
-        if (responseCodes.isAtFullCapacity()) {
-            Integer responseCodeToRemove = responseCodes.remove();
+    private StatisticsUpdatedEvent collect(int shard, long now, boolean slid) {
+        int idLimit = registry.idLimit();
+        int step = shards.getShardCount();
 
-            Integer responseCodeCategory = responseCodeToRemove / 100;
+        int count = 0;
+        for (int siteId = shard; siteId < idLimit; siteId += step) {
+            if (slid && filled[siteId]) {
+                changed[siteId] = true;
+            }
+            if (changed[siteId] && stores[siteId] != null) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            return null;
+        }
+
+        int[] siteIds = new int[count];
+        long[] averageLatencies = new long[count];
+        long[] maxLatencies = new long[count];
+        long[] minLatencies = new long[count];
+        double[] siteAvailabilities = new double[count];
+        int[] responseCodeHits = new int[count * StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES];
+        long[] latencyPercentiles = new long[count * StatisticsUpdatedEvent.PERCENTILES];
+        long[] averageTimings = new long[count * ProbeTimings.PHASES];
 
-            Integer previousCounter = responseCodesHits.get(responseCodeCategory);
-            responseCodesHits.put(responseCodeCategory, previousCounter - 1);
+        RollupBucket window = windows[shard];
+        int i = 0;
+        for (int siteId = shard; siteId < idLimit && i < count; siteId += step) {
+            if (!changed[siteId] || stores[siteId] == null) {
+                continue;
+            }
+            changed[siteId] = false;
+            stores[siteId].query(now, savedStatisticsDuration, window);
+            filled[siteId] = window.count > 0;
+
+            siteIds[i] = siteId;
+            averageLatencies[i] = window.averageLatency();
+            maxLatencies[i] = window.maxLatency;
+            minLatencies[i] = window.count == 0 ? 0 : window.minLatency;
+            siteAvailabilities[i] = availabilities[siteId];
+            System.arraycopy(window.responseCodesHits, 0, responseCodeHits,
+                    i * StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES, StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES);
+            for (int q = 0; q < QUANTILES.length; q++) {
+                latencyPercentiles[i * StatisticsUpdatedEvent.PERCENTILES + q] = window.latencies.quantile(QUANTILES[q]);
+            }
+            window.averageTimingsInto(averageTimings, i * ProbeTimings.PHASES);
+            i++;
         }
 
-        Integer responseCodeCategory = responseCode / 100;
-        Integer previousCounter = responseCodesHits.getOrDefault(responseCodeCategory, 0);
-        responseCodesHits.put(responseCodeCategory, previousCounter + 1);
+        return new StatisticsUpdatedEvent(
+                savedStatisticsDuration,
+                siteIds,
+                averageLatencies,
+                maxLatencies,
+                minLatencies,
+                siteAvailabilities,
+                responseCodeHits,
+                latencyPercentiles,
+                averageTimings
+        );
     }
 
     /**
-     * This functions produces a {@link StatisticsUpdatedEvent} to the EventBus.
+     * This function merges the parts collected by the shards into a single {@link StatisticsUpdatedEvent}, and
+     * produces it to the EventBus.
+     *
+     * @param parts The statistics collected by each shard, null for the shards without changes
      */
-    private void pushStatistics() {
-        StatisticsUpdatedEvent event = new StatisticsUpdatedEvent(
-                this.websiteUri,
-                this.avgLatency,
-                this.maxLatency,
-                this.minLatency == Long.MAX_VALUE ? 0 : this.minLatency,
-                this.availability,
-                new HashMap<>(this.responseCodesHits),  // We need to create a new HashMap,
-                // otherwise the pointer is passed,
-                // and the window's data is updated continuously.
-                this.savedStatisticsDuration
-        );
+    private void publish(StatisticsUpdatedEvent[] parts) {
+        int count = 0;
+        StatisticsUpdatedEvent single = null;
+        for (StatisticsUpdatedEvent part : parts) {
+            if (part != null) {
+                count += part.getSiteCount();
+                single = part;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+        if (single.getSiteCount() == count) {
+            eventBus.post(single);
+            return;
+        }
+
+        int[] siteIds = new int[count];
+        long[] averageLatencies = new long[count];
+        long[] maxLatencies = new long[count];
+        long[] minLatencies = new long[count];
+        double[] siteAvailabilities = new double[count];
+        int[] responseCodeHits = new int[count * StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES];
+        long[] latencyPercentiles = new long[count * StatisticsUpdatedEvent.PERCENTILES];
+        long[] averageTimings = new long[count * ProbeTimings.PHASES];
+
+        int offset = 0;
+        for (StatisticsUpdatedEvent part : parts) {
+            if (part == null) {
+                continue;
+            }
+            int length = part.getSiteCount();
+            System.arraycopy(part.getSiteIds(), 0, siteIds, offset, length);
+            System.arraycopy(part.getAverageLatencies(), 0, averageLatencies, offset, length);
+            System.arraycopy(part.getMaxLatencies(), 0, maxLatencies, offset, length);
+            System.arraycopy(part.getMinLatencies(), 0, minLatencies, offset, length);
+            System.arraycopy(part.getAvailabilities(), 0, siteAvailabilities, offset, length);
+            System.arraycopy(part.getResponseCodeHits(), 0, responseCodeHits,
+                    offset * StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES, length * StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES);
+            System.arraycopy(part.getLatencyPercentiles(), 0, latencyPercentiles,
+                    offset * StatisticsUpdatedEvent.PERCENTILES, length * StatisticsUpdatedEvent.PERCENTILES);
+            System.arraycopy(part.getAverageTimings(), 0, averageTimings,
+                    offset * ProbeTimings.PHASES, length * ProbeTimings.PHASES);
+            offset += length;
+        }
 
-        eventBus.post(event);
+        eventBus.post(new StatisticsUpdatedEvent(
+                savedStatisticsDuration,
+                siteIds,
+                averageLatencies,
+                maxLatencies,
+                minLatencies,
+                siteAvailabilities,
+                responseCodeHits,
+                latencyPercentiles,
+                averageTimings
+        ));
     }
 }
@@ -3,129 +3,223 @@ package fr.gondyb.datadog.website.monitor.statistics;
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
 import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.persistence.RecoveredState;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.ui.event.ReconfigureMonitorEvent;
 import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
 
-import java.net.URI;
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
  * This class managed the differents statistics aggregators.
- * Its main jobs are to create the aggregator when a website starts to be monitored, and to transmit the events
- * to the appropriate aggregators.
+ * Its main jobs are to create the store of a website when it starts to be monitored, to record the checks in it, and
+ * to inform the aggregators of the websites whose statistics changed.
  */
 public class StatisticsManager {
     /**
-     * The global EventBus.
+     * The aggregators, one per window: the last 10 minutes updated every 10s, and the last hour updated every minute.
      */
-    private final EventBus eventBus;
+    private final StatisticsAggregator[] aggregators;
 
     /**
-     * The different aggregators for each URI.
+     * The store of the checks of each website, indexed by website identifier, shared by the aggregators.
      */
-    private final Map<URI, List<StatisticsAggregator>> aggregators;
+    private final RollupStore[] stores;
+
+    /**
+     * The availability percentage of each website, indexed by website identifier.
+     */
+    private final double[] availabilities;
+
+    /**
+     * The registry of the monitored websites.
+     */
+    private final SiteRegistry registry;
+
+    /**
+     * The stores rebuilt from the probe log at startup, claimed when their website starts to be monitored.
+     */
+    private final RecoveredState recovered;
+
+    /**
+     * Class Constructor, without any recovered state
+     *
+     * @param eventBus  The main EventBus
+     * @param shards    The shards owning the websites, on which the events are handled and the statistics queried
+     * @param scheduler The shared scheduler the aggregators register with
+     * @param registry  The registry of the monitored websites
+     */
+    public StatisticsManager(EventBus eventBus, ShardedExecutor shards, HashedWheelScheduler scheduler, SiteRegistry registry) {
+        this(eventBus, shards, scheduler, registry, RecoveredState.empty());
+    }
 
     /**
      * Class Constructor
      *
-     * @param eventBus The main EventBus
+     * @param eventBus  The main EventBus
+     * @param shards    The shards owning the websites, on which the events are handled and the statistics queried
+     * @param scheduler The shared scheduler the aggregators register with
+     * @param registry  The registry of the monitored websites
+     * @param recovered The stores rebuilt from the probe log at startup
      */
-    public StatisticsManager(EventBus eventBus) {
-        this.eventBus = eventBus;
-        this.aggregators = new HashMap<>();
+    public StatisticsManager(EventBus eventBus, ShardedExecutor shards, HashedWheelScheduler scheduler, SiteRegistry registry, RecoveredState recovered) {
+        this.registry = registry;
+        this.recovered = recovered;
+        this.stores = new RollupStore[registry.capacity()];
+        this.availabilities = new double[registry.capacity()];
+        this.aggregators = new StatisticsAggregator[]{
+                new StatisticsAggregator(
+                        TimeUnit.MINUTES.toMillis(10),
+                        TimeUnit.SECONDS.toMillis(10),
+                        stores,
+                        availabilities,
+                        registry,
+                        eventBus,
+                        shards,
+                        scheduler
+                ),
+                new StatisticsAggregator(
+                        TimeUnit.HOURS.toMillis(1),
+                        TimeUnit.MINUTES.toMillis(1),
+                        stores,
+                        availabilities,
+                        registry,
+                        eventBus,
+                        shards,
+                        scheduler
+                )
+        };
     }
 
     /**
-     * This subscriber handles the {@link WebsiteUpEvent}. Its job is to transmit this event to the correct aggregators,
-     * in order to compute statistics.
+     * This function stops pushing the statistics of every window.
+     */
+    public void stop() {
+        for (StatisticsAggregator aggregator : aggregators) {
+            aggregator.stop();
+        }
+    }
+
+    /**
+     * This subscriber handles the {@link WebsiteUpEvent}. Its job is to record the check in the store of the website,
+     * from which the aggregators compute statistics.
      *
-     * @param event The event to be transmitted
+     * @param event The event to be recorded
      */
     @Subscribe
     public void handleWebsiteUpEvent(WebsiteUpEvent event) {
-        List<StatisticsAggregator> websiteAggregators = this.aggregators.getOrDefault(
-                event.getUri(),
-                new ArrayList<>()
-        );
-
-        for (StatisticsAggregator aggregator : websiteAggregators) {
-            aggregator.handleWebsiteUpEvent(event);
+        RollupStore store = this.stores[event.getSiteId()];
+        if (store != null) {
+            store.addUp(event.getTimestamp(), event.getResponseTime(), event.getResponseCode(), event.getTimings());
+            markChanged(event.getSiteId());
         }
     }
 
     /**
-     * This subscriber handles the {@link WebsiteDownEvent}. Its job is to transmit this event to the correct
-     * aggregators, in order to compute statistics.
+     * This subscriber handles the {@link WebsiteDownEvent}. Its job is to record the check in the store of the
+     * website, from which the aggregators compute statistics.
      *
-     * @param event The event to be transmitted
+     * @param event The event to be recorded
      */
     @Subscribe
     public void handleWebsiteDownEvent(WebsiteDownEvent event) {
-        List<StatisticsAggregator> websiteAggregators = this.aggregators.getOrDefault(
-                event.getUri(),
-                new ArrayList<>()
-        );
-
-        for (StatisticsAggregator aggregator : websiteAggregators) {
-            aggregator.handleWebsiteDownEvent(event);
+        RollupStore store = this.stores[event.getSiteId()];
+        if (store != null) {
+            store.addDown(event.getTimestamp());
+            markChanged(event.getSiteId());
         }
     }
 
     /**
-     * This subscriber handles the {@link AvailabilityCalculatedEvent}. Its job is to transmit this event to the correct
-     * aggregators, in order to compute statistics.
+     * This subscriber handles the {@link AvailabilityCalculatedEvent}. Its job is to store the availability of the
+     * website, reported by the aggregators.
      *
-     * @param event The event to be transmitted
+     * @param event The event containing the availability
      */
     @Subscribe
     public void availabilityCalculatedEvent(AvailabilityCalculatedEvent event) {
-        List<StatisticsAggregator> websiteAggregators = this.aggregators.getOrDefault(
-                event.getUri(),
-                new ArrayList<>()
-        );
+        this.availabilities[event.getSiteId()] = event.getAvailability();
+        markChanged(event.getSiteId());
+    }
 
-        for (StatisticsAggregator aggregator : websiteAggregators) {
-            aggregator.handleAvailabilityCalculatedEvent(event);
+    /**
+     * This function reports the estimated heap size of the statistics of each website, so that the heap can be sized
+     * according to the number of monitored websites.
+     *
+     * @return A map where keys are website identifiers, as the monitors of a URI may differ by their name only, and
+     * values are the estimated heap size in bytes of their store
+     */
+    public Map<Integer, Long> getFootprintReport() {
+        Map<Integer, Long> report = new HashMap<>();
+        for (int siteId = 0; siteId < registry.idLimit(); siteId++) {
+            if (stores[siteId] != null) {
+                report.put(siteId, stores[siteId].footprintBytes());
+            }
         }
+        return report;
     }
 
     /**
-     * This subscriber handles the {@link StartMonitorEvent}. Its job is to create the appropriate aggregators, to
-     * start monitoring the statistics for a given site, with given updateRate and pushRates.
+     * This subscriber handles the {@link StartMonitorEvent}. Its job is to create the store of the website, read by
+     * the aggregators, to start monitoring the statistics for a given site. The store rebuilt from the probe log is
+     * used if there is one: the checks of the website are then handled after the replayed ones.
      *
      * @param event The event containing the website that will be monitored
      */
     @Subscribe
     public void handleStartMonitor(StartMonitorEvent event) {
-        StatisticsAggregator tenMinutesAggregator = new StatisticsAggregator(
-                event.getUri(),
-                event.getDelay(),
-                TimeUnit.MINUTES.toMillis(10),
-                TimeUnit.SECONDS.toMillis(10),
-                eventBus
-        );
-
-        StatisticsAggregator oneHourAggregator = new StatisticsAggregator(
-                event.getUri(),
-                event.getDelay(),
-                TimeUnit.HOURS.toMillis(1),
-                TimeUnit.MINUTES.toMillis(1),
-                eventBus
-        );
-
-        List<StatisticsAggregator> websiteAggregators = this.aggregators.getOrDefault(
-                event.getUri(),
-                new ArrayList<>()
-        );
-
-        websiteAggregators.add(tenMinutesAggregator);
-        websiteAggregators.add(oneHourAggregator);
-
-        this.aggregators.put(event.getUri(), websiteAggregators);
+        RollupStore store = recovered.takeStore(event.getUri(), registry.nameOf(event.getSiteId()));
+        if (store == null) {
+            store = new RollupStore(event.getDelay());
+        }
+        // A down check is recorded with the polling rate as latency
+        store.setDownLatency(event.getDelay());
+        this.availabilities[event.getSiteId()] = -1;
+        this.stores[event.getSiteId()] = store;
+        markChanged(event.getSiteId());
+    }
+
+    /**
+     * This subscriber handles the {@link ReconfigureMonitorEvent}. The store of the website is kept, only the latency
+     * of its down checks follows the new polling rate.
+     *
+     * @param event The event containing the new polling rate of the website
+     */
+    @Subscribe
+    public void handleReconfigureMonitor(ReconfigureMonitorEvent event) {
+        RollupStore store = this.stores[event.getSiteId()];
+        if (store != null) {
+            store.setDownLatency(event.getDelay());
+        }
+    }
+
+    /**
+     * This subscriber handles the {@link StopMonitorEvent}. Its job is to drop the store of the website, so that the
+     * aggregators stop reporting it.
+     *
+     * @param event The event containing the website that is not monitored anymore
+     */
+    @Subscribe
+    public void handleStopMonitor(StopMonitorEvent event) {
+        this.stores[event.getSiteId()] = null;
+        this.availabilities[event.getSiteId()] = -1;
+    }
+
+    /**
+     * This function informs every aggregator that the statistics of a website changed.
+     *
+     * @param siteId The identifier of the website
+     */
+    private void markChanged(int siteId) {
+        for (StatisticsAggregator aggregator : aggregators) {
+            aggregator.markChanged(siteId);
+        }
     }
 }
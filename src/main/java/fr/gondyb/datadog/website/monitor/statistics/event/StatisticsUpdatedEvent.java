@@ -1,68 +1,130 @@
 package fr.gondyb.datadog.website.monitor.statistics.event;
 
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
 import lombok.Getter;
 
-import java.net.URI;
-import java.util.Map;
-
 /**
- * This immutable class is an event informing that new statistics were calculated for a given website over a given period.
+ * This immutable class is an event informing that new statistics were calculated over a given period, for every
+ * website whose statistics changed since the previous event of this period.
+ * <p>
+ * The statistics are stored in primitive arrays, where index {@code i} is the {@code i}-th website of the batch. The
+ * multi-valued statistics are flattened: the response code hits of the {@code i}-th website start at
+ * {@code i * RESPONSE_CODE_CATEGORIES}, its percentiles at {@code i * PERCENTILES}, and its phase durations at
+ * {@code i * ProbeTimings.PHASES}. The arrays must not be modified.
  */
 @Getter
 public class StatisticsUpdatedEvent {
     /**
-     * The URI of the website concerned with these statistics.
+     * The number of response code categories, indexed by {@code responseCode / 100}.
      */
-    private final URI websiteUri;
+    public static final int RESPONSE_CODE_CATEGORIES = 6;
 
     /**
-     * The average latency in milliseconds for the website.
+     * The number of latency percentiles per website: p50, p90, p99 and p99.9.
      */
-    private final long averageLatency;
+    public static final int PERCENTILES = 4;
 
     /**
-     * The maximum latency in milliseconds for the website.
+     * THe duration in milliseconds during which these statistics have been aggregated.
      */
-    private final long maxLatency;
+    private final long savedStatisticsDuration;
 
     /**
-     * The minimum latency in milliseconds for the website.
+     * The identifier of each website of the batch.
      */
-    private final long minLatency;
+    private final int[] siteIds;
 
     /**
-     * The availability percentage for the website.
+     * The average latency in milliseconds of each website, -1 if it was not checked.
      */
-    private final double availability;
+    private final long[] averageLatencies;
 
     /**
-     * The different response codes returned by the website, where Keys are response code classes. Values are number of hits during the {@code savedStatisticsDuration}.
+     * The maximum latency in milliseconds of each website.
      */
-    private final Map<Integer, Integer> responseCodeHits;
+    private final long[] maxLatencies;
 
     /**
-     * THe duration in milliseconds during which these statistics have been aggregated.
+     * The minimum latency in milliseconds of each website.
      */
-    private final long savedStatisticsDuration;
+    private final long[] minLatencies;
+
+    /**
+     * The availability percentage of each website, -1 if it was not computed yet.
+     */
+    private final double[] availabilities;
+
+    /**
+     * The number of hits per response code category of each website.
+     */
+    private final int[] responseCodeHits;
+
+    /**
+     * The latency percentiles in milliseconds of each website (p50, p90, p99, p99.9), -1 if it was not checked.
+     */
+    private final long[] latencyPercentiles;
+
+    /**
+     * The average duration in nanoseconds of each phase of the checks of each website, -1 if it was never measured.
+     */
+    private final long[] averageTimings;
 
     /**
      * Class consstructor
      *
-     * @param uri                     The URI of the website concerned with these statistics
-     * @param averageLatency          The average latency in milliseconds for the website
-     * @param maxLatency              The maximum latency in milliseconds for the website
-     * @param minLatency              he minimum latency in milliseconds for the website
-     * @param availability            The availability percentage for the website
-     * @param responseCodeHits        The different response codes returned by the website, where Keys are response code classes. Values are number of hits during the {@code savedStatisticsDuration}
-     * @param savedStatisticsDuration He duration in milliseconds during which these statistics have been aggregated
-     */
-    public StatisticsUpdatedEvent(URI uri, long averageLatency, long maxLatency, long minLatency, double availability, Map<Integer, Integer> responseCodeHits, long savedStatisticsDuration) {
-        this.websiteUri = uri;
-        this.averageLatency = averageLatency;
-        this.maxLatency = maxLatency;
-        this.minLatency = minLatency;
-        this.availability = availability;
-        this.responseCodeHits = responseCodeHits;
+     * @param savedStatisticsDuration The duration in milliseconds during which these statistics have been aggregated
+     * @param siteIds                 The identifier of each website of the batch
+     * @param averageLatencies        The average latency in milliseconds of each website
+     * @param maxLatencies            The maximum latency in milliseconds of each website
+     * @param minLatencies            The minimum latency in milliseconds of each website
+     * @param availabilities          The availability percentage of each website
+     * @param responseCodeHits        The number of hits per response code category of each website
+     * @param latencyPercentiles      The latency percentiles in milliseconds of each website
+     * @param averageTimings          The average duration in nanoseconds of each phase of the checks of each website
+     */
+    public StatisticsUpdatedEvent(long savedStatisticsDuration, int[] siteIds, long[] averageLatencies, long[] maxLatencies, long[] minLatencies, double[] availabilities, int[] responseCodeHits, long[] latencyPercentiles, long[] averageTimings) {
         this.savedStatisticsDuration = savedStatisticsDuration;
+        this.siteIds = siteIds;
+        this.averageLatencies = averageLatencies;
+        this.maxLatencies = maxLatencies;
+        this.minLatencies = minLatencies;
+        this.availabilities = availabilities;
+        this.responseCodeHits = responseCodeHits;
+        this.latencyPercentiles = latencyPercentiles;
+        this.averageTimings = averageTimings;
+    }
+
+    /**
+     * @return The number of websites in the batch
+     */
+    public int getSiteCount() {
+        return siteIds.length;
+    }
+
+    /**
+     * @param index    The index of the website in the batch
+     * @param category The response code category (2 for 2xx)
+     * @return The number of hits of the category
+     */
+    public int getResponseCodeHits(int index, int category) {
+        return responseCodeHits[index * RESPONSE_CODE_CATEGORIES + category];
+    }
+
+    /**
+     * @param index      The index of the website in the batch
+     * @param percentile The index of the percentile: 0 for p50, 1 for p90, 2 for p99, 3 for p99.9
+     * @return The latency percentile in milliseconds, -1 if the website was not checked
+     */
+    public long getLatencyPercentile(int index, int percentile) {
+        return latencyPercentiles[index * PERCENTILES + percentile];
+    }
+
+    /**
+     * @param index The index of the website in the batch
+     * @param phase The phase, see {@link ProbeTimings#getPhaseNanos(int)}
+     * @return The average duration in nanoseconds of the phase, -1 if it was never measured
+     */
+    public long getAverageTiming(int index, int phase) {
+        return averageTimings[index * ProbeTimings.PHASES + phase];
     }
 }
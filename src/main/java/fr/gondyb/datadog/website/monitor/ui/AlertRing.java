@@ -0,0 +1,231 @@
+package fr.gondyb.datadog.website.monitor.ui;
+
+import com.googlecode.lanterna.gui2.table.Table;
+import com.googlecode.lanterna.gui2.table.TableModel;
+
+import java.net.URI;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+
+/**
+ * This class keeps the latest alerts in a ring of fixed capacity, and displays a page of them in a table, the newest
+ * first. When the ring is full, a new alert replaces the oldest one.
+ * <p>
+ * An alert is recorded as its raw values by the thread handling its event, and formatted by the GUI thread the first
+ * time it is displayed: the alerts never scrolled to, or replaced before being displayed, are never formatted. Like
+ * a {@link TableRenderModel}, the page is applied once per frame, updating only the rows that changed.
+ */
+class AlertRing {
+
+    /**
+     * The format of the time of an alert.
+     */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss")
+            .withZone(ZoneId.systemDefault());
+
+    /**
+     * The table displaying the alerts.
+     */
+    private final Table<String> table;
+
+    /**
+     * The time in milliseconds since the epoch of every alert of the ring. Guarded by this ring, like every array.
+     */
+    private final long[] timestamps;
+
+    /**
+     * The URI of the website of every alert.
+     */
+    private final URI[] uris;
+
+    /**
+     * The name of the website of every alert, empty if it is unnamed.
+     */
+    private final String[] names;
+
+    /**
+     * The availability percentage of every alert.
+     */
+    private final double[] availabilities;
+
+    /**
+     * True for an alert triggered, false for an alert stopped.
+     */
+    private final boolean[] triggered;
+
+    /**
+     * The text of every alert, null until it is first displayed.
+     */
+    private final String[] texts;
+
+    /**
+     * The number of alerts recorded since the start, the newest being at index {@code (appended - 1) % capacity}.
+     * Guarded by this ring.
+     */
+    private long appended = 0;
+
+    /**
+     * The number of alerts between the newest and the first displayed one. Guarded by this ring.
+     */
+    private int offset = 0;
+
+    /**
+     * The number of rows of a page. Guarded by this ring.
+     */
+    private int pageSize = 10;
+
+    /**
+     * True if an alert was recorded, or the page moved, since the previous frame. Guarded by this ring.
+     */
+    private boolean changed = false;
+
+    /**
+     * The number of the alert displayed in every row of the table, to tell which rows changed. Only accessed by the
+     * GUI thread.
+     */
+    private long[] displayed = new long[0];
+
+    /**
+     * The formatter of the availabilities. Only accessed by the GUI thread.
+     */
+    private final NumberFormat percentageFormat = new DecimalFormat("#0.0");
+
+    /**
+     * Class constructor
+     *
+     * @param table    The table displaying the alerts
+     * @param capacity The maximum number of alerts kept
+     */
+    AlertRing(Table<String> table, int capacity) {
+        this.table = table;
+        this.timestamps = new long[capacity];
+        this.uris = new URI[capacity];
+        this.names = new String[capacity];
+        this.availabilities = new double[capacity];
+        this.triggered = new boolean[capacity];
+        this.texts = new String[capacity];
+    }
+
+    /**
+     * This function records an alert. A page scrolled away from the newest alerts keeps displaying the same alerts.
+     *
+     * @param timestamp    The time in milliseconds since the epoch of the alert
+     * @param uri          The URI of the website
+     * @param name         The name of the website, empty if it is unnamed
+     * @param availability The availability percentage of the website
+     * @param isTriggered  True for an alert triggered, false for an alert stopped
+     */
+    synchronized void append(long timestamp, URI uri, String name, double availability, boolean isTriggered) {
+        int index = (int) (appended % timestamps.length);
+        timestamps[index] = timestamp;
+        uris[index] = uri;
+        names[index] = name;
+        availabilities[index] = availability;
+        triggered[index] = isTriggered;
+        texts[index] = null;
+        appended++;
+        if (offset > 0) {
+            offset = Math.min(offset + 1, maxOffset());
+        }
+        changed = true;
+    }
+
+    /**
+     * @param pageSize The number of rows of a page
+     */
+    synchronized void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        this.offset = Math.min(offset, maxOffset());
+        changed = true;
+    }
+
+    /**
+     * This function scrolls the page towards the older or the newer alerts, within the alerts kept.
+     *
+     * @param pages The number of pages to scroll by, positive towards the older alerts
+     */
+    synchronized void scroll(int pages) {
+        int scrolled = Math.max(0, Math.min(offset + pages * pageSize, maxOffset()));
+        if (scrolled != offset) {
+            offset = scrolled;
+            changed = true;
+        }
+    }
+
+    /**
+     * @return True if the table must be redrawn at the next frame
+     */
+    synchronized boolean hasChanges() {
+        return changed;
+    }
+
+    /**
+     * This function displays the current page in the table, updating only the rows whose alert changed since the
+     * previous frame. It must run on the GUI thread.
+     *
+     * @return The number of alerts formatted
+     */
+    int applyChanges() {
+        TableModel<String> model = table.getTableModel();
+        int formatted = 0;
+        synchronized (this) {
+            if (!changed) {
+                return 0;
+            }
+            changed = false;
+            int rows = (int) Math.max(0, Math.min(pageSize, kept() - offset));
+            long[] page = new long[rows];
+            for (int row = 0; row < rows; row++) {
+                // The number of the alert, counted from the first one recorded
+                page[row] = appended - 1 - offset - row;
+                if (row < displayed.length && displayed[row] == page[row]) {
+                    continue;
+                }
+                int index = (int) (page[row] % timestamps.length);
+                if (texts[index] == null) {
+                    texts[index] = format(index);
+                    formatted++;
+                }
+                if (row < model.getRowCount()) {
+                    model.setCell(0, row, texts[index]);
+                } else {
+                    model.addRow(Collections.singletonList(texts[index]));
+                }
+            }
+            displayed = page;
+        }
+        while (model.getRowCount() > displayed.length) {
+            model.removeRow(model.getRowCount() - 1);
+        }
+        return formatted;
+    }
+
+    /**
+     * @param index The index of an alert in the ring
+     * @return The text of the alert
+     */
+    private String format(int index) {
+        String label = names[index].isEmpty() ? uris[index].toString() : uris[index] + " (" + names[index] + ")";
+        return "Website " + label + (triggered[index] ? " is down." : " is up.") + "\t\tavailability: "
+                + percentageFormat.format(availabilities[index]) + "%\t\ttime: "
+                + TIME_FORMAT.format(Instant.ofEpochMilli(timestamps[index]));
+    }
+
+    /**
+     * @return The number of alerts kept in the ring
+     */
+    private long kept() {
+        return Math.min(appended, timestamps.length);
+    }
+
+    /**
+     * @return The offset of the page displaying the oldest alerts kept
+     */
+    private int maxOffset() {
+        return (int) Math.max(0, kept() - pageSize);
+    }
+}
@@ -12,7 +12,10 @@ import com.googlecode.lanterna.terminal.DefaultTerminalFactory;
 import com.googlecode.lanterna.terminal.Terminal;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
 import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
 
 import java.io.IOException;
 
@@ -30,10 +33,12 @@ public class MainScreen {
     /**
      * Class Constructor
      *
-     * @param eventBus The main EventBus
+     * @param eventBus  The main EventBus
+     * @param registry  The registry of the monitored websites
+     * @param scheduler The shared scheduler, driving the redraws of the statistics tables
      */
-    public MainScreen(EventBus eventBus) {
-        mainWindow = new MainWindow(eventBus);
+    public MainScreen(EventBus eventBus, SiteRegistry registry, HashedWheelScheduler scheduler) {
+        mainWindow = new MainWindow(eventBus, registry, scheduler);
     }
 
     /**
@@ -85,4 +90,14 @@ public class MainScreen {
         mainWindow.onStatisticsUpdatedEvent(event);
     }
 
+    /**
+     * This function transmits a {@link StopMonitorEvent} to the main window, to remove the statistics of the website.
+     *
+     * @param event The event to be transmitted
+     */
+    @Subscribe
+    public void handleStopMonitorEvent(StopMonitorEvent event) {
+        mainWindow.onStopMonitorEvent(event);
+    }
+
 }
@@ -10,9 +10,12 @@ import com.googlecode.lanterna.gui2.table.Table;
 import fr.gondyb.datadog.website.monitor.alarm.AlarmDetector;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
 import fr.gondyb.datadog.website.monitor.statistics.StatisticsAggregator;
 import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
 import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
 
 import java.net.MalformedURLException;
 import java.net.URI;
@@ -22,12 +25,28 @@ import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * This class is the main window. It contains the different UI components. The library used for this UI is Lanterna.
  */
 public class MainWindow extends BasicWindow {
 
+    /**
+     * The delay in milliseconds between two redraws of the statistics tables, at most 10 per second.
+     */
+    private static final long FRAME_INTERVAL = 100;
+
+    /**
+     * The maximum number of alerts kept in the alerts table, the oldest being dropped.
+     */
+    private static final int ALERT_CAPACITY = 1000;
+
+    /**
+     * The formatter of the percentages, one per thread since a {@link NumberFormat} is not thread-safe.
+     */
+    private static final ThreadLocal<NumberFormat> PERCENTAGE_FORMAT = ThreadLocal.withInitial(() -> new DecimalFormat("#0.0"));
+
     /**
      * This panel contains the last 10 minutes table, updated every minute.
      */
@@ -59,27 +78,55 @@ public class MainWindow extends BasicWindow {
     private final Panel alertsPanel = new Panel();
 
     /**
-     * This map contains the last statistics for the last 10 minutes, sorted by website URI.
+     * The changes of the rows of the last 10 minutes table, applied once per frame.
+     */
+    private final TableRenderModel minuteModel;
+
+    /**
+     * The changes of the rows of the last hour table, applied once per frame.
+     */
+    private final TableRenderModel hourModel;
+
+    /**
+     * The latest alerts, displayed in the alerts table once per frame.
      */
-    private final Map<URI, StatisticsUpdatedEvent> minuteStats = new HashMap<>();
+    private final AlertRing alertRing;
 
     /**
-     * This map contains the last statistics for the last hour, sorted by website URI.
+     * The line telling how the statistics tables are sorted, and which page they display.
      */
-    private final Map<URI, StatisticsUpdatedEvent> hourStats = new HashMap<>();
+    private final Label rankingLabel = new Label("");
+
+    /**
+     * The criteria the statistics tables are sorted by, the worst websites first.
+     */
+    private volatile SiteRanking.SortKey sortKey = SiteRanking.SortKey.AVAILABILITY;
+
+    /**
+     * True if a frame was requested from the GUI thread and has not run yet.
+     */
+    private final AtomicBoolean framePending = new AtomicBoolean();
 
     /**
      * The global EventBus.
      */
     private final EventBus eventBus;
 
+    /**
+     * The registry of the monitored websites.
+     */
+    private final SiteRegistry registry;
+
     /**
      * Class constructor
      *
-     * @param eventBus The global EventBus
+     * @param eventBus  The global EventBus
+     * @param registry  The registry of the monitored websites
+     * @param scheduler The shared scheduler, requesting the frames
      */
-    public MainWindow(EventBus eventBus) {
+    public MainWindow(EventBus eventBus, SiteRegistry registry, HashedWheelScheduler scheduler) {
         this.eventBus = eventBus;
+        this.registry = registry;
 
         Panel mainPanel = new Panel(new LinearLayout(Direction.VERTICAL));
 
@@ -89,6 +136,10 @@ public class MainWindow extends BasicWindow {
                 "Min (ms)",
                 "Max (ms)",
                 "Avg (ms)",
+                "p50 (ms)",
+                "p90 (ms)",
+                "p99 (ms)",
+                "p99.9 (ms)",
                 "Availability (%)",
                 "2xx Hits",
                 "3xx Hits",
@@ -107,12 +158,17 @@ public class MainWindow extends BasicWindow {
         );
         hourlyStatsPanel.addComponent(hourTable);
 
+        minuteModel = new TableRenderModel(minuteTable, registry.capacity());
+        hourModel = new TableRenderModel(hourTable, registry.capacity());
+        scheduler.scheduleAtFixedRate(this::requestFrame, FRAME_INTERVAL, FRAME_INTERVAL);
+
         mainPanel.addComponent(minuteStatsPanel.withBorder(Borders.singleLine("Last 10 minutes stats - Updated every 10s")));
         mainPanel.addComponent(hourlyStatsPanel.withBorder(Borders.singleLine("Last hour stats - Updated every minute")));
 
         alertsPanel.setLayoutManager(new LinearLayout());
         alertsTable = new Table<>("");
         alertsPanel.addComponent(alertsTable);
+        alertRing = new AlertRing(alertsTable, ALERT_CAPACITY);
 
         mainPanel.addComponent(alertsPanel.withBorder(Borders.singleLine("Down alerts")));
 
@@ -120,6 +176,14 @@ public class MainWindow extends BasicWindow {
         tipsPanel.addComponent(new Label("Press q to exit"));
         tipsPanel.addComponent(new EmptySpace());
         tipsPanel.addComponent(new Label("Press a to add a new website"));
+        tipsPanel.addComponent(new EmptySpace());
+        tipsPanel.addComponent(new Label("Press r to remove a website"));
+        tipsPanel.addComponent(new EmptySpace());
+        tipsPanel.addComponent(new Label("Press s to sort, n/p to page"));
+        tipsPanel.addComponent(new EmptySpace());
+        tipsPanel.addComponent(new Label("Press [/] to scroll the alerts"));
+        tipsPanel.addComponent(new EmptySpace());
+        tipsPanel.addComponent(rankingLabel);
 
         Panel rootPanel = new Panel();
         rootPanel.addComponent(mainPanel);
@@ -133,7 +197,8 @@ public class MainWindow extends BasicWindow {
 
     /**
      * This function displays the new website form, allowing a user to start a new monitor.
-     * It then produces a {@link StartMonitorEvent} to inform other components of the new monitor.
+     * It then registers the website, and produces a {@link StartMonitorEvent} to inform other components of the new
+     * monitor.
      *
      * @see MainWindowListener
      */
@@ -177,12 +242,68 @@ public class MainWindow extends BasicWindow {
 
         long period = Long.parseLong(websitePeriodString);
 
+        if (registry.idOf(websiteUri) != -1) {
+            MessageDialog.showMessageDialog(
+                    getTextGUI(),
+                    "Error",
+                    "The website " + websiteUri + " is already monitored.",
+                    MessageDialogButton.OK
+            );
+            return;
+        }
+
+        int siteId;
+        try {
+            siteId = registry.register(websiteUri);
+        } catch (IllegalStateException e) {
+            MessageDialog.showMessageDialog(getTextGUI(), "Error", e.getMessage(), MessageDialogButton.OK);
+            return;
+        }
+
         eventBus.post(new StartMonitorEvent(
+                siteId,
                 websiteUri,
                 period
         ));
     }
 
+    /**
+     * This function displays the remove website form, allowing a user to stop a monitor.
+     * It produces a {@link StopMonitorEvent}, so that every component releases the state of the website.
+     */
+    public void displayRemoveWebsiteForm() {
+        String websiteUriString = TextInputDialog.showDialog(
+                getTextGUI(),
+                "Remove website",
+                "Please enter the URL of the website to stop monitoring",
+                ""
+        );
+
+        if (websiteUriString == null || websiteUriString.isEmpty()) {
+            return;
+        }
+
+        URI websiteUri;
+        try {
+            websiteUri = new URL(websiteUriString).toURI();
+        } catch (MalformedURLException | URISyntaxException e) {
+            websiteUri = null;
+        }
+
+        int siteId = websiteUri == null ? -1 : registry.idOf(websiteUri);
+        if (siteId == -1 || !registry.retire(siteId, websiteUri)) {
+            MessageDialog.showMessageDialog(
+                    getTextGUI(),
+                    "Error",
+                    "The website " + websiteUriString + " is not monitored.",
+                    MessageDialogButton.OK
+            );
+            return;
+        }
+
+        eventBus.post(new StopMonitorEvent(siteId, websiteUri));
+    }
+
     /**
      * This function update panel sizes when the terminal is resized.
      *
@@ -193,84 +314,160 @@ public class MainWindow extends BasicWindow {
         minuteStatsPanel.setPreferredSize(third);
         hourlyStatsPanel.setPreferredSize(third);
         alertsPanel.setPreferredSize(third);
+        // A page fills the panel, below the header of the table
+        minuteModel.setPageSize(third.getRows() - 1);
+        hourModel.setPageSize(third.getRows() - 1);
+        alertRing.setPageSize(third.getRows() - 1);
     }
 
     /**
-     * This function adds an {@link AlarmTriggeredEvent} to the alarms table.
+     * This function adds an {@link AlarmTriggeredEvent} to the alarms table, at the next frame.
      *
      * @param event The event to be added to the table
      * @see AlarmDetector
      */
     void onAlarmTriggeredEvent(AlarmTriggeredEvent event) {
-        Date currentDate = new Date();
-        NumberFormat formatter = new DecimalFormat("#0.0");
-        alertsTable.getTableModel().insertRow(
-                0,
-                Collections.singletonList("Website " + event.getUri() + " is down.\t\tavailability: " + formatter.format(event.getAvailabilityPercentage()) + "%\t\ttime: " + currentDate)
-        );
+        alertRing.append(event.getTimestamp(), event.getUri(), nameOf(event.getSiteId()), event.getAvailabilityPercentage(), true);
     }
 
     /**
-     * This function adds an {@link AlarmStoppedEvent} to the alarm table.
+     * This function adds an {@link AlarmStoppedEvent} to the alarm table, at the next frame.
      *
      * @param event The event to be added to the table
      * @see AlarmDetector
      */
     void onAlarmStoppedEvent(AlarmStoppedEvent event) {
-        Date currentDate = new Date();
-        NumberFormat formatter = new DecimalFormat("#0.0");
-        alertsTable.getTableModel().insertRow(
-                0,
-                Collections.singletonList("Website " + event.getUri() + " is up.\t\tavailability: " + formatter.format(event.getAvailabilityPercentage()) + "%\t\ttime: " + currentDate)
-        );
+        alertRing.append(event.getTimestamp(), event.getUri(), nameOf(event.getSiteId()), event.getAvailabilityPercentage(), false);
     }
 
     /**
-     * This function updates the table statistics with new statistics.
+     * This function scrolls the alerts table.
+     *
+     * @param pages The number of pages to scroll by, positive towards the older alerts
+     */
+    void scrollAlerts(int pages) {
+        alertRing.scroll(pages);
+    }
+
+    /**
+     * @param siteId The identifier of the website in the site registry
+     * @return The name of the website, empty if it is unnamed or was removed
+     */
+    private String nameOf(int siteId) {
+        String name = registry.nameOf(siteId);
+        return name == null ? "" : name;
+    }
+
+    /**
+     * This function updates the table statistics with a batch of new statistics. Only the rows of the websites of the
+     * batch are formatted again, and recorded to be applied to the table of the batch period at the next frame.
      *
      * @param event The new statistics to be displayed
      * @see StatisticsAggregator
      */
     void onStatisticsUpdatedEvent(StatisticsUpdatedEvent event) {
+        TableRenderModel model;
         if (event.getSavedStatisticsDuration() == TimeUnit.MINUTES.toMillis(10)) {
-            minuteStats.put(event.getWebsiteUri(), event);
+            model = minuteModel;
         } else if (event.getSavedStatisticsDuration() == TimeUnit.HOURS.toMillis(1)) {
-            hourStats.put(event.getWebsiteUri(), event);
+            model = hourModel;
+        } else {
+            return;
         }
 
-        minuteTable.getTableModel().clear();
-        NumberFormat formatter = new DecimalFormat("#0.0");
-
-        for (StatisticsUpdatedEvent siteEvent : minuteStats.values()) {
-            minuteTable.getTableModel().addRow(
-                    siteEvent.getWebsiteUri().toString(),
-                    siteEvent.getMinLatency() == 0 ? "" : String.valueOf(siteEvent.getMinLatency()),
-                    siteEvent.getMaxLatency() == 0 ? "" : String.valueOf(siteEvent.getMaxLatency()),
-                    siteEvent.getAverageLatency() == -1 ? "" : String.valueOf(siteEvent.getAverageLatency()),
-                    siteEvent.getAvailability() == -1 ? "" : formatter.format(siteEvent.getAvailability()),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(2, 0)),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(3, 0)),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(4, 0)),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(5, 0))
-            );
+        NumberFormat formatter = PERCENTAGE_FORMAT.get();
+        int[] hits = new int[StatisticsUpdatedEvent.RESPONSE_CODE_CATEGORIES];
+        for (int i = 0; i < event.getSiteCount(); i++) {
+            int siteId = event.getSiteIds()[i];
+            String label = registry.labelOf(siteId);
+            if (label == null) {
+                // The website was removed after the statistics were computed
+                continue;
+            }
+            int total = 0;
+            for (int category = 0; category < hits.length; category++) {
+                hits[category] = event.getResponseCodeHits(i, category);
+                total += hits[category];
+            }
+            double errorRate = total == 0 ? -1 : (double) (hits[4] + hits[5]) / total;
+            model.update(siteId, new String[]{
+                    label,
+                    event.getMinLatencies()[i] == 0 ? "" : String.valueOf(event.getMinLatencies()[i]),
+                    event.getMaxLatencies()[i] == 0 ? "" : String.valueOf(event.getMaxLatencies()[i]),
+                    event.getAverageLatencies()[i] == -1 ? "" : String.valueOf(event.getAverageLatencies()[i]),
+                    percentile(event.getLatencyPercentile(i, 0)),
+                    percentile(event.getLatencyPercentile(i, 1)),
+                    percentile(event.getLatencyPercentile(i, 2)),
+                    percentile(event.getLatencyPercentile(i, 3)),
+                    event.getAvailabilities()[i] == -1 ? "" : formatter.format(event.getAvailabilities()[i]),
+                    String.valueOf(hits[2]),
+                    String.valueOf(hits[3]),
+                    String.valueOf(hits[4]),
+                    String.valueOf(hits[5])
+            }, event.getAvailabilities()[i], event.getLatencyPercentile(i, 2), errorRate);
         }
+    }
 
-        hourTable.getTableModel().clear();
-
-        for (StatisticsUpdatedEvent siteEvent : hourStats.values()) {
-            hourTable.getTableModel().addRow(
-                    siteEvent.getWebsiteUri().toString(),
-                    siteEvent.getMinLatency() == 0 ? "" : String.valueOf(siteEvent.getMinLatency()),
-                    siteEvent.getMaxLatency() == 0 ? "" : String.valueOf(siteEvent.getMaxLatency()),
-                    siteEvent.getAverageLatency() == -1 ? "" : String.valueOf(siteEvent.getAverageLatency()),
-                    siteEvent.getAvailability() == -1 ? "" : formatter.format(siteEvent.getAvailability()),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(2, 0)),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(3, 0)),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(4, 0)),
-                    String.valueOf(siteEvent.getResponseCodeHits().getOrDefault(5, 0))
-            );
-        }
+    /**
+     * This function removes the rows of a website that is not monitored anymore.
+     *
+     * @param event The event containing the website
+     */
+    void onStopMonitorEvent(StopMonitorEvent event) {
+        minuteModel.remove(event.getSiteId());
+        hourModel.remove(event.getSiteId());
+    }
+
+    /**
+     * This function sorts the statistics tables by the next criteria, displaying their first page.
+     */
+    void sortByNextKey() {
+        sortKey = sortKey.next();
+        minuteModel.setSortKey(sortKey);
+        hourModel.setSortKey(sortKey);
+    }
+
+    /**
+     * This function moves the statistics tables to another page.
+     *
+     * @param offset The number of pages to move by, negative to move backwards
+     */
+    void movePage(int offset) {
+        minuteModel.movePage(offset);
+        hourModel.movePage(offset);
     }
 
+    /**
+     * This function asks the GUI thread to apply the changes of the statistics and alerts tables, if any, unless it was already
+     * asked and has not done it yet. Thus the tables are redrawn at most once per frame, whatever the number of
+     * updates in between.
+     */
+    private void requestFrame() {
+        WindowBasedTextGUI gui = getTextGUI();
+        boolean changed = minuteModel.hasChanges() || hourModel.hasChanges() || alertRing.hasChanges();
+        if (gui == null || !changed || !framePending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            gui.getGUIThread().invokeLater(() -> {
+                framePending.set(false);
+                minuteModel.applyChanges();
+                hourModel.applyChanges();
+                alertRing.applyChanges();
+                rankingLabel.setText("Worst " + sortKey.label + " first, page "
+                        + (minuteModel.getPage() + 1) + "/" + minuteModel.getPageCount());
+            });
+        } catch (IllegalStateException e) {
+            // The GUI is stopping
+            framePending.set(false);
+        }
+    }
 
+    /**
+     * @param latency A latency percentile in milliseconds, -1 if there was no check
+     * @return The table cell of the percentile
+     */
+    private static String percentile(long latency) {
+        return latency == -1 ? "" : String.valueOf(latency);
+    }
 }
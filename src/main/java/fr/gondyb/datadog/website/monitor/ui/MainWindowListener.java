@@ -5,6 +5,7 @@ import com.googlecode.lanterna.TerminalSize;
 import com.googlecode.lanterna.gui2.Window;
 import com.googlecode.lanterna.gui2.WindowListener;
 import com.googlecode.lanterna.input.KeyStroke;
+import com.googlecode.lanterna.input.KeyType;
 
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -25,6 +26,14 @@ public class MainWindowListener implements WindowListener {
     @Override
     public void onInput(Window window, KeyStroke keyStroke, AtomicBoolean atomicBoolean) {
         MainWindow mainWindow = (MainWindow) window;
+        if (keyStroke.getKeyType() == KeyType.PageDown) {
+            mainWindow.movePage(1);
+            return;
+        }
+        if (keyStroke.getKeyType() == KeyType.PageUp) {
+            mainWindow.movePage(-1);
+            return;
+        }
         if (keyStroke.getCharacter() == null) {
             return;
         }
@@ -35,6 +44,24 @@ public class MainWindowListener implements WindowListener {
             case 'a':
                 mainWindow.displayNewWebsiteForm();
                 break;
+            case 'r':
+                mainWindow.displayRemoveWebsiteForm();
+                break;
+            case 's':
+                mainWindow.sortByNextKey();
+                break;
+            case 'n':
+                mainWindow.movePage(1);
+                break;
+            case 'p':
+                mainWindow.movePage(-1);
+                break;
+            case ']':
+                mainWindow.scrollAlerts(1);
+                break;
+            case '[':
+                mainWindow.scrollAlerts(-1);
+                break;
             default:
                 break;
         }
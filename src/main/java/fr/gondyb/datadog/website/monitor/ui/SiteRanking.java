@@ -0,0 +1,175 @@
+package fr.gondyb.datadog.website.monitor.ui;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * This class ranks the websites from the worst to the best, by each of its {@link SortKey}, and is updated one website
+ * at a time as their statistics arrive.
+ * <p>
+ * Every key has its own ordered index of the websites. An entry of an index packs the score of the website and its
+ * identifier into a single long, so that the entries order the websites by score, then by identifier. A page of the
+ * ranking is read by walking the index from its worst entry, without looking at the websites after the page. The
+ * websites without a score for a key are ranked last. This class is not thread-safe.
+ */
+class SiteRanking {
+
+    /**
+     * The criteria the websites are ranked by.
+     */
+    enum SortKey {
+        /**
+         * The lowest availability first.
+         */
+        AVAILABILITY("availability"),
+
+        /**
+         * The highest 99th latency percentile first.
+         */
+        P99("p99 latency"),
+
+        /**
+         * The highest ratio of 4xx and 5xx responses first.
+         */
+        ERROR_RATE("error rate");
+
+        /**
+         * The name of the key, as displayed.
+         */
+        final String label;
+
+        /**
+         * Class constructor
+         *
+         * @param label The name of the key, as displayed
+         */
+        SortKey(String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return The key following this one, the first after the last
+         */
+        SortKey next() {
+            return values()[(ordinal() + 1) % values().length];
+        }
+    }
+
+    /**
+     * The number of bits of an entry holding the website identifier.
+     */
+    private static final int ID_BITS = 24;
+
+    /**
+     * The score of a website without a value for a key, ranked after every other score.
+     */
+    private static final long NO_SCORE = (1L << (Long.SIZE - 1 - ID_BITS)) - 1;
+
+    /**
+     * The ordered index of each key, the worst website first.
+     */
+    private final TreeSet<Long>[] indexes;
+
+    /**
+     * The entry of every website in the index of each key, indexed by key then website identifier, -1 if the website
+     * is not ranked.
+     */
+    private final long[][] entries;
+
+    /**
+     * Class constructor
+     *
+     * @param capacity The maximum number of websites
+     */
+    @SuppressWarnings("unchecked")
+    SiteRanking(int capacity) {
+        if (capacity > 1 << ID_BITS) {
+            throw new IllegalArgumentException("At most " + (1 << ID_BITS) + " websites can be ranked");
+        }
+        SortKey[] keys = SortKey.values();
+        this.indexes = new TreeSet[keys.length];
+        this.entries = new long[keys.length][capacity];
+        for (int key = 0; key < keys.length; key++) {
+            indexes[key] = new TreeSet<>();
+            Arrays.fill(entries[key], -1);
+        }
+    }
+
+    /**
+     * This function ranks a website by its new statistics.
+     *
+     * @param siteId       The identifier of the website in the site registry
+     * @param availability The availability percentage of the website, -1 if it is unknown
+     * @param p99          The 99th latency percentile in milliseconds of the website, -1 if it is unknown
+     * @param errorRate    The ratio of 4xx and 5xx responses of the website, between 0 and 1, -1 if it is unknown
+     */
+    void update(int siteId, double availability, long p99, double errorRate) {
+        // The lower the score, the worse the website
+        set(SortKey.AVAILABILITY, siteId, availability < 0 ? NO_SCORE : Math.round(availability * 1000));
+        set(SortKey.P99, siteId, p99 < 0 ? NO_SCORE : NO_SCORE - 1 - Math.min(p99, NO_SCORE - 1));
+        set(SortKey.ERROR_RATE, siteId, errorRate < 0 ? NO_SCORE : 1_000_000 - Math.round(errorRate * 1_000_000));
+    }
+
+    /**
+     * This function stops ranking a website.
+     *
+     * @param siteId The identifier of the website in the site registry
+     */
+    void remove(int siteId) {
+        for (SortKey key : SortKey.values()) {
+            long entry = entries[key.ordinal()][siteId];
+            if (entry != -1) {
+                indexes[key.ordinal()].remove(entry);
+                entries[key.ordinal()][siteId] = -1;
+            }
+        }
+    }
+
+    /**
+     * @return The number of ranked websites
+     */
+    int size() {
+        return indexes[0].size();
+    }
+
+    /**
+     * This function reads a page of the ranking.
+     *
+     * @param key    The criteria of the ranking
+     * @param offset The rank of the first website of the page, from 0
+     * @param limit  The maximum number of websites of the page
+     * @return The identifiers of the websites of the page, the worst first
+     */
+    int[] page(SortKey key, int offset, int limit) {
+        int[] siteIds = new int[Math.max(0, Math.min(limit, size() - offset))];
+        Iterator<Long> iterator = indexes[key.ordinal()].iterator();
+        for (int rank = 0; rank < offset + siteIds.length; rank++) {
+            long entry = iterator.next();
+            if (rank >= offset) {
+                siteIds[rank - offset] = (int) (entry & ((1 << ID_BITS) - 1));
+            }
+        }
+        return siteIds;
+    }
+
+    /**
+     * This function moves a website in the index of a key.
+     *
+     * @param key    The key
+     * @param siteId The identifier of the website in the site registry
+     * @param score  The score of the website for the key, between 0 and {@link #NO_SCORE}
+     */
+    private void set(SortKey key, int siteId, long score) {
+        long entry = score << ID_BITS | siteId;
+        long previous = entries[key.ordinal()][siteId];
+        if (previous == entry) {
+            return;
+        }
+        if (previous != -1) {
+            indexes[key.ordinal()].remove(previous);
+        }
+        indexes[key.ordinal()].add(entry);
+        entries[key.ordinal()][siteId] = entry;
+    }
+}
@@ -0,0 +1,188 @@
+package fr.gondyb.datadog.website.monitor.ui;
+
+import com.googlecode.lanterna.gui2.table.Table;
+import com.googlecode.lanterna.gui2.table.TableModel;
+
+import java.util.Arrays;
+
+/**
+ * This class records the changes of the rows of a statistics table, one row per website, and displays one page of
+ * them, the websites being ranked from the worst to the best by a {@link SiteRanking}.
+ * <p>
+ * The rows are recorded by the threads handling the events, and applied by the GUI thread once per frame: a row
+ * changed several times between two frames is applied once, and only the cells of the page that differ from the
+ * displayed ones are updated. The table is thus never rebuilt, never touched outside the GUI thread, and a frame only
+ * costs the rows of the page, however many websites are monitored.
+ */
+class TableRenderModel {
+
+    /**
+     * The table displaying the rows.
+     */
+    private final Table<String> table;
+
+    /**
+     * The latest row of every website, indexed by website identifier, null if it has none. Guarded by this model.
+     */
+    private final String[][] rows;
+
+    /**
+     * The ranking of the websites having a row. Guarded by this model.
+     */
+    private final SiteRanking ranking;
+
+    /**
+     * True if a row, the page or the ranking criteria changed since the previous frame. Guarded by this model.
+     */
+    private boolean changed = false;
+
+    /**
+     * The criteria the websites are ranked by. Guarded by this model.
+     */
+    private SiteRanking.SortKey sortKey = SiteRanking.SortKey.AVAILABILITY;
+
+    /**
+     * The index of the displayed page, from 0. Guarded by this model.
+     */
+    private int page = 0;
+
+    /**
+     * The number of rows of a page. Guarded by this model.
+     */
+    private int pageSize = 10;
+
+    /**
+     * Class constructor
+     *
+     * @param table    The table displaying the rows
+     * @param capacity The maximum number of websites
+     */
+    TableRenderModel(Table<String> table, int capacity) {
+        this.table = table;
+        this.rows = new String[capacity][];
+        this.ranking = new SiteRanking(capacity);
+    }
+
+    /**
+     * This function records the new row of a website and its rank.
+     *
+     * @param siteId       The identifier of the website in the site registry
+     * @param row          The cells of the row
+     * @param availability The availability percentage of the website, -1 if it is unknown
+     * @param p99          The 99th latency percentile in milliseconds of the website, -1 if it is unknown
+     * @param errorRate    The ratio of 4xx and 5xx responses of the website, -1 if it is unknown
+     */
+    synchronized void update(int siteId, String[] row, double availability, long p99, double errorRate) {
+        rows[siteId] = row;
+        ranking.update(siteId, availability, p99, errorRate);
+        changed = true;
+    }
+
+    /**
+     * This function removes the row of a website.
+     *
+     * @param siteId The identifier of the website in the site registry
+     */
+    synchronized void remove(int siteId) {
+        if (rows[siteId] != null) {
+            rows[siteId] = null;
+            ranking.remove(siteId);
+            changed = true;
+        }
+    }
+
+    /**
+     * @param sortKey The criteria the websites are ranked by, the first page being displayed
+     */
+    synchronized void setSortKey(SiteRanking.SortKey sortKey) {
+        this.sortKey = sortKey;
+        this.page = 0;
+        changed = true;
+    }
+
+    /**
+     * @param pageSize The number of rows of a page
+     */
+    synchronized void setPageSize(int pageSize) {
+        this.pageSize = Math.max(1, pageSize);
+        changed = true;
+    }
+
+    /**
+     * This function moves to another page, within the pages of the ranking.
+     *
+     * @param offset The number of pages to move by, negative to move backwards
+     */
+    synchronized void movePage(int offset) {
+        int moved = Math.max(0, Math.min(page + offset, getPageCount() - 1));
+        if (moved != page) {
+            page = moved;
+            changed = true;
+        }
+    }
+
+    /**
+     * @return The index of the displayed page, from 0
+     */
+    synchronized int getPage() {
+        return page;
+    }
+
+    /**
+     * @return The number of pages of the ranking, at least 1
+     */
+    synchronized int getPageCount() {
+        return Math.max(1, (ranking.size() + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * @return True if the table must be redrawn at the next frame
+     */
+    synchronized boolean hasChanges() {
+        return changed;
+    }
+
+    /**
+     * This function displays the current page in the table, updating only the cells that changed since the previous
+     * frame. It must run on the GUI thread.
+     *
+     * @return The number of cells updated
+     */
+    int applyChanges() {
+        String[][] pageRows;
+        synchronized (this) {
+            if (!changed) {
+                return 0;
+            }
+            changed = false;
+            // The websites removed since the page was counted shrink the ranking
+            page = Math.min(page, getPageCount() - 1);
+            int[] siteIds = ranking.page(sortKey, page * pageSize, pageSize);
+            pageRows = new String[siteIds.length][];
+            for (int i = 0; i < siteIds.length; i++) {
+                pageRows[i] = rows[siteIds[i]];
+            }
+        }
+
+        TableModel<String> model = table.getTableModel();
+        int updated = 0;
+        for (int position = 0; position < pageRows.length; position++) {
+            String[] row = pageRows[position];
+            if (position == model.getRowCount()) {
+                model.addRow(Arrays.asList(row));
+                updated += row.length;
+                continue;
+            }
+            for (int column = 0; column < row.length; column++) {
+                if (!row[column].equals(model.getCell(column, position))) {
+                    model.setCell(column, position, row[column]);
+                    updated++;
+                }
+            }
+        }
+        while (model.getRowCount() > pageRows.length) {
+            model.removeRow(model.getRowCount() - 1);
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,49 @@
+package fr.gondyb.datadog.website.monitor.ui.event;
+
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
+import lombok.Getter;
+
+import java.net.URI;
+
+/**
+ * This immutable class is an event informing that the checks of a monitored website changed. The statistics and the
+ * availability already gathered for the website are kept.
+ */
+@Getter
+public class ReconfigureMonitorEvent implements SiteEvent {
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
+    /**
+     * The URI of the website to reconfigure.
+     */
+    private final URI uri;
+
+    /**
+     * The new delay in milliseconds at which the website will be checked.
+     */
+    private final long delay;
+
+    /**
+     * The new settings of the requests used to check the website.
+     */
+    private final ProbeSettings probeSettings;
+
+    /**
+     * Class constructor
+     *
+     * @param siteId        The identifier of the website in the site registry
+     * @param uri           The URI of the website to reconfigure
+     * @param delay         The new delay in milliseconds at which the website will be checked
+     * @param probeSettings The new settings of the requests used to check the website
+     */
+    public ReconfigureMonitorEvent(int siteId, URI uri, long delay, ProbeSettings probeSettings) {
+        this.siteId = siteId;
+        this.uri = uri;
+        this.delay = delay;
+        this.probeSettings = probeSettings;
+    }
+}
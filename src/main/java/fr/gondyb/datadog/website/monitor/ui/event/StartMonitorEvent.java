@@ -1,5 +1,7 @@
 package fr.gondyb.datadog.website.monitor.ui.event;
 
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
 import lombok.Getter;
 
 import java.net.URI;
@@ -8,7 +10,12 @@ import java.net.URI;
  * This immutable class is an event informing that a website needs to be monitored.
  */
 @Getter
-public class StartMonitorEvent {
+public class StartMonitorEvent implements SiteEvent {
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
     /**
      * The URI of the website to monitor.
      */
@@ -19,8 +26,34 @@ public class StartMonitorEvent {
      */
     private final long delay;
 
-    public StartMonitorEvent(URI uri, long delay) {
+    /**
+     * The settings of the requests used to check the website.
+     */
+    private final ProbeSettings probeSettings;
+
+    /**
+     * Class constructor, checking the website with the {@link ProbeSettings#DEFAULT} settings
+     *
+     * @param siteId The identifier of the website in the site registry
+     * @param uri    The URI of the website to monitor
+     * @param delay  The delay in milliseconds at which the website will be checked
+     */
+    public StartMonitorEvent(int siteId, URI uri, long delay) {
+        this(siteId, uri, delay, ProbeSettings.DEFAULT);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param siteId        The identifier of the website in the site registry
+     * @param uri           The URI of the website to monitor
+     * @param delay         The delay in milliseconds at which the website will be checked
+     * @param probeSettings The settings of the requests used to check the website
+     */
+    public StartMonitorEvent(int siteId, URI uri, long delay, ProbeSettings probeSettings) {
+        this.siteId = siteId;
         this.uri = uri;
         this.delay = delay;
+        this.probeSettings = probeSettings;
     }
 }
@@ -0,0 +1,33 @@
+package fr.gondyb.datadog.website.monitor.ui.event;
+
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
+import lombok.Getter;
+
+import java.net.URI;
+
+/**
+ * This immutable class is an event informing that a website should not be monitored anymore.
+ */
+@Getter
+public class StopMonitorEvent implements SiteEvent {
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
+    /**
+     * The URI of the website to stop monitoring.
+     */
+    private final URI uri;
+
+    /**
+     * Class constructor
+     *
+     * @param siteId The identifier of the website in the site registry
+     * @param uri    The URI of the website to stop monitoring
+     */
+    public StopMonitorEvent(int siteId, URI uri) {
+        this.siteId = siteId;
+        this.uri = uri;
+    }
+}
@@ -1,22 +1,37 @@
 package fr.gondyb.datadog.website.monitor.watchdog;
 
 import com.google.common.eventbus.EventBus;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
 
+import java.io.IOException;
 import java.net.URI;
-import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.TimerTask;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 /**
- * This {@link TimerTask} checks the availability of a website and produces events accordingly.
+ * This task checks the availability of a website and produces events accordingly, for every monitor of the website
+ * due an outcome. It is periodically run by the shared
+ * {@link fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler}.
+ * <p>
+ * The outcome of a monitor is delivered by the shard owning the monitor, which is also the thread unsubscribing it:
+ * an outcome is thus either posted before the monitor is stopped, or dropped, and never reaches the next website
+ * given the identifier of the monitor.
  */
-public class CheckWebsiteTask extends TimerTask {
+public class CheckWebsiteTask implements Runnable {
+
+    /**
+     * The source of the monitors due the outcome of a check, called once per check.
+     */
+    private final Supplier<ProbeSubscriber[]> recipients;
 
     /**
      * The URI of the website to check.
@@ -29,60 +44,236 @@ public class CheckWebsiteTask extends TimerTask {
     private final long timeout;
 
     /**
-     * The client used to make requests.
+     * The shared client used to make requests.
+     */
+    private final ProbeHttpClient client;
+
+    /**
+     * The request sent at every check. It is immutable, thus built once.
+     */
+    private final HttpRequest request;
+
+    /**
+     * The number of body bytes after which the transfer is cancelled.
      */
-    private final HttpClient client;
+    private final long byteCap;
+
+    /**
+     * The probe engine measuring every phase of the check, or null if the shared client is used.
+     */
+    private final PhaseTimedProbe phaseTimedProbe;
 
     /**
      * THe global EventBus
      */
     private final EventBus eventBus;
 
+    /**
+     * The shards owning the monitors, delivering their outcomes.
+     */
+    private final ShardedExecutor shards;
+
+    /**
+     * The last check sent, not completed yet, or null.
+     */
+    private volatile CompletableFuture<?> inFlight;
+
+    /**
+     * True once the website is not monitored anymore.
+     */
+    private volatile boolean stopped = false;
+
     /**
      * Class Constructor
      *
-     * @param url      The URI of the website to check
-     * @param timeout  The timeout after which send a {@link WebsiteDownEvent}
-     * @param eventBus The global EventBus
+     * @param recipients    The source of the monitors due the outcome of a check, called once per check
+     * @param url           The URI of the website to check
+     * @param timeout       The timeout after which send a {@link WebsiteDownEvent}
+     * @param probeSettings The settings of the requests used to check the website
+     * @param eventBus      The global EventBus
+     * @param shards        The shards owning the monitors, delivering their outcomes
+     * @param client        The shared client used to make requests
      */
-    public CheckWebsiteTask(URI url, long timeout, EventBus eventBus) {
-        super();
+    public CheckWebsiteTask(Supplier<ProbeSubscriber[]> recipients, URI url, long timeout, ProbeSettings probeSettings, EventBus eventBus, ShardedExecutor shards, ProbeHttpClient client) {
         this.eventBus = eventBus;
+        this.shards = shards;
         this.timeout = timeout;
+        this.recipients = recipients;
         this.url = url;
-        this.client = HttpClient.newHttpClient();
+        this.client = client;
+
+        // The timeout aborts the exchange of a hung origin, whose slot is already freed by the check timeout
+        HttpRequest.Builder requestBuilder = HttpRequest.newBuilder().uri(url).timeout(Duration.ofMillis(timeout));
+        long byteCap = Long.MAX_VALUE;
+        switch (probeSettings.getProbeMode()) {
+            case HEAD:
+                requestBuilder.method("HEAD", HttpRequest.BodyPublishers.noBody());
+                break;
+            case GET_CAPPED:
+                byteCap = probeSettings.getByteCap();
+                break;
+            default:
+                break;
+        }
+        this.request = requestBuilder.build();
+        this.byteCap = byteCap;
+        this.phaseTimedProbe = probeSettings.isPhaseTimings() ? new PhaseTimedProbe(url, probeSettings, timeout) : null;
     }
 
     /**
      * This functions checks the website availability, and produces either a {@link WebsiteUpEvent} or
      * {@link WebsiteDownEvent}, according to the response or error.
+     * The response time is measured with {@link System#nanoTime()}, from the moment the request is actually sent.
+     * No request is sent when no monitor is due an outcome.
      */
     public void run() {
-        long startMillis = System.currentTimeMillis();
+        if (stopped) {
+            return;
+        }
+        ProbeSubscriber[] subscribers = recipients.get();
+        if (subscribers.length == 0) {
+            return;
+        }
+        if (phaseTimedProbe != null) {
+            CompletableFuture<ProbeResult> check = client.probeAsync(url, phaseTimedProbe::probe);
+            if (!trackInFlight(check)) {
+                return;
+            }
+            markProbed(subscribers);
+            check.orTimeout(timeout, TimeUnit.MILLISECONDS)
+                    .whenComplete((result, error) -> {
+                        if (error != null) {
+                            handleError(subscribers, error);
+                            return;
+                        }
+                        publishUp(subscribers, result.statusCode, result.bytesTransferred, result.timings);
+                    });
+            return;
+        }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(url)
-                .build();
+        ProbeTimer timer = new ProbeTimer();
 
-        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
-                .orTimeout(timeout, TimeUnit.MILLISECONDS)
+        CompletableFuture<HttpResponse<Long>> check = client.sendAsync(request, CountingBodySubscriber.handler(byteCap, timer), () -> timer.dispatchNanos = System.nanoTime());
+        if (!trackInFlight(check)) {
+            return;
+        }
+        markProbed(subscribers);
+        check.orTimeout(timeout, TimeUnit.MILLISECONDS)
                 .whenComplete((response, error) -> {
                     if (error != null) {
-                        if (error instanceof TimeoutException || error instanceof CompletionException) {
-                            eventBus.post(new WebsiteDownEvent(url));
-                            return;
-                        }
-                        error.printStackTrace();
+                        handleError(subscribers, error);
                         return;
                     }
-
-                    long responseTime = System.currentTimeMillis() - startMillis;
-                    eventBus.post(new WebsiteUpEvent(
-                            responseTime,
-                            response.statusCode(),
-                            url
-                    ));
+                    publishUp(subscribers, response.statusCode(), response.body(), timer.toTimings());
                 });
+    }
 
+    /**
+     * This function stops the checks of the website. The check in flight is cancelled: it does not start if it is
+     * still waiting for a free slot of its origin, and its outcome is dropped otherwise.
+     */
+    void stop() {
+        stopped = true;
+        CompletableFuture<?> check = inFlight;
+        if (check != null) {
+            check.cancel(true);
+        }
+        client.releaseOrigin(url);
+    }
+
+    /**
+     * This function keeps the check in flight, so that {@link #stop()} cancels it. A check sent while the task was
+     * being stopped is cancelled here instead, and the gate of its origin dropped, as {@link #stop()} missed it.
+     *
+     * @param check The check just sent
+     * @return False if the task was stopped, the check being cancelled
+     */
+    private boolean trackInFlight(CompletableFuture<?> check) {
+        inFlight = check;
+        if (!stopped) {
+            return true;
+        }
+        check.cancel(true);
+        client.releaseOrigin(url);
+        return false;
+    }
+
+    /**
+     * This function records that a check was issued for the monitors due its outcome.
+     *
+     * @param subscribers The monitors due the outcome of the check
+     */
+    private static void markProbed(ProbeSubscriber[] subscribers) {
+        for (ProbeSubscriber subscriber : subscribers) {
+            if (!subscriber.probed) {
+                subscriber.probed = true;
+            }
+        }
+    }
+
+    /**
+     * This function produces a {@link WebsiteUpEvent} for every monitor still subscribed.
+     *
+     * @param subscribers      The monitors due the outcome of the check
+     * @param statusCode       The HTTP Response code of the response
+     * @param bytesTransferred The number of response body bytes transferred
+     * @param timings          The duration of each phase of the check
+     */
+    private void publishUp(ProbeSubscriber[] subscribers, int statusCode, long bytesTransferred, ProbeTimings timings) {
+        inFlight = null;
+        if (stopped) {
+            return;
+        }
+        long responseTime = TimeUnit.NANOSECONDS.toMillis(timings.getTotalNanos());
+        for (ProbeSubscriber subscriber : subscribers) {
+            if (subscriber.active) {
+                deliver(subscriber, new WebsiteUpEvent(
+                        responseTime,
+                        statusCode,
+                        subscriber.siteId,
+                        url,
+                        bytesTransferred,
+                        timings
+                ));
+            }
+        }
+    }
+
+    /**
+     * This function produces a {@link WebsiteDownEvent} for every monitor still subscribed when the check timed out
+     * or failed.
+     *
+     * @param subscribers The monitors due the outcome of the check
+     * @param error       The error of the check
+     */
+    private void handleError(ProbeSubscriber[] subscribers, Throwable error) {
+        inFlight = null;
+        if (stopped || error instanceof CancellationException) {
+            return;
+        }
+        if (error instanceof TimeoutException || error instanceof CompletionException || error instanceof IOException) {
+            for (ProbeSubscriber subscriber : subscribers) {
+                if (subscriber.active) {
+                    deliver(subscriber, new WebsiteDownEvent(subscriber.siteId, url));
+                }
+            }
+            return;
+        }
+        error.printStackTrace();
+    }
+
+    /**
+     * This function posts the outcome of a monitor from the shard owning it, unless the monitor left the stream by
+     * then. The check and the post are not separated by an unsubscription, which runs on the same shard.
+     *
+     * @param subscriber The monitor due the outcome
+     * @param outcome    The {@link WebsiteUpEvent} or {@link WebsiteDownEvent} of the monitor
+     */
+    private void deliver(ProbeSubscriber subscriber, Object outcome) {
+        shards.execute(shards.shardOf(subscriber.siteId), () -> {
+            if (subscriber.active) {
+                eventBus.post(outcome);
+            }
+        });
     }
 }
@@ -0,0 +1,110 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * This {@link HttpResponse.BodySubscriber} counts the bytes of a response body as they stream in, and discards them.
+ * Once {@code byteCap} bytes were received, the transfer is cancelled and the count is returned.
+ * The first byte and end of transfer timestamps are recorded in a {@link ProbeTimer}.
+ */
+class CountingBodySubscriber implements HttpResponse.BodySubscriber<Long> {
+
+    /**
+     * The number of bytes after which the transfer is cancelled.
+     */
+    private final long byteCap;
+
+    /**
+     * The timer recording the end of the transfer.
+     */
+    private final ProbeTimer timer;
+
+    /**
+     * The future completed with the number of received bytes.
+     */
+    private final CompletableFuture<Long> result = new CompletableFuture<>();
+
+    /**
+     * The subscription to the body publisher.
+     */
+    private Flow.Subscription subscription;
+
+    /**
+     * The number of bytes received so far.
+     */
+    private long receivedBytes = 0;
+
+    /**
+     * Class constructor
+     *
+     * @param byteCap The number of bytes after which the transfer is cancelled
+     * @param timer   The timer recording the end of the transfer
+     */
+    CountingBodySubscriber(long byteCap, ProbeTimer timer) {
+        this.byteCap = byteCap;
+        this.timer = timer;
+    }
+
+    /**
+     * This function creates a body handler counting and discarding the body. The handler is called when the response
+     * headers are received, which is recorded as the first byte timestamp.
+     *
+     * @param byteCap The number of bytes after which the transfer is cancelled, {@link Long#MAX_VALUE} to read it all
+     * @param timer   The timer recording the first byte and end of transfer timestamps
+     * @return The body handler
+     */
+    static HttpResponse.BodyHandler<Long> handler(long byteCap, ProbeTimer timer) {
+        return responseInfo -> {
+            timer.firstByteNanos = System.nanoTime();
+            return new CountingBodySubscriber(byteCap, timer);
+        };
+    }
+
+    @Override
+    public CompletionStage<Long> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        if (result.isDone()) {
+            return;
+        }
+        for (ByteBuffer buffer : buffers) {
+            receivedBytes += buffer.remaining();
+        }
+        if (receivedBytes >= byteCap) {
+            subscription.cancel();
+            complete();
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        complete();
+    }
+
+    /**
+     * This function records the end of the transfer and completes the body with the number of received bytes.
+     */
+    private void complete() {
+        timer.endNanos = System.nanoTime();
+        result.complete(receivedBytes);
+    }
+}
@@ -0,0 +1,201 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * This class limits the number of concurrent requests sent to one origin (scheme, host and port), and keeps track of
+ * the connections the shared {@link java.net.http.HttpClient} most likely keeps alive for it.
+ * <p>
+ * The JDK client does not tell whether a request reused a pooled connection. This class estimates it: a connection
+ * released less than {@code keepAliveNanos} ago is considered idle in the pool, and the next request takes it. On a
+ * HTTP/2 origin, every request is multiplexed on the same connection as long as it is alive.
+ * <p>
+ * A waiting request leaves the queue as soon as its result is completed, by a timeout or a cancel, and the queue is
+ * bounded: the requests of a hung origin cannot pile up.
+ */
+class OriginGate {
+
+    /**
+     * The maximum number of concurrent requests to this origin.
+     */
+    private final int maxConnections;
+
+    /**
+     * The duration in nanoseconds during which an idle connection is kept in the pool.
+     */
+    private final long keepAliveNanos;
+
+    /**
+     * The maximum number of requests waiting for a free slot.
+     */
+    private final int maxWaiting;
+
+    /**
+     * The requests waiting for a free slot, in arrival order.
+     */
+    private final Queue<WaitingRequest> waitingRequests = new ArrayDeque<>();
+
+    /**
+     * The number of requests currently sent to this origin.
+     */
+    private int inFlight = 0;
+
+    /**
+     * The estimated number of idle connections in the pool for this origin.
+     */
+    private int idleConnections = 0;
+
+    /**
+     * The {@link System#nanoTime()} value of the last released request.
+     */
+    private long lastReleaseNanos = 0;
+
+    /**
+     * True once a response from this origin used HTTP/2.
+     */
+    private boolean multiplexed = false;
+
+    /**
+     * Class constructor
+     *
+     * @param maxConnections The maximum number of concurrent requests to this origin
+     * @param keepAliveNanos The duration in nanoseconds during which an idle connection is kept in the pool
+     * @param maxWaiting     The maximum number of requests waiting for a free slot
+     */
+    OriginGate(int maxConnections, long keepAliveNanos, int maxWaiting) {
+        this.maxConnections = maxConnections;
+        this.keepAliveNanos = keepAliveNanos;
+        this.maxWaiting = maxWaiting;
+    }
+
+    /**
+     * This function runs the request right away if there is a free slot for this origin, otherwise it queues it until
+     * a running request is released. A queued request is dropped once its result is completed, thus timed out or
+     * cancelled, instead of being started. When the queue is full, the result is completed with a
+     * {@link RejectedExecutionException}.
+     *
+     * @param request The request to start
+     * @param result  The future of the request result
+     * @return True if the request was started right away, false if it was queued or rejected
+     */
+    boolean acquire(Runnable request, CompletableFuture<?> result) {
+        WaitingRequest waiting = null;
+        synchronized (this) {
+            if (inFlight < maxConnections) {
+                inFlight++;
+            } else if (waitingRequests.size() < maxWaiting) {
+                waiting = new WaitingRequest(request, result);
+                waitingRequests.add(waiting);
+            } else {
+                result.completeExceptionally(new CompletionException(new RejectedExecutionException(
+                        maxWaiting + " requests are already waiting for this origin")));
+                return false;
+            }
+        }
+        if (waiting == null) {
+            request.run();
+            return true;
+        }
+        WaitingRequest dropped = waiting;
+        result.whenComplete((value, error) -> drop(dropped));
+        return false;
+    }
+
+    /**
+     * This function takes a connection for a starting request.
+     *
+     * @return True if the request most likely reuses a pooled connection, false if it opens a new one
+     */
+    synchronized boolean takeConnection() {
+        boolean alive = System.nanoTime() - lastReleaseNanos < keepAliveNanos;
+        if (multiplexed && (alive || inFlight > 1)) {
+            return true;
+        }
+        if (!alive) {
+            idleConnections = 0;
+        }
+        if (idleConnections > 0) {
+            idleConnections--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * This function releases the slot of a finished request, and starts the next waiting request if any.
+     *
+     * @param keepConnection True if the connection went back to the pool, false if it failed
+     * @param http2          True if the response used HTTP/2
+     */
+    void release(boolean keepConnection, boolean http2) {
+        WaitingRequest next;
+        synchronized (this) {
+            if (keepConnection) {
+                idleConnections = Math.min(idleConnections + 1, maxConnections);
+                lastReleaseNanos = System.nanoTime();
+                multiplexed |= http2;
+            }
+            do {
+                next = waitingRequests.poll();
+            } while (next != null && next.result.isDone());
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        next.request.run();
+    }
+
+    /**
+     * This function removes a request from the queue, if it is still waiting.
+     *
+     * @param waiting The waiting request
+     */
+    private synchronized void drop(WaitingRequest waiting) {
+        waitingRequests.remove(waiting);
+    }
+
+    /**
+     * @return The number of requests waiting for a free slot
+     */
+    synchronized int getWaitingCount() {
+        return waitingRequests.size();
+    }
+
+    /**
+     * @return True if no request is sent to this origin, nor waiting for a slot
+     */
+    synchronized boolean isIdle() {
+        return inFlight == 0 && waitingRequests.isEmpty();
+    }
+
+    /**
+     * A request waiting for a free slot.
+     */
+    private static class WaitingRequest {
+        /**
+         * The request to start.
+         */
+        final Runnable request;
+
+        /**
+         * The future of the request result.
+         */
+        final CompletableFuture<?> result;
+
+        /**
+         * Class constructor
+         *
+         * @param request The request to start
+         * @param result  The future of the request result
+         */
+        WaitingRequest(Runnable request, CompletableFuture<?> result) {
+            this.request = request;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * This class is a probe engine measuring every phase of a website check: DNS resolution, TCP connection, TLS
+ * handshake, time to first byte and body transfer. Every phase is timed with {@link System#nanoTime()}.
+ * <p>
+ * Unlike the shared {@link ProbeHttpClient}, it opens a new HTTP/1.1 connection for every check, so that the
+ * connection and TLS phases are actually measured. It uses blocking sockets, and runs on the blocking probe executor of
+ * the client. The deadline of a check is hard: the DNS resolution is abandoned when it expires, and the socket is
+ * closed as soon as the check is completed, by its timeout or a cancel, which stops a connection or a read in progress.
+ */
+class PhaseTimedProbe {
+
+    /**
+     * The size of the buffer the response is read into.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The threads resolving the host names, so that a check can stop waiting for a resolution at its deadline. The
+     * resolution itself is bounded by the resolver of the system.
+     */
+    private static final ExecutorService RESOLVER = Executors.newFixedThreadPool(
+            4,
+            new ThreadFactoryBuilder().setNameFormat("probe-resolver-%d").setDaemon(true).build()
+    );
+
+    /**
+     * The URI of the website to check.
+     */
+    private final URI url;
+
+    /**
+     * The settings of the requests used to check the website.
+     */
+    private final ProbeSettings probeSettings;
+
+    /**
+     * The timeout in milliseconds of the whole check.
+     */
+    private final long timeout;
+
+    /**
+     * The request bytes, built once.
+     */
+    private final byte[] request;
+
+    /**
+     * Class constructor
+     *
+     * @param url           The URI of the website to check
+     * @param probeSettings The settings of the requests used to check the website
+     * @param timeout       The timeout in milliseconds of the whole check
+     */
+    PhaseTimedProbe(URI url, ProbeSettings probeSettings, long timeout) {
+        this.url = url;
+        this.probeSettings = probeSettings;
+        this.timeout = timeout;
+
+        String path = url.getRawPath() == null || url.getRawPath().isEmpty() ? "/" : url.getRawPath();
+        if (url.getRawQuery() != null) {
+            path += "?" + url.getRawQuery();
+        }
+        String method = probeSettings.getProbeMode() == ProbeMode.HEAD ? "HEAD" : "GET";
+        this.request = (method + " " + path + " HTTP/1.1\r\n"
+                + "Host: " + url.getHost() + (url.getPort() == -1 ? "" : ":" + url.getPort()) + "\r\n"
+                + "Accept: */*\r\n"
+                + "Connection: close\r\n"
+                + "\r\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * This function checks the website, blocking until the response is received, the timeout expires or the check is
+     * completed by someone else.
+     *
+     * @param check The future of the check, whose completion closes the connection
+     * @return The outcome of the check
+     * @throws UncheckedIOException When the website could not be reached
+     */
+    ProbeResult probe(CompletableFuture<?> check) {
+        boolean secure = "https".equalsIgnoreCase(url.getScheme());
+        int port = url.getPort() != -1 ? url.getPort() : secure ? 443 : 80;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+
+        long startNanos = System.nanoTime();
+        try {
+            InetAddress address = resolve(deadline);
+            long resolvedNanos = System.nanoTime();
+
+            try (Socket plainSocket = new Socket()) {
+                // Closing the socket fails the blocking call in progress, the TLS layer included
+                check.whenComplete((result, error) -> closeQuietly(plainSocket));
+                plainSocket.connect(new InetSocketAddress(address, port), remainingMillis(deadline));
+                long connectedNanos = System.nanoTime();
+
+                Socket socket = plainSocket;
+                long handshakeNanos = -1;
+                if (secure) {
+                    SSLSocket sslSocket = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                            .createSocket(plainSocket, url.getHost(), port, true);
+                    // The certificate must match the host, as the JDK client checks it
+                    SSLParameters parameters = sslSocket.getSSLParameters();
+                    parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                    sslSocket.setSSLParameters(parameters);
+                    sslSocket.setSoTimeout(remainingMillis(deadline));
+                    sslSocket.startHandshake();
+                    handshakeNanos = System.nanoTime() - connectedNanos;
+                    socket = sslSocket;
+                }
+
+                OutputStream output = socket.getOutputStream();
+                output.write(request);
+                output.flush();
+                long sentNanos = System.nanoTime();
+
+                socket.setSoTimeout(remainingMillis(deadline));
+                return readResponse(socket.getInputStream(), deadline, socket, new long[]{
+                        resolvedNanos - startNanos,
+                        connectedNanos - resolvedNanos,
+                        handshakeNanos,
+                        sentNanos
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * This function resolves the host of the website, giving up at the deadline.
+     *
+     * @param deadline The check deadline, as a {@link System#nanoTime()} value
+     * @return The address of the host
+     * @throws IOException When the host could not be resolved before the deadline
+     */
+    private InetAddress resolve(long deadline) throws IOException {
+        Future<InetAddress> resolution = RESOLVER.submit(() -> InetAddress.getByName(url.getHost()));
+        try {
+            return resolution.get(remainingMillis(deadline), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            resolution.cancel(true);
+            throw new SocketTimeoutException("The resolution of " + url.getHost() + " timed out");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("The resolution of " + url.getHost() + " was interrupted");
+        }
+    }
+
+    /**
+     * This function reads the status line and headers, then reads and discards the body until its end or the byte cap.
+     * The body of a chunked response ends with its last chunk, and only the chunk data is counted as body bytes; any
+     * other body ends with the stream.
+     *
+     * @param input    The socket input
+     * @param deadline The check deadline, as a {@link System#nanoTime()} value
+     * @param socket   The socket, to update its read timeout
+     * @param phases   The DNS, connection and TLS durations, followed by the request sent timestamp
+     * @return The outcome of the check
+     * @throws IOException When the response could not be read
+     */
+    private ProbeResult readResponse(InputStream input, long deadline, Socket socket, long[] phases) throws IOException {
+        InputStream response = new BufferedInputStream(input, BUFFER_SIZE);
+        long byteCap = probeSettings.getProbeMode() == ProbeMode.GET_CAPPED ? probeSettings.getByteCap() : Long.MAX_VALUE;
+
+        int first = response.read();
+        long firstByteNanos = System.nanoTime();
+        if (first == -1) {
+            throw new IOException("Connection closed before the response");
+        }
+
+        int statusCode = parseStatusCode((char) first + readLine(response, deadline, socket));
+        boolean chunked = false;
+        for (String header = readLine(response, deadline, socket); !header.isEmpty(); header = readLine(response, deadline, socket)) {
+            int colon = header.indexOf(':');
+            if (colon != -1 && header.substring(0, colon).trim().equalsIgnoreCase("Transfer-Encoding")
+                    && header.substring(colon + 1).toLowerCase(Locale.ROOT).contains("chunked")) {
+                chunked = true;
+            }
+        }
+
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long bodyBytes = 0;
+        if (chunked) {
+            long chunkSize = readChunkSize(response, deadline, socket);
+            while (chunkSize > 0 && bodyBytes < byteCap) {
+                long remaining = chunkSize;
+                while (remaining > 0 && bodyBytes < byteCap) {
+                    socket.setSoTimeout(remainingMillis(deadline));
+                    int read = response.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                    if (read == -1) {
+                        throw new IOException("Connection closed in a chunk");
+                    }
+                    remaining -= read;
+                    bodyBytes += read;
+                }
+                if (remaining > 0) {
+                    // The byte cap was reached within the chunk
+                    break;
+                }
+                // The line break ending the chunk data
+                readLine(response, deadline, socket);
+                chunkSize = readChunkSize(response, deadline, socket);
+            }
+        } else {
+            while (bodyBytes < byteCap) {
+                socket.setSoTimeout(remainingMillis(deadline));
+                int read = response.read(buffer);
+                if (read == -1) {
+                    break;
+                }
+                bodyBytes += read;
+            }
+        }
+        long endNanos = System.nanoTime();
+
+        return new ProbeResult(
+                statusCode,
+                Math.min(bodyBytes, byteCap),
+                new ProbeTimings(phases[0], phases[1], phases[2], firstByteNanos - phases[3], endNanos - firstByteNanos)
+        );
+    }
+
+    /**
+     * This function reads the size line of a chunk ({@code 1a;name=value}).
+     *
+     * @param input    The response input
+     * @param deadline The check deadline, as a {@link System#nanoTime()} value
+     * @param socket   The socket, to update its read timeout
+     * @return The size of the chunk data, 0 for the last chunk
+     * @throws IOException When the size line is malformed
+     */
+    private static long readChunkSize(InputStream input, long deadline, Socket socket) throws IOException {
+        String line = readLine(input, deadline, socket);
+        int extension = line.indexOf(';');
+        try {
+            return Long.parseLong((extension == -1 ? line : line.substring(0, extension)).trim(), 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed chunk size: " + line);
+        }
+    }
+
+    /**
+     * This function reads a line of the response, up to its line break.
+     *
+     * @param input    The response input
+     * @param deadline The check deadline, as a {@link System#nanoTime()} value
+     * @param socket   The socket, to update its read timeout
+     * @return The line, without its line break
+     * @throws IOException When the stream ended or the line is too long
+     */
+    private static String readLine(InputStream input, long deadline, Socket socket) throws IOException {
+        socket.setSoTimeout(remainingMillis(deadline));
+        StringBuilder line = new StringBuilder();
+        for (int read = input.read(); read != '\n'; read = input.read()) {
+            if (read == -1) {
+                throw new IOException("Connection closed in the response headers");
+            }
+            if (line.length() == BUFFER_SIZE) {
+                throw new IOException("Response line too long");
+            }
+            line.append((char) read);
+        }
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return line.toString();
+    }
+
+    /**
+     * This function parses the status code from the status line ({@code HTTP/1.1 200 OK}).
+     *
+     * @param statusLine The status line
+     * @return The status code
+     * @throws IOException When the status line is malformed
+     */
+    private static int parseStatusCode(String statusLine) throws IOException {
+        int space = statusLine.indexOf(' ');
+        if (space == -1 || space + 4 > statusLine.length()) {
+            throw new IOException("Malformed status line");
+        }
+        int statusCode = 0;
+        for (int i = space + 1; i < space + 4; i++) {
+            int digit = statusLine.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new IOException("Malformed status line");
+            }
+            statusCode = statusCode * 10 + digit;
+        }
+        return statusCode;
+    }
+
+    /**
+     * @param deadline The check deadline, as a {@link System#nanoTime()} value
+     * @return The remaining time in milliseconds before the deadline
+     * @throws SocketTimeoutException When the deadline expired
+     */
+    private static int remainingMillis(long deadline) throws SocketTimeoutException {
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("The check deadline expired");
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * This function closes a socket, ignoring the errors.
+     *
+     * @param socket The socket
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // The socket is dropped anyway
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * This class is the HTTP client layer shared by every {@link CheckWebsiteTask}.
+ * <p>
+ * A single {@link HttpClient} is used for every website, so that the selector thread, the connection pool and the TLS
+ * context are shared, and connections are kept alive between two checks of the same origin. HTTP/2 is preferred, so
+ * that the checks of an origin are multiplexed on a single connection.
+ * <p>
+ * The number of concurrent requests per origin is limited, extra requests wait for a free slot. A slot is freed as soon
+ * as the result of its request is completed, including by a timeout or a cancel, so that a hung origin cannot hold its
+ * slots. The class also counts the requests reusing a pooled connection and the ones opening a new connection (thus a
+ * new TLS handshake).
+ */
+public class ProbeHttpClient {
+
+    /**
+     * The maximum number of requests waiting for a free slot of an origin, the next ones being reported as failed.
+     */
+    private static final int MAX_WAITING_PER_ORIGIN = 1024;
+
+    /**
+     * The client shared by every website check.
+     */
+    private final HttpClient client;
+
+    /**
+     * The bounded executor running the blocking probes, so that slow blocking probes never hold the threads of the
+     * client.
+     */
+    private final Executor probeExecutor;
+
+    /**
+     * The maximum number of concurrent requests per origin.
+     */
+    private final int maxConnectionsPerOrigin;
+
+    /**
+     * The duration in nanoseconds during which an idle connection is kept in the pool.
+     */
+    private final long keepAliveNanos;
+
+    /**
+     * The gate of each origin, where keys are {@code scheme://host:port}.
+     */
+    private final Map<String, OriginGate> origins = new ConcurrentHashMap<>();
+
+    /**
+     * The number of requests sent.
+     */
+    private final LongAdder requestsSent = new LongAdder();
+
+    /**
+     * The number of requests that most likely reused a pooled connection.
+     */
+    private final LongAdder connectionReuses = new LongAdder();
+
+    /**
+     * The number of requests that most likely opened a new connection.
+     */
+    private final LongAdder newHandshakes = new LongAdder();
+
+    /**
+     * The number of requests that had to wait for a free slot on their origin.
+     */
+    private final LongAdder queuedRequests = new LongAdder();
+
+    /**
+     * Class constructor
+     *
+     * @param executor                The executor running the client's asynchronous tasks
+     * @param probeExecutor           The bounded executor running the blocking probes
+     * @param maxConnectionsPerOrigin The maximum number of concurrent requests per origin
+     * @param keepAlive               The duration during which the client keeps an idle connection in the pool, see
+     *                                {@link #configuredKeepAlive()}
+     * @param connectTimeout          The maximum duration of the opening of a connection
+     */
+    public ProbeHttpClient(Executor executor, Executor probeExecutor, int maxConnectionsPerOrigin, Duration keepAlive, Duration connectTimeout) {
+        this.probeExecutor = probeExecutor;
+        this.maxConnectionsPerOrigin = maxConnectionsPerOrigin;
+        this.keepAliveNanos = keepAlive.toNanos();
+
+        this.client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(connectTimeout)
+                .version(HttpClient.Version.HTTP_2)
+                .build();
+    }
+
+    /**
+     * This function reads the duration during which the JDK client keeps an idle connection in its pool. It is set at
+     * launch with the {@code jdk.httpclient.keepalive.timeout} system property, in seconds, and is 20 minutes by
+     * default.
+     *
+     * @return The duration during which an idle connection is kept in the pool
+     */
+    public static Duration configuredKeepAlive() {
+        return Duration.ofSeconds(Long.getLong("jdk.httpclient.keepalive.timeout", 1200));
+    }
+
+    /**
+     * This function sends a request asynchronously, once a slot is free for its origin.
+     *
+     * @param request     The request to send
+     * @param bodyHandler The handler of the response body
+     * @param <T>         The response body type
+     * @return A future completed with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) {
+        return sendAsync(request, bodyHandler, () -> {
+        });
+    }
+
+    /**
+     * This function sends a request asynchronously, once a slot is free for its origin. Completing the returned future,
+     * by a timeout or a cancel, cancels the exchange and frees its slot for the next request. The request should have
+     * a timeout: the JDK versions not supporting the cancel of an exchange only abort it when it times out.
+     *
+     * @param request     The request to send
+     * @param bodyHandler The handler of the response body
+     * @param onDispatch  Called right before the request is handed to the client, after waiting for a free slot
+     * @param <T>         The response body type
+     * @return A future completed with the response
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler, Runnable onDispatch) {
+        OriginGate gate = gateOf(request.uri());
+
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+
+        boolean started = gate.acquire(() -> {
+            if (gate.takeConnection()) {
+                connectionReuses.increment();
+            } else {
+                newHandshakes.increment();
+            }
+            requestsSent.increment();
+
+            onDispatch.run();
+            CompletableFuture<HttpResponse<T>> exchange = client.sendAsync(request, bodyHandler);
+            exchange.whenComplete((response, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(response);
+                }
+            });
+            // Runs once, whichever of the exchange, the timeout or the cancel completes the result first
+            result.whenComplete((response, error) -> {
+                if (!exchange.isDone()) {
+                    exchange.cancel(true);
+                }
+                gate.release(error == null, response != null && response.version() == HttpClient.Version.HTTP_2);
+            });
+        }, result);
+
+        if (!started) {
+            queuedRequests.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * This function runs a blocking probe on the probe executor, once a slot is free for its origin. Blocking probes
+     * open their own connection, thus always count as a new handshake. Completing the returned future, by a timeout or
+     * a cancel, frees the slot for the next request: the probe is given the future, to stop as soon as it is
+     * completed. A probe rejected by the probe executor fails with a {@link RejectedExecutionException}.
+     *
+     * @param uri   The URI of the website to check
+     * @param probe The blocking probe, given the future of its result
+     * @param <T>   The probe result type
+     * @return A future completed with the probe result
+     */
+    public <T> CompletableFuture<T> probeAsync(URI uri, Function<CompletableFuture<T>, T> probe) {
+        OriginGate gate = gateOf(uri);
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+
+        boolean started = gate.acquire(() -> {
+            newHandshakes.increment();
+            requestsSent.increment();
+
+            result.whenComplete((value, error) -> gate.release(false, false));
+            try {
+                probeExecutor.execute(() -> {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    try {
+                        result.complete(probe.apply(result));
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(new CompletionException(e));
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(new CompletionException(e));
+            }
+        }, result);
+
+        if (!started) {
+            queuedRequests.increment();
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The number of requests sent
+     */
+    public long getRequestsSent() {
+        return requestsSent.sum();
+    }
+
+    /**
+     * @return The number of requests that most likely reused a pooled connection
+     */
+    public long getConnectionReuses() {
+        return connectionReuses.sum();
+    }
+
+    /**
+     * @return The number of requests that most likely opened a new connection, with its TLS handshake
+     */
+    public long getNewHandshakes() {
+        return newHandshakes.sum();
+    }
+
+    /**
+     * @return The number of requests that had to wait for a free slot on their origin
+     */
+    public long getQueuedRequests() {
+        return queuedRequests.sum();
+    }
+
+    /**
+     * @return The number of origins holding a gate, each dropped once no monitored website uses it
+     */
+    public int getOriginCount() {
+        return origins.size();
+    }
+
+    /**
+     * This function drops the gate of an URI's origin if no request uses it, once a website stops being monitored.
+     * The gate is created again by the next request to the origin, only its connection reuse estimate is lost.
+     *
+     * @param uri The URI of the website
+     */
+    public void releaseOrigin(URI uri) {
+        origins.computeIfPresent(originOf(uri), (origin, gate) -> gate.isIdle() ? null : gate);
+    }
+
+    /**
+     * This function finds the gate of an URI's origin, creating it if needed.
+     *
+     * @param uri The URI
+     * @return The origin gate
+     */
+    private OriginGate gateOf(URI uri) {
+        return origins.computeIfAbsent(
+                originOf(uri),
+                origin -> new OriginGate(maxConnectionsPerOrigin, keepAliveNanos, MAX_WAITING_PER_ORIGIN)
+        );
+    }
+
+    /**
+     * This function computes the origin of an URI.
+     *
+     * @param uri The URI
+     * @return The origin, as {@code scheme://host:port}
+     */
+    private static String originOf(URI uri) {
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+    }
+}
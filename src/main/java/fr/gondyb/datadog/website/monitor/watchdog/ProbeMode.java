@@ -0,0 +1,21 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+/**
+ * The different ways a website can be checked. None of them keeps the response body in memory.
+ */
+public enum ProbeMode {
+    /**
+     * A HEAD request, there is no body to transfer.
+     */
+    HEAD,
+
+    /**
+     * A GET request, where the body is read and discarded.
+     */
+    GET_DISCARD,
+
+    /**
+     * A GET request, where the body is read and discarded until a byte cap is reached. The transfer is then cancelled.
+     */
+    GET_CAPPED
+}
@@ -0,0 +1,34 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+/**
+ * This immutable class contains the outcome of a successful website check.
+ */
+class ProbeResult {
+    /**
+     * The HTTP Response code of the response.
+     */
+    final int statusCode;
+
+    /**
+     * The number of response body bytes transferred.
+     */
+    final long bytesTransferred;
+
+    /**
+     * The duration of each phase of the check.
+     */
+    final ProbeTimings timings;
+
+    /**
+     * Class constructor
+     *
+     * @param statusCode       The HTTP Response code of the response
+     * @param bytesTransferred The number of response body bytes transferred
+     * @param timings          The duration of each phase of the check
+     */
+    ProbeResult(int statusCode, long bytesTransferred, ProbeTimings timings) {
+        this.statusCode = statusCode;
+        this.bytesTransferred = bytesTransferred;
+        this.timings = timings;
+    }
+}
@@ -0,0 +1,64 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * This immutable class contains the settings of the requests used to check a website.
+ */
+@Getter
+@EqualsAndHashCode
+public class ProbeSettings {
+    /**
+     * The default settings: a GET request with the body discarded.
+     */
+    public static final ProbeSettings DEFAULT = new ProbeSettings(ProbeMode.GET_DISCARD, Long.MAX_VALUE, false);
+
+    /**
+     * The way the website is checked.
+     */
+    private final ProbeMode probeMode;
+
+    /**
+     * The maximum number of body bytes read with {@link ProbeMode#GET_CAPPED}.
+     */
+    private final long byteCap;
+
+    /**
+     * True if every phase of the checks (DNS, connection, TLS, first byte, body) should be measured. The checks then
+     * open a new connection every time, instead of using the shared connection pool.
+     */
+    private final boolean phaseTimings;
+
+    /**
+     * The timeout in milliseconds after which a check is considered down, 0 to use the polling interval.
+     */
+    private final long timeout;
+
+    /**
+     * Class constructor, where the checks time out after the polling interval
+     *
+     * @param probeMode    The way the website is checked
+     * @param byteCap      The maximum number of body bytes read with {@link ProbeMode#GET_CAPPED}
+     * @param phaseTimings True if every phase of the checks should be measured
+     */
+    public ProbeSettings(ProbeMode probeMode, long byteCap, boolean phaseTimings) {
+        this(probeMode, byteCap, phaseTimings, 0);
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param probeMode    The way the website is checked
+     * @param byteCap      The maximum number of body bytes read with {@link ProbeMode#GET_CAPPED}
+     * @param phaseTimings True if every phase of the checks should be measured
+     * @param timeout      The timeout in milliseconds after which a check is considered down, 0 to use the polling
+     *                     interval
+     */
+    public ProbeSettings(ProbeMode probeMode, long byteCap, boolean phaseTimings, long timeout) {
+        this.probeMode = probeMode;
+        this.byteCap = byteCap;
+        this.phaseTimings = phaseTimings;
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+/**
+ * This class is a monitor subscribed to the probe stream of a {@link WebsiteWatchdog}. It receives the outcome of a
+ * check of the stream once every interval of its own.
+ */
+class ProbeSubscriber {
+
+    /**
+     * The identifier of the monitor in the site registry.
+     */
+    final int siteId;
+
+    /**
+     * The delay in milliseconds at which the monitor receives an outcome.
+     */
+    final long interval;
+
+    /**
+     * The time in milliseconds, as a {@link System#nanoTime()} value, from which the monitor is due an outcome.
+     */
+    long due;
+
+    /**
+     * False once the monitor left the stream: the outcomes of the checks in flight are then dropped.
+     */
+    volatile boolean active = true;
+
+    /**
+     * True once a check due to the monitor was issued.
+     */
+    volatile boolean probed = false;
+
+    /**
+     * Class constructor
+     *
+     * @param siteId   The identifier of the monitor in the site registry
+     * @param interval The delay in milliseconds at which the monitor receives an outcome
+     * @param due      The time in milliseconds from which the monitor is due its first outcome
+     */
+    ProbeSubscriber(int siteId, long interval, long due) {
+        this.siteId = siteId;
+        this.interval = interval;
+        this.due = due;
+    }
+}
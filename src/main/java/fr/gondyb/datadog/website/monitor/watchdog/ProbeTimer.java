@@ -0,0 +1,36 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+/**
+ * This class records the {@link System#nanoTime()} timestamps of a check sent through the {@link ProbeHttpClient}.
+ * The JDK client hides its DNS, connection and TLS phases, so only the first byte and body phases are recorded.
+ */
+class ProbeTimer {
+
+    /**
+     * The timestamp at which the request was handed to the client.
+     */
+    long dispatchNanos;
+
+    /**
+     * The timestamp at which the response headers were received.
+     */
+    long firstByteNanos;
+
+    /**
+     * The timestamp at which the response body was fully received, or cancelled.
+     */
+    long endNanos;
+
+    /**
+     * @return The recorded phases
+     */
+    ProbeTimings toTimings() {
+        return new ProbeTimings(
+                -1,
+                -1,
+                -1,
+                firstByteNanos - dispatchNanos,
+                endNanos - firstByteNanos
+        );
+    }
+}
@@ -0,0 +1,91 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import lombok.Getter;
+
+/**
+ * This immutable class contains the duration of each phase of a website check, in nanoseconds.
+ * A phase that could not be measured has a duration of {@code -1}.
+ */
+@Getter
+public class ProbeTimings {
+    /**
+     * The timings of a check where no phase could be measured.
+     */
+    public static final ProbeTimings UNKNOWN = new ProbeTimings(-1, -1, -1, -1, -1);
+
+    /**
+     * The number of phases of a check, see {@link #getPhaseNanos(int)}.
+     */
+    public static final int PHASES = 5;
+
+    /**
+     * The DNS resolution duration in nanoseconds.
+     */
+    private final long dnsNanos;
+
+    /**
+     * The TCP connection duration in nanoseconds.
+     */
+    private final long connectNanos;
+
+    /**
+     * The TLS handshake duration in nanoseconds.
+     */
+    private final long tlsNanos;
+
+    /**
+     * The duration in nanoseconds between the request being sent and the first byte of the response.
+     */
+    private final long firstByteNanos;
+
+    /**
+     * The response body transfer duration in nanoseconds.
+     */
+    private final long bodyNanos;
+
+    /**
+     * Class constructor
+     *
+     * @param dnsNanos       The DNS resolution duration in nanoseconds
+     * @param connectNanos   The TCP connection duration in nanoseconds
+     * @param tlsNanos       The TLS handshake duration in nanoseconds
+     * @param firstByteNanos The duration in nanoseconds between the request being sent and the first byte
+     * @param bodyNanos      The response body transfer duration in nanoseconds
+     */
+    public ProbeTimings(long dnsNanos, long connectNanos, long tlsNanos, long firstByteNanos, long bodyNanos) {
+        this.dnsNanos = dnsNanos;
+        this.connectNanos = connectNanos;
+        this.tlsNanos = tlsNanos;
+        this.firstByteNanos = firstByteNanos;
+        this.bodyNanos = bodyNanos;
+    }
+
+    /**
+     * @param phase The phase index: 0 for DNS, 1 for connection, 2 for TLS, 3 for first byte and 4 for body
+     * @return The duration of the phase in nanoseconds, or -1 if it was not measured
+     */
+    public long getPhaseNanos(int phase) {
+        switch (phase) {
+            case 0:
+                return dnsNanos;
+            case 1:
+                return connectNanos;
+            case 2:
+                return tlsNanos;
+            case 3:
+                return firstByteNanos;
+            case 4:
+                return bodyNanos;
+            default:
+                throw new IndexOutOfBoundsException("Unknown phase " + phase);
+        }
+    }
+
+    /**
+     * @return The sum of every measured phase, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return Math.max(dnsNanos, 0) + Math.max(connectNanos, 0) + Math.max(tlsNanos, 0)
+                + Math.max(firstByteNanos, 0) + Math.max(bodyNanos, 0);
+    }
+}
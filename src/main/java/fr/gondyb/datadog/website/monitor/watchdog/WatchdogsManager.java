@@ -2,53 +2,158 @@ package fr.gondyb.datadog.website.monitor.watchdog;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
 import fr.gondyb.datadog.website.monitor.ui.MainWindow;
+import fr.gondyb.datadog.website.monitor.ui.event.ReconfigureMonitorEvent;
 import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
- * This class manages the different {@link WebsiteWatchdog} that monitor websites.
+ * This class manages the different {@link WebsiteWatchdog} that monitor websites. The monitors of a same URI with the
+ * same probe settings share a single {@link WebsiteWatchdog}, so that the website is checked once for all of them.
  */
 public class WatchdogsManager {
     /**
-     * The list of currently started {@link WebsiteWatchdog}.
+     * The {@link WebsiteWatchdog} every monitor is subscribed to, indexed by website identifier. Written by the shard
+     * owning the website, and read by any thread.
      */
-    private final List<WebsiteWatchdog> watchdogs;
+    private final AtomicReferenceArray<WebsiteWatchdog> watchdogs;
+
+    /**
+     * The started {@link WebsiteWatchdog}, by URI and probe settings.
+     */
+    private final ConcurrentMap<Map.Entry<URI, ProbeSettings>, WebsiteWatchdog> streams = new ConcurrentHashMap<>();
 
     /**
      * The global EventBus.
      */
     private final EventBus eventBus;
 
+    /**
+     * The shards dispatching the events of the websites, delivering the outcomes of their checks.
+     */
+    private final ShardedExecutor shards;
+
+    /**
+     * The shared scheduler the watchdogs register with.
+     */
+    private final HashedWheelScheduler scheduler;
+
+    /**
+     * The client shared by every watchdog.
+     */
+    private final ProbeHttpClient client;
+
     /**
      * Class Constructor
      *
-     * @param eventBus The global EventBus
+     * @param eventBus  The global EventBus
+     * @param shards    The shards dispatching the events of the websites, delivering the outcomes of their checks
+     * @param scheduler The shared scheduler the watchdogs register with
+     * @param client    The client shared by every watchdog
+     * @param registry  The registry of the monitored websites
      */
-    public WatchdogsManager(EventBus eventBus) {
+    public WatchdogsManager(EventBus eventBus, ShardedExecutor shards, HashedWheelScheduler scheduler, ProbeHttpClient client, SiteRegistry registry) {
         this.eventBus = eventBus;
-        this.watchdogs = new ArrayList<>();
+        this.shards = shards;
+        this.scheduler = scheduler;
+        this.client = client;
+        this.watchdogs = new AtomicReferenceArray<>(registry.capacity());
     }
 
     /**
-     * This function creates a new {@link WebsiteWatchdog} from a {@link StartMonitorEvent}.
-     * It then starts the WatchDog.
+     * This function subscribes a website to the {@link WebsiteWatchdog} of its URI and probe settings from a
+     * {@link StartMonitorEvent}, starting the watchdog if there is none.
      *
      * @param event The event to create the watchdog from.
      * @see MainWindow
      */
     @Subscribe
     public void addWatchdog(StartMonitorEvent event) {
-        WebsiteWatchdog watchdog = new WebsiteWatchdog(
-                event.getUri(),
-                event.getDelay(),
-                eventBus
-        );
+        startWatchdog(event.getSiteId(), event.getUri(), event.getDelay(), event.getProbeSettings());
+    }
 
-        watchdog.start();
+    /**
+     * This function unsubscribes a website from its {@link WebsiteWatchdog}, and subscribes it again with the settings
+     * of a {@link ReconfigureMonitorEvent}.
+     *
+     * @param event The event containing the new settings
+     */
+    @Subscribe
+    public void reconfigureWatchdog(ReconfigureMonitorEvent event) {
+        startWatchdog(event.getSiteId(), event.getUri(), event.getDelay(), event.getProbeSettings());
+    }
 
-        watchdogs.add(watchdog);
+    /**
+     * This function unsubscribes a website from its {@link WebsiteWatchdog} from a {@link StopMonitorEvent}. The
+     * watchdog is stopped once no website is subscribed to it anymore.
+     *
+     * @param event The event containing the website to stop monitoring
+     */
+    @Subscribe
+    public void removeWatchdog(StopMonitorEvent event) {
+        leaveWatchdog(event.getSiteId());
+    }
+
+    /**
+     * @return The number of started {@link WebsiteWatchdog}, each checking one website with one probe settings
+     */
+    public int getStreamCount() {
+        return streams.size();
+    }
+
+    /**
+     * @param siteId The identifier of the website in the site registry
+     * @return True if the website is monitored, and a check due to it was issued since it was started or reconfigured
+     */
+    public boolean isProbed(int siteId) {
+        WebsiteWatchdog watchdog = watchdogs.get(siteId);
+        return watchdog != null && watchdog.isProbed(siteId);
+    }
+
+    /**
+     * This function subscribes a website to the watchdog of its URI and probe settings, after unsubscribing it from
+     * its previous one if any.
+     *
+     * @param siteId        The identifier of the website in the site registry
+     * @param uri           The URI of the website
+     * @param delay         The delay in milliseconds at which the website will be checked
+     * @param probeSettings The settings of the requests used to check the website
+     */
+    private void startWatchdog(int siteId, URI uri, long delay, ProbeSettings probeSettings) {
+        leaveWatchdog(siteId);
+
+        watchdogs.set(siteId, streams.compute(Map.entry(uri, probeSettings), (key, watchdog) -> {
+            if (watchdog == null) {
+                watchdog = new WebsiteWatchdog(uri, probeSettings, eventBus, shards, scheduler, client);
+            }
+            watchdog.join(siteId, delay);
+            return watchdog;
+        }));
+    }
+
+    /**
+     * This function unsubscribes a website from its watchdog, and forgets the watchdog once it is stopped.
+     *
+     * @param siteId The identifier of the website in the site registry
+     */
+    private void leaveWatchdog(int siteId) {
+        WebsiteWatchdog previous = watchdogs.get(siteId);
+        if (previous == null) {
+            return;
+        }
+        watchdogs.set(siteId, null);
+        streams.computeIfPresent(
+                Map.entry(previous.getWebsiteUrl(), previous.getProbeSettings()),
+                (key, watchdog) -> watchdog.leave(siteId) ? null : watchdog
+        );
     }
 }
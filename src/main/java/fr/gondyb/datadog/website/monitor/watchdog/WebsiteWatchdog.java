@@ -1,12 +1,20 @@
 package fr.gondyb.datadog.website.monitor.watchdog;
 
 import com.google.common.eventbus.EventBus;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.scheduler.ScheduledTask;
 
 import java.net.URI;
-import java.util.Timer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
- * This class periodically triggers the {@link CheckWebsiteTask} to check a website availability.
+ * This class periodically triggers the {@link CheckWebsiteTask} to check a website availability. It is the single
+ * probe stream of a website and its probe settings: the monitors of the website sharing these settings subscribe to
+ * it, the website is checked at the fastest of their intervals, and every monitor receives one outcome per interval
+ * of its own.
  */
 public class WebsiteWatchdog {
 
@@ -16,9 +24,9 @@ public class WebsiteWatchdog {
     private final URI websiteUrl;
 
     /**
-     * The interval for which the timer should check availability.
+     * The settings of the requests used to check the website.
      */
-    private final long interval;
+    private final ProbeSettings probeSettings;
 
     /**
      * The global EventBus
@@ -26,33 +34,194 @@ public class WebsiteWatchdog {
     private final EventBus eventBus;
 
     /**
-     * The timer periodically calling the {@link CheckWebsiteTask}
+     * The shards owning the monitors, delivering their outcomes.
      */
-    private final Timer timer;
+    private final ShardedExecutor shards;
+
+    /**
+     * The shared scheduler periodically calling the {@link CheckWebsiteTask}
+     */
+    private final HashedWheelScheduler scheduler;
+
+    /**
+     * The shared client used to make requests.
+     */
+    private final ProbeHttpClient client;
+
+    /**
+     * The monitors subscribed to the stream.
+     */
+    private final List<ProbeSubscriber> subscribers = new ArrayList<>();
+
+    /**
+     * The interval at which the website is currently checked, 0 when the stream is not started.
+     */
+    private long interval = 0;
+
+    /**
+     * The handle of the periodic task, once started.
+     */
+    private ScheduledTask scheduledTask;
+
+    /**
+     * The periodic task, once started.
+     */
+    private CheckWebsiteTask checkTask;
 
     /**
      * Class constructor
      *
-     * @param websiteUrl The website URI
-     * @param interval   The interval for which the timer should check availability
-     * @param eventBus   The global EventBus
+     * @param websiteUrl    The website URI
+     * @param probeSettings The settings of the requests used to check the website
+     * @param eventBus      The global EventBus
+     * @param shards        The shards owning the monitors, delivering their outcomes
+     * @param scheduler     The shared scheduler periodically calling the {@link CheckWebsiteTask}
+     * @param client        The shared client used to make requests
      */
-    public WebsiteWatchdog(URI websiteUrl, long interval, EventBus eventBus) {
+    public WebsiteWatchdog(URI websiteUrl, ProbeSettings probeSettings, EventBus eventBus, ShardedExecutor shards, HashedWheelScheduler scheduler, ProbeHttpClient client) {
         this.websiteUrl = websiteUrl;
-        this.interval = interval;
+        this.probeSettings = probeSettings;
         this.eventBus = eventBus;
+        this.shards = shards;
+        this.scheduler = scheduler;
+        this.client = client;
+    }
+
+    /**
+     * This function subscribes a monitor to the stream. The monitor is due an outcome right away, and the stream is
+     * restarted if the monitor is faster than the current interval.
+     *
+     * @param siteId   The identifier of the monitor in the site registry
+     * @param interval The delay in milliseconds at which the monitor receives an outcome
+     */
+    public synchronized void join(int siteId, long interval) {
+        subscribers.add(new ProbeSubscriber(siteId, interval, now()));
+        if (this.interval == 0 || interval < this.interval) {
+            schedule(interval);
+        }
+    }
+
+    /**
+     * This function unsubscribes a monitor from the stream. The outcomes of the checks in flight are not delivered to
+     * it anymore, as long as it is called by the shard owning the monitor, and the stream slows down to the fastest
+     * remaining interval.
+     *
+     * @param siteId The identifier of the monitor in the site registry
+     * @return True if no monitor is subscribed anymore, the stream being stopped
+     */
+    public synchronized boolean leave(int siteId) {
+        long fastest = Long.MAX_VALUE;
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            ProbeSubscriber subscriber = subscribers.get(i);
+            if (subscriber.siteId == siteId) {
+                subscriber.active = false;
+                subscribers.remove(i);
+            } else {
+                fastest = Math.min(fastest, subscriber.interval);
+            }
+        }
+
+        if (subscribers.isEmpty()) {
+            stop();
+            return true;
+        }
+        if (fastest != interval) {
+            schedule(fastest);
+        }
+        return false;
+    }
+
+    /**
+     * This function stops the periodic task, and cancels the check in flight.
+     */
+    public synchronized void stop() {
+        if (scheduledTask != null) {
+            scheduledTask.cancel();
+            checkTask.stop();
+            scheduledTask = null;
+            interval = 0;
+        }
+    }
+
+    /**
+     * @param siteId The identifier of the monitor in the site registry
+     * @return True if a check due to the monitor was issued since it subscribed
+     */
+    public synchronized boolean isProbed(int siteId) {
+        for (ProbeSubscriber subscriber : subscribers) {
+            if (subscriber.siteId == siteId) {
+                return subscriber.probed;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The website URI
+     */
+    public URI getWebsiteUrl() {
+        return websiteUrl;
+    }
+
+    /**
+     * @return The settings of the requests used to check the website
+     */
+    public ProbeSettings getProbeSettings() {
+        return probeSettings;
+    }
 
-        timer = new Timer();
+    /**
+     * @return The interval at which the website is currently checked, 0 when the stream is not started
+     */
+    public synchronized long getInterval() {
+        return interval;
     }
 
     /**
-     * This function starts the periodic task.
+     * This function (re)starts the periodic task at a new interval. The check in flight of the previous task is not
+     * cancelled: its outcome is still delivered. A check times out after the timeout of the probe settings, or after
+     * the interval if there is none.
+     *
+     * @param interval The new interval
      */
-    public void start() {
-        timer.scheduleAtFixedRate(
-                new CheckWebsiteTask(websiteUrl, interval, eventBus),
+    private void schedule(long interval) {
+        if (scheduledTask != null) {
+            scheduledTask.cancel();
+        }
+        this.interval = interval;
+        long timeout = probeSettings.getTimeout() > 0 ? probeSettings.getTimeout() : interval;
+        checkTask = new CheckWebsiteTask(this::due, websiteUrl, timeout, probeSettings, eventBus, shards, client);
+        scheduledTask = scheduler.scheduleAtFixedRate(
+                checkTask,
                 0,
                 interval
         );
     }
+
+    /**
+     * This function selects the monitors due the outcome of the check about to be sent. A monitor is due once its
+     * interval elapsed since its previous outcome, with a tolerance of half the stream interval to absorb the jitter
+     * of the ticks.
+     *
+     * @return The monitors due an outcome
+     */
+    private synchronized ProbeSubscriber[] due() {
+        long now = now();
+        long tolerance = interval / 2;
+        List<ProbeSubscriber> due = new ArrayList<>(subscribers.size());
+        for (ProbeSubscriber subscriber : subscribers) {
+            if (now >= subscriber.due - tolerance) {
+                subscriber.due = Math.max(subscriber.due + subscriber.interval, now + subscriber.interval - tolerance);
+                due.add(subscriber);
+            }
+        }
+        return due.toArray(new ProbeSubscriber[0]);
+    }
+
+    /**
+     * @return The current time in milliseconds, from {@link System#nanoTime()}
+     */
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
 }
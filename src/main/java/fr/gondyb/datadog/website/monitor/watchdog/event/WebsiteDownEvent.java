@@ -1,5 +1,6 @@
 package fr.gondyb.datadog.website.monitor.watchdog.event;
 
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
 import lombok.Getter;
 
 import java.net.URI;
@@ -8,18 +9,42 @@ import java.net.URI;
  * This immutable class is an event informing that the website with provided URI is down.
  */
 @Getter
-public class WebsiteDownEvent {
+public class WebsiteDownEvent implements SiteEvent {
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
     /**
      * The URI of the down website.
      */
     private final URI uri;
 
+    /**
+     * The time in milliseconds since the epoch when the check ended.
+     */
+    private final long timestamp;
+
+    /**
+     * Class constructor, for a check ending now
+     *
+     * @param siteId The identifier of the website in the site registry
+     * @param uri    The URI of the down website.
+     */
+    public WebsiteDownEvent(int siteId, URI uri) {
+        this(siteId, uri, System.currentTimeMillis());
+    }
+
     /**
      * Class constructor
      *
-     * @param uri The URI of the down website.
+     * @param siteId    The identifier of the website in the site registry
+     * @param uri       The URI of the down website.
+     * @param timestamp The time in milliseconds since the epoch when the check ended
      */
-    public WebsiteDownEvent(URI uri) {
+    public WebsiteDownEvent(int siteId, URI uri, long timestamp) {
+        this.siteId = siteId;
         this.uri = uri;
+        this.timestamp = timestamp;
     }
 }
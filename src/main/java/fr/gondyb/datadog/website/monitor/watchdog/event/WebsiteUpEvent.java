@@ -1,5 +1,7 @@
 package fr.gondyb.datadog.website.monitor.watchdog.event;
 
+import fr.gondyb.datadog.website.monitor.pipeline.SiteEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
 import lombok.Getter;
 
 import java.net.URI;
@@ -8,7 +10,7 @@ import java.net.URI;
  * This immutable class is an event informing that the website with the provided URI is UP.
  */
 @Getter
-public class WebsiteUpEvent {
+public class WebsiteUpEvent implements SiteEvent {
     /**
      * The response time in milliseconds for the response to arrive.
      */
@@ -19,21 +21,75 @@ public class WebsiteUpEvent {
      */
     private final int responseCode;
 
+    /**
+     * The identifier of the website in the site registry.
+     */
+    private final int siteId;
+
     /**
      * The website URI.
      */
     private final URI uri;
 
     /**
-     * Class constructor
+     * The number of response body bytes transferred.
+     */
+    private final long bytesTransferred;
+
+    /**
+     * The duration of each phase of the check.
+     */
+    private final ProbeTimings timings;
+
+    /**
+     * The time in milliseconds since the epoch when the check ended.
+     */
+    private final long timestamp;
+
+    /**
+     * Class constructor, for a response without body nor measured phases
      *
      * @param responseTime The response time in milliseconds for the response to arrive
      * @param responseCode The HTTP Response code of the response
+     * @param siteId       The identifier of the website in the site registry
      * @param uri          The website URI
      */
-    public WebsiteUpEvent(long responseTime, int responseCode, URI uri) {
+    public WebsiteUpEvent(long responseTime, int responseCode, int siteId, URI uri) {
+        this(responseTime, responseCode, siteId, uri, 0, ProbeTimings.UNKNOWN);
+    }
+
+    /**
+     * Class constructor, for a check ending now
+     *
+     * @param responseTime     The response time in milliseconds for the response to arrive
+     * @param responseCode     The HTTP Response code of the response
+     * @param siteId           The identifier of the website in the site registry
+     * @param uri              The website URI
+     * @param bytesTransferred The number of response body bytes transferred
+     * @param timings          The duration of each phase of the check
+     */
+    public WebsiteUpEvent(long responseTime, int responseCode, int siteId, URI uri, long bytesTransferred, ProbeTimings timings) {
+        this(responseTime, responseCode, siteId, uri, bytesTransferred, timings, System.currentTimeMillis());
+    }
+
+    /**
+     * Class constructor
+     *
+     * @param responseTime     The response time in milliseconds for the response to arrive
+     * @param responseCode     The HTTP Response code of the response
+     * @param siteId           The identifier of the website in the site registry
+     * @param uri              The website URI
+     * @param bytesTransferred The number of response body bytes transferred
+     * @param timings          The duration of each phase of the check
+     * @param timestamp        The time in milliseconds since the epoch when the check ended
+     */
+    public WebsiteUpEvent(long responseTime, int responseCode, int siteId, URI uri, long bytesTransferred, ProbeTimings timings, long timestamp) {
         this.responseTime = responseTime;
         this.responseCode = responseCode;
+        this.siteId = siteId;
         this.uri = uri;
+        this.bytesTransferred = bytesTransferred;
+        this.timings = timings;
+        this.timestamp = timestamp;
     }
 }
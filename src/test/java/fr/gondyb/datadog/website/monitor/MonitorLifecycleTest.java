@@ -0,0 +1,87 @@
+package fr.gondyb.datadog.website.monitor;
+
+import com.google.common.eventbus.EventBus;
+import fr.gondyb.datadog.website.monitor.alarm.AlarmDetector;
+import fr.gondyb.datadog.website.monitor.alarm.AvailabilityCalculator;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.statistics.StatisticsManager;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeHttpClient;
+import fr.gondyb.datadog.website.monitor.watchdog.WatchdogsManager;
+import org.junit.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MonitorLifecycleTest {
+
+    @Test
+    public void it_should_release_the_state_of_removed_websites() throws InterruptedException {
+        // Arrange
+        EventBus eventBus = new EventBus("test");
+        SiteRegistry registry = new SiteRegistry(1024);
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(1, TimeUnit.MILLISECONDS, 64, 1);
+        // The client never runs the exchanges: the checks stay in flight, and no connection is opened
+        ProbeHttpClient client = new ProbeHttpClient(
+                task -> {
+                },
+                task -> {
+                },
+                6,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(1)
+        );
+        WatchdogsManager watchdogsManager = new WatchdogsManager(eventBus, ShardedExecutor.inline(), scheduler, client, registry);
+        AvailabilityCalculator availabilityCalculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus, registry);
+        StatisticsManager statisticsManager = new StatisticsManager(eventBus, ShardedExecutor.inline(), scheduler, registry);
+        eventBus.register(registry);
+        eventBus.register(watchdogsManager);
+        eventBus.register(availabilityCalculator);
+        eventBus.register(new AlarmDetector(80, eventBus, registry));
+        eventBus.register(statisticsManager);
+        long baselineTasks = scheduler.getActiveTasks();
+
+        // Act
+        churn(eventBus, registry, 10_000);
+        // A cancelled task leaves the wheel at the latest after one rotation, 64ms here
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (scheduler.getActiveTasks() != baselineTasks && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Assert
+        assertEquals(1, registry.idLimit());
+        assertEquals(-1, registry.idOf(URI.create("http://site-0.test/")));
+        assertEquals(baselineTasks, scheduler.getActiveTasks());
+        assertEquals(0, watchdogsManager.getStreamCount());
+        assertEquals(0, availabilityCalculator.footprintBytes(0));
+        assertTrue(statisticsManager.getFootprintReport().isEmpty());
+        assertEquals(0, client.getOriginCount());
+
+        scheduler.shutdown();
+    }
+
+    /**
+     * This function adds and removes websites, one at a time.
+     *
+     * @param eventBus The EventBus the components are registered with
+     * @param registry The registry of the monitored websites
+     * @param cycles   The number of websites added then removed
+     */
+    private static void churn(EventBus eventBus, SiteRegistry registry, int cycles) {
+        for (int i = 0; i < cycles; i++) {
+            // One origin per website, the host names are never resolved
+            URI uri = URI.create("http://site-" + i + ".test/");
+            int siteId = registry.register(uri);
+            eventBus.post(new StartMonitorEvent(siteId, uri, TimeUnit.MINUTES.toMillis(1)));
+            eventBus.post(new StopMonitorEvent(siteId, uri));
+        }
+    }
+}
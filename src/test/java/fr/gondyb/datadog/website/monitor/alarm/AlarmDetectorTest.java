@@ -3,6 +3,7 @@ package fr.gondyb.datadog.website.monitor.alarm;
 import com.google.common.eventbus.EventBus;
 import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
 import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
@@ -21,11 +22,12 @@ public class AlarmDetectorTest {
     public void it_should_throw_an_alarm_event_if_availability_is_under_80() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AlarmDetector alarmDetector = new AlarmDetector(80, eventBus);
+        AlarmDetector alarmDetector = new AlarmDetector(80, eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test.fr");
 
         AvailabilityCalculatedEvent availabilityCalculatedEvent = new AvailabilityCalculatedEvent(
+                0,
                 uri,
                 70
         );
@@ -41,11 +43,12 @@ public class AlarmDetectorTest {
     public void it_should_not_throw_an_alarm_event_if_availability_is_over_80() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AlarmDetector alarmDetector = new AlarmDetector(80, eventBus);
+        AlarmDetector alarmDetector = new AlarmDetector(80, eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test.fr");
 
         AvailabilityCalculatedEvent availabilityCalculatedEvent = new AvailabilityCalculatedEvent(
+                0,
                 uri,
                 90
         );
@@ -61,11 +64,12 @@ public class AlarmDetectorTest {
     public void it_should_throw_an_alarm_stopped_event_if_availability_is_over_80_after_being_triggered() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AlarmDetector alarmDetector = new AlarmDetector(80, eventBus);
+        AlarmDetector alarmDetector = new AlarmDetector(80, eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test.fr");
 
         AvailabilityCalculatedEvent availabilityCalculatedEvent = new AvailabilityCalculatedEvent(
+                0,
                 uri,
                 70
         );
@@ -77,6 +81,7 @@ public class AlarmDetectorTest {
         verify(eventBus).post(isA(AlarmTriggeredEvent.class));
 
         availabilityCalculatedEvent = new AvailabilityCalculatedEvent(
+                0,
                 uri,
                 90
         );
@@ -2,6 +2,7 @@ package fr.gondyb.datadog.website.monitor.alarm;
 
 import com.google.common.eventbus.EventBus;
 import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
 import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
 import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
@@ -27,11 +28,12 @@ public class AvailabilityCalculatorTest {
     public void it_should_publish_availability_after_receiving_a_website_up_event() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus);
+        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test/");
 
         StartMonitorEvent startMonitorEvent = new StartMonitorEvent(
+                0,
                 uri,
                 1000
         );
@@ -41,7 +43,8 @@ public class AvailabilityCalculatorTest {
         WebsiteUpEvent event = new WebsiteUpEvent(
                 300,
                 200,
-               uri
+                0,
+                uri
         );
 
         // Act
@@ -56,11 +59,12 @@ public class AvailabilityCalculatorTest {
     public void it_should_publish_availability_after_receiving_a_website_down_event() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus);
+        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test/");
 
         StartMonitorEvent startMonitorEvent = new StartMonitorEvent(
+                0,
                 uri,
                 1000
         );
@@ -68,6 +72,7 @@ public class AvailabilityCalculatorTest {
         calculator.handleStartMonitoring(startMonitorEvent);
 
         WebsiteDownEvent event = new WebsiteDownEvent(
+                0,
                 uri
         );
 
@@ -82,11 +87,12 @@ public class AvailabilityCalculatorTest {
     public void it_should_return_75_availability() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus);
+        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test/");
 
         StartMonitorEvent startMonitorEvent = new StartMonitorEvent(
+                0,
                 uri,
                 1000
         );
@@ -98,6 +104,7 @@ public class AvailabilityCalculatorTest {
             WebsiteUpEvent event = new WebsiteUpEvent(
                     384,
                     200,
+                    0,
                     uri
             );
 
@@ -107,6 +114,7 @@ public class AvailabilityCalculatorTest {
 
         for (int i = 0 ; i < 30 ; i++) {
             WebsiteDownEvent event = new WebsiteDownEvent(
+                    0,
                     uri
             );
 
@@ -126,11 +134,12 @@ public class AvailabilityCalculatorTest {
     public void it_should_return_under_75_availability() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus);
+        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test/");
 
         StartMonitorEvent startMonitorEvent = new StartMonitorEvent(
+                0,
                 uri,
                 2000
         );
@@ -142,6 +151,7 @@ public class AvailabilityCalculatorTest {
             WebsiteUpEvent event = new WebsiteUpEvent(
                     384,
                     200,
+                    0,
                     uri
             );
 
@@ -151,6 +161,7 @@ public class AvailabilityCalculatorTest {
 
         for (int i = 0 ; i < 30 ; i++) {
             WebsiteDownEvent event = new WebsiteDownEvent(
+                    0,
                     uri
             );
 
@@ -170,11 +181,12 @@ public class AvailabilityCalculatorTest {
     public void it_should_return_over_75_availability() {
         // Arrange
         EventBus eventBus = Mockito.mock(EventBus.class);
-        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus);
+        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.MINUTES.toMillis(2), eventBus, new SiteRegistry(16));
 
         URI uri = URI.create("http://test/");
 
         StartMonitorEvent startMonitorEvent = new StartMonitorEvent(
+                0,
                 uri,
                 1000
         );
@@ -184,6 +196,7 @@ public class AvailabilityCalculatorTest {
         // Act
         for (int i = 0 ; i < 90 ; i++) {
             WebsiteDownEvent event = new WebsiteDownEvent(
+                    0,
                     uri
             );
 
@@ -194,6 +207,7 @@ public class AvailabilityCalculatorTest {
             WebsiteUpEvent event = new WebsiteUpEvent(
                     384,
                     200,
+                    0,
                     uri
             );
 
@@ -207,4 +221,16 @@ public class AvailabilityCalculatorTest {
         assertTrue(event.getAvailability() > 75);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void it_should_store_one_bit_per_check() {
+        // Arrange
+        AvailabilityCalculator calculator = new AvailabilityCalculator(TimeUnit.HOURS.toMillis(1), Mockito.mock(EventBus.class), new SiteRegistry(16));
+        URI uri = URI.create("http://test/");
+
+        // Act
+        calculator.handleStartMonitoring(new StartMonitorEvent(0, uri, 100));
+
+        // Assert: 36 000 checks, plus the window and its map entry
+        assertTrue(calculator.footprintBytes(0) < 36_000 / 8 + 100);
+    }
+}
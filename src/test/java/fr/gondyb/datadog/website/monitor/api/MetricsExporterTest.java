@@ -0,0 +1,103 @@
+package fr.gondyb.datadog.website.monitor.api;
+
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.alarm.event.AvailabilityCalculatedEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsExporterTest {
+
+    @Test
+    public void it_should_render_the_metrics_of_every_website_in_the_openmetrics_format() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(16);
+        URI checked = URI.create("http://checked.fr");
+        URI stopped = URI.create("http://stopped.fr");
+        URI pending = URI.create("http://pending.fr");
+        int checkedId = registry.register(checked, "team-b");
+        int stoppedId = registry.register(stopped);
+        registry.register(pending);
+        MetricsExporter exporter = new MetricsExporter(registry);
+
+        // Act
+        exporter.handleAvailabilityCalculatedEvent(new AvailabilityCalculatedEvent(checkedId, checked, 62.5));
+        exporter.handleAvailabilityCalculatedEvent(new AvailabilityCalculatedEvent(stoppedId, stopped, 100));
+        exporter.handleAlarmTriggeredEvent(new AlarmTriggeredEvent(checkedId, checked, 62.5, 0));
+        exporter.handleStatisticsUpdatedEvent(new StatisticsUpdatedEvent(
+                TimeUnit.HOURS.toMillis(1),
+                new int[]{checkedId},
+                new long[]{120},
+                new long[]{1300},
+                new long[]{50},
+                new double[]{62.5},
+                new int[]{0, 0, 9, 0, 0, 1},
+                new long[]{110, 200, 290, -1},
+                new long[]{-1, -1, -1, -1, -1}
+        ));
+        exporter.handleStopMonitorEvent(new StopMonitorEvent(stoppedId, stopped));
+        registry.release(stoppedId, stopped);
+
+        // Assert
+        String labels = "uri=\"http://checked.fr\",name=\"team-b\"";
+        assertEquals("# TYPE wsmonitor_availability_ratio gauge\n"
+                + "# HELP wsmonitor_availability_ratio The availability of the website over the availability period.\n"
+                + "wsmonitor_availability_ratio{" + labels + "} 0.625000\n"
+                + "# TYPE wsmonitor_alarm_triggered gauge\n"
+                + "# HELP wsmonitor_alarm_triggered Whether the availability alarm of the website is triggered.\n"
+                + "wsmonitor_alarm_triggered{" + labels + "} 1\n"
+                + "wsmonitor_alarm_triggered{uri=\"http://pending.fr\",name=\"\"} 0\n"
+                + "# TYPE wsmonitor_latency_seconds summary\n"
+                + "# HELP wsmonitor_latency_seconds The latency percentiles of the website over the window.\n"
+                + "wsmonitor_latency_seconds{" + labels + ",window=\"1h\",quantile=\"0.5\"} 0.110000\n"
+                + "wsmonitor_latency_seconds{" + labels + ",window=\"1h\",quantile=\"0.9\"} 0.200000\n"
+                + "wsmonitor_latency_seconds{" + labels + ",window=\"1h\",quantile=\"0.99\"} 0.290000\n"
+                + "# TYPE wsmonitor_latency_average_seconds gauge\n"
+                + "# HELP wsmonitor_latency_average_seconds The average latency of the website over the window.\n"
+                + "wsmonitor_latency_average_seconds{" + labels + ",window=\"1h\"} 0.120000\n"
+                + "# TYPE wsmonitor_latency_min_seconds gauge\n"
+                + "# HELP wsmonitor_latency_min_seconds The minimum latency of the website over the window.\n"
+                + "wsmonitor_latency_min_seconds{" + labels + ",window=\"1h\"} 0.050000\n"
+                + "# TYPE wsmonitor_latency_max_seconds gauge\n"
+                + "# HELP wsmonitor_latency_max_seconds The maximum latency of the website over the window.\n"
+                + "wsmonitor_latency_max_seconds{" + labels + ",window=\"1h\"} 1.300000\n"
+                + "# TYPE wsmonitor_window_responses gauge\n"
+                + "# HELP wsmonitor_window_responses The number of responses of the website over the window, per class.\n"
+                + "wsmonitor_window_responses{" + labels + ",window=\"1h\",class=\"1xx\"} 0\n"
+                + "wsmonitor_window_responses{" + labels + ",window=\"1h\",class=\"2xx\"} 9\n"
+                + "wsmonitor_window_responses{" + labels + ",window=\"1h\",class=\"3xx\"} 0\n"
+                + "wsmonitor_window_responses{" + labels + ",window=\"1h\",class=\"4xx\"} 0\n"
+                + "wsmonitor_window_responses{" + labels + ",window=\"1h\",class=\"5xx\"} 1\n"
+                + "# EOF\n", exporter.render(new MetricsBuffer()).toString());
+    }
+
+    @Test
+    public void it_should_not_render_the_labels_of_a_previous_website_of_a_reused_identifier() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(16);
+        URI previous = URI.create("http://previous.fr");
+        URI next = URI.create("http://next.fr");
+        int siteId = registry.register(previous);
+        MetricsExporter exporter = new MetricsExporter(registry);
+        exporter.handleAlarmTriggeredEvent(new AlarmTriggeredEvent(siteId, previous, 62.5, 0));
+        exporter.render(new MetricsBuffer());
+
+        // Act: the labels were cached by a scrape racing the StopMonitorEvent, after it dropped them
+        registry.release(siteId, previous);
+        int reusedId = registry.register(next);
+        String metrics = exporter.render(new MetricsBuffer()).toString();
+
+        // Assert
+        assertEquals(siteId, reusedId);
+        assertTrue(metrics, metrics.contains("uri=\"http://next.fr\""));
+        assertFalse(metrics, metrics.contains("previous"));
+    }
+}
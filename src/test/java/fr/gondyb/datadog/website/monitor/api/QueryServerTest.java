@@ -0,0 +1,79 @@
+package fr.gondyb.datadog.website.monitor.api;
+
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class QueryServerTest {
+
+    @Test
+    public void it_should_serve_the_latest_statistics_and_alarms() throws IOException, InterruptedException {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(16);
+        URI uri = URI.create("http://test.fr");
+        int siteId = registry.register(uri, "team \"b\"");
+        StatisticsSnapshots snapshots = new StatisticsSnapshots(registry);
+        HttpClient client = HttpClient.newHttpClient();
+
+        try (QueryServer server = new QueryServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), snapshots, new MetricsExporter(registry))) {
+            server.start();
+            String base = "http://localhost:" + server.getAddress().getPort();
+
+            // Act
+            snapshots.handleStatisticsUpdatedEvent(new StatisticsUpdatedEvent(
+                    TimeUnit.MINUTES.toMillis(10),
+                    new int[]{siteId},
+                    new long[]{120},
+                    new long[]{300},
+                    new long[]{50},
+                    new double[]{-1},
+                    new int[]{0, 0, 9, 0, 0, 1},
+                    new long[]{110, 200, 290, 300},
+                    new long[]{-1, 1000, -1, 2000, 3000}
+            ));
+            snapshots.handleAlarmTriggeredEvent(new AlarmTriggeredEvent(siteId, uri, 62.345, 0));
+            byte[] document = snapshots.getStatistics("10m");
+
+            // Assert
+            String site = "{\"id\":0,\"uri\":\"http://test.fr\",\"name\":\"team \\\"b\\\"\",\"minLatency\":50,"
+                    + "\"maxLatency\":300,\"averageLatency\":120,"
+                    + "\"percentiles\":{\"p50\":110,\"p90\":200,\"p99\":290,\"p999\":300},\"availability\":null,"
+                    + "\"responseCodes\":{\"1xx\":0,\"2xx\":9,\"3xx\":0,\"4xx\":0,\"5xx\":1},"
+                    + "\"timings\":{\"dnsNanos\":null,\"connectNanos\":1000,\"tlsNanos\":null,\"firstByteNanos\":2000,\"bodyNanos\":3000}}";
+            assertEquals("{\"window\":\"10m\",\"sites\":[" + site + "]}", get(client, base + "/statistics/10m"));
+            assertSame(document, snapshots.getStatistics("10m"));
+            assertEquals(site, get(client, base + "/statistics/10m/" + siteId));
+            assertEquals("{\"alarms\":[{\"id\":0,\"uri\":\"http://test.fr\",\"name\":\"team \\\"b\\\"\",\"availability\":62.3}]}",
+                    get(client, base + "/alarms"));
+            assertEquals("404", get(client, base + "/statistics/1h"));
+
+            snapshots.handleStopMonitorEvent(new StopMonitorEvent(siteId, uri));
+            assertEquals("{\"window\":\"10m\",\"sites\":[]}", get(client, base + "/statistics/10m"));
+            assertEquals("{\"alarms\":[]}", get(client, base + "/alarms"));
+        }
+    }
+
+    /**
+     * @param client The HTTP client
+     * @param uri    The URI to request
+     * @return The body of the response, or its status code if it is not a success
+     */
+    private static String get(HttpClient client, String uri) throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(uri)).build(), HttpResponse.BodyHandlers.ofString());
+        return response.statusCode() == 200 ? response.body() : String.valueOf(response.statusCode());
+    }
+}
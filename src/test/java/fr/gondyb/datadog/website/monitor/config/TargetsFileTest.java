@@ -0,0 +1,55 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeMode;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TargetsFileTest {
+
+    @Test
+    public void it_should_read_the_interval_timeout_and_mode_of_every_website() throws IOException {
+        // Arrange
+        Path path = Files.createTempFile("targets", ".txt");
+        Files.write(path, List.of(
+                "# url interval timeout mode",
+                "https://www.datadoghq.com/ 1000 800 HEAD",
+                "",
+                "http://test.fr/big\t5000\t2000\tGET_CAPPED:65536+phases",
+                "http://test.fr/default 2000"
+        ));
+
+        // Act
+        List<TargetConfig> targets = TargetsFile.read(path);
+
+        // Assert
+        assertEquals(List.of(
+                new TargetConfig(URI.create("https://www.datadoghq.com/"), 1000, new ProbeSettings(ProbeMode.HEAD, Long.MAX_VALUE, false, 800)),
+                new TargetConfig(URI.create("http://test.fr/big"), 5000, new ProbeSettings(ProbeMode.GET_CAPPED, 65536, true, 2000)),
+                new TargetConfig(URI.create("http://test.fr/default"), 2000, new ProbeSettings(ProbeMode.GET_DISCARD, Long.MAX_VALUE, false, 0))
+        ), targets);
+
+        Files.delete(path);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void it_should_refuse_a_website_listed_twice() throws IOException {
+        // Arrange
+        Path path = Files.createTempFile("targets", ".txt");
+        path.toFile().deleteOnExit();
+        Files.write(path, List.of(
+                "http://test.fr 1000",
+                "http://test.fr 2000"
+        ));
+
+        // Act
+        TargetsFile.read(path);
+    }
+}
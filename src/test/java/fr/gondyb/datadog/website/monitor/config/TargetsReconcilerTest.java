@@ -0,0 +1,118 @@
+package fr.gondyb.datadog.website.monitor.config;
+
+import com.google.common.eventbus.EventBus;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.ui.event.ReconfigureMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeMode;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.net.URI;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class TargetsReconcilerTest {
+
+    @Test
+    public void it_should_only_affect_the_websites_that_changed() {
+        // Arrange
+        EventBus eventBus = Mockito.mock(EventBus.class);
+        SiteRegistry registry = new SiteRegistry(16);
+        TargetsReconciler reconciler = new TargetsReconciler(eventBus, registry, System.err);
+        TargetConfig kept = new TargetConfig(URI.create("http://kept.fr"), 1000, ProbeSettings.DEFAULT);
+        TargetConfig removed = new TargetConfig(URI.create("http://removed.fr"), 1000, ProbeSettings.DEFAULT);
+        TargetConfig changed = new TargetConfig(URI.create("http://changed.fr"), 1000, ProbeSettings.DEFAULT);
+        TargetConfig added = new TargetConfig(URI.create("http://added.fr"), 1000, ProbeSettings.DEFAULT);
+        reconciler.apply(List.of(kept, removed, changed));
+        int removedId = registry.idOf(removed.getUri());
+        Mockito.clearInvocations(eventBus);
+
+        // Act
+        TargetConfig reconfigured = new TargetConfig(changed.getUri(), 5000, new ProbeSettings(ProbeMode.HEAD, Long.MAX_VALUE, false, 2000));
+        TargetsDiff diff = reconciler.apply(List.of(kept, reconfigured, added));
+        TargetsDiff unchanged = reconciler.apply(List.of(kept, reconfigured, added));
+
+        // Assert
+        assertEquals(List.of(added), diff.getAdded());
+        assertEquals(List.of(removed), diff.getRemoved());
+        assertEquals(List.of(reconfigured), diff.getChanged());
+        assertTrue(unchanged.isEmpty());
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventBus, times(3)).post(events.capture());
+
+        StopMonitorEvent stop = (StopMonitorEvent) events.getAllValues().get(0);
+        assertEquals(removedId, stop.getSiteId());
+
+        ReconfigureMonitorEvent reconfigure = (ReconfigureMonitorEvent) events.getAllValues().get(1);
+        assertEquals(registry.idOf(changed.getUri()), reconfigure.getSiteId());
+        assertEquals(5000, reconfigure.getDelay());
+        assertEquals(2000, reconfigure.getProbeSettings().getTimeout());
+
+        StartMonitorEvent start = (StartMonitorEvent) events.getAllValues().get(2);
+        assertEquals(added.getUri(), start.getUri());
+    }
+
+    @Test
+    public void it_should_reconfigure_an_added_website_already_monitored() {
+        // Arrange
+        EventBus eventBus = Mockito.mock(EventBus.class);
+        SiteRegistry registry = new SiteRegistry(16);
+        TargetsReconciler reconciler = new TargetsReconciler(eventBus, registry, System.err);
+        URI uri = URI.create("http://test.fr");
+        // Added from the UI before it is added to the file
+        int siteId = registry.register(uri);
+        TargetConfig added = new TargetConfig(uri, 5000, ProbeSettings.DEFAULT);
+
+        // Act
+        TargetsDiff diff = reconciler.apply(List.of(added));
+
+        // Assert
+        assertTrue(diff.getAdded().isEmpty());
+        assertEquals(List.of(added), diff.getChanged());
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventBus, times(1)).post(events.capture());
+        ReconfigureMonitorEvent reconfigure = (ReconfigureMonitorEvent) events.getValue();
+        assertEquals(siteId, reconfigure.getSiteId());
+        assertEquals(5000, reconfigure.getDelay());
+    }
+
+    @Test
+    public void it_should_start_a_website_added_again_before_its_stop_was_handled() {
+        // Arrange
+        EventBus eventBus = Mockito.mock(EventBus.class);
+        SiteRegistry registry = new SiteRegistry(16);
+        TargetsReconciler reconciler = new TargetsReconciler(eventBus, registry, System.err);
+        TargetConfig target = new TargetConfig(URI.create("http://test.fr"), 1000, ProbeSettings.DEFAULT);
+        reconciler.apply(List.of(target));
+        int stoppedId = registry.idOf(target.getUri());
+        Mockito.clearInvocations(eventBus);
+
+        // Act
+        // The bus is a mock: the stop is never handled, thus the identifier never released
+        reconciler.apply(List.of());
+        TargetsDiff diff = reconciler.apply(List.of(target));
+
+        // Assert
+        assertEquals(List.of(target), diff.getAdded());
+        assertTrue(diff.getChanged().isEmpty());
+
+        ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+        verify(eventBus, times(2)).post(events.capture());
+        StopMonitorEvent stop = (StopMonitorEvent) events.getAllValues().get(0);
+        assertEquals(stoppedId, stop.getSiteId());
+        StartMonitorEvent start = (StartMonitorEvent) events.getAllValues().get(1);
+        assertNotEquals(stoppedId, start.getSiteId());
+        assertEquals(start.getSiteId(), registry.idOf(target.getUri()));
+    }
+}
@@ -0,0 +1,70 @@
+package fr.gondyb.datadog.website.monitor.headless;
+
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmStoppedEvent;
+import fr.gondyb.datadog.website.monitor.alarm.event.AlarmTriggeredEvent;
+import fr.gondyb.datadog.website.monitor.config.TargetConfig;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeSettings;
+import fr.gondyb.datadog.website.monitor.watchdog.WatchdogsManager;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class HeadlessMonitorTest {
+
+    @Test
+    public void it_should_print_the_name_of_the_website_of_an_alarm() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(4);
+        URI uri = URI.create("http://first.fr");
+        int namedId = registry.register(uri, "front");
+        int unnamedId = registry.register(uri, "");
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        HeadlessMonitor monitor = new HeadlessMonitor(
+                mock(WatchdogsManager.class),
+                new PrintStream(console, true, StandardCharsets.UTF_8),
+                registry
+        );
+
+        // Act
+        monitor.handleAlarmTriggeredEvent(new AlarmTriggeredEvent(namedId, uri, 42.5, 0));
+        monitor.handleAlarmStoppedEvent(new AlarmStoppedEvent(unnamedId, uri, 95, 0));
+
+        // Assert
+        String[] lines = console.toString(StandardCharsets.UTF_8).split(System.lineSeparator());
+        assertTrue(lines[0].startsWith("Website http://first.fr (front) is down.\tavailability: "));
+        assertTrue(lines[1].startsWith("Website http://first.fr is up.\tavailability: "));
+    }
+
+    @Test
+    public void it_should_wait_for_a_first_check_of_every_started_website() throws InterruptedException {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(4);
+        TargetConfig fast = new TargetConfig(URI.create("http://fast.fr"), 10, ProbeSettings.DEFAULT);
+        TargetConfig slow = new TargetConfig(URI.create("http://slow.fr"), 60000, ProbeSettings.DEFAULT);
+        int fastId = registry.register(fast.getUri());
+        int slowId = registry.register(slow.getUri());
+        WatchdogsManager watchdogs = mock(WatchdogsManager.class);
+        HeadlessMonitor monitor = new HeadlessMonitor(watchdogs, System.out, registry);
+        // The fast website was checked several times, the slow one not yet
+        when(watchdogs.isProbed(fastId)).thenReturn(true);
+
+        // Act
+        boolean beforeSlowCheck = monitor.awaitFirstRound(List.of(fast, slow), 50);
+        when(watchdogs.isProbed(slowId)).thenReturn(true);
+        boolean afterSlowCheck = monitor.awaitFirstRound(List.of(fast, slow), 50);
+
+        // Assert
+        assertFalse(beforeSlowCheck);
+        assertTrue(afterSlowCheck);
+    }
+}
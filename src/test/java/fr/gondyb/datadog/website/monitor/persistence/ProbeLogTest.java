@@ -0,0 +1,148 @@
+package fr.gondyb.datadog.website.monitor.persistence;
+
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProbeLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void it_should_rebuild_the_state_of_the_websites_after_a_restart() throws IOException {
+        // Arrange
+        Path directory = folder.getRoot().toPath();
+        long now = System.currentTimeMillis();
+        URI uri = URI.create("http://test.fr");
+        SiteRegistry registry = new SiteRegistry(16);
+        registry.register(URI.create("http://other.fr"));
+        int siteId = registry.register(uri, "team-b");
+
+        ProbeLog log = new ProbeLog(directory, TimeUnit.HOURS.toMillis(1), registry);
+        log.handleStartMonitorEvent(new StartMonitorEvent(siteId, uri, 1000));
+        // Too old to be replayed
+        log.handleWebsiteUpEvent(new WebsiteUpEvent(10, 200, siteId, uri, 0, ProbeTimings.UNKNOWN, now - TimeUnit.HOURS.toMillis(2)));
+        // Replayed in the statistics only
+        log.handleWebsiteUpEvent(new WebsiteUpEvent(10, 200, siteId, uri, 0, ProbeTimings.UNKNOWN, now - TimeUnit.MINUTES.toMillis(30)));
+        log.handleWebsiteUpEvent(new WebsiteUpEvent(20, 200, siteId, uri, 0, ProbeTimings.UNKNOWN, now - 3000));
+        log.handleWebsiteDownEvent(new WebsiteDownEvent(siteId, uri, now - 2000));
+        log.handleWebsiteUpEvent(new WebsiteUpEvent(30, 503, siteId, uri, 0, ProbeTimings.UNKNOWN, now - 1000));
+        log.close();
+
+        // Act
+        ProbeLog restarted = new ProbeLog(directory, TimeUnit.HOURS.toMillis(1), new SiteRegistry(16));
+        RecoveredState state = restarted.recover(now, TimeUnit.MINUTES.toMillis(2));
+        restarted.close();
+
+        // Assert
+        assertEquals(4, state.getRecordCount());
+        assertNull(state.takeStore(uri, ""));
+        assertNotNull(state.takeStore(uri, "team-b"));
+        assertArrayEquals(new boolean[]{true, false, true}, state.takeOutcomes(uri, "team-b"));
+        assertEquals(0, state.takeOutcomes(uri, "team-b").length);
+    }
+
+    @Test
+    public void it_should_replay_a_segment_up_to_a_torn_record() throws IOException {
+        // Arrange
+        Path directory = folder.getRoot().toPath();
+        long now = System.currentTimeMillis();
+        URI uri = URI.create("http://test.fr");
+        SiteRegistry registry = new SiteRegistry(16);
+        int siteId = registry.register(uri);
+
+        ProbeLog log = new ProbeLog(directory, TimeUnit.HOURS.toMillis(1), registry);
+        log.handleStartMonitorEvent(new StartMonitorEvent(siteId, uri, 1000));
+        for (int i = 0; i < 10; i++) {
+            log.handleWebsiteDownEvent(new WebsiteDownEvent(siteId, uri, now - 10_000 + i * 1000));
+        }
+        log.close();
+
+        // A crash in the middle of the last record: its last byte is not written
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.collect(Collectors.toList()).get(0);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            int recordEnd = 0;
+            while (recordEnd + 4 <= file.length()) {
+                file.seek(recordEnd);
+                int length = file.readInt();
+                if (length == 0) {
+                    break;
+                }
+                recordEnd += 8 + length;
+            }
+            file.seek(recordEnd - 1);
+            int lastByte = file.read();
+            file.seek(recordEnd - 1);
+            // Flipped rather than overwritten, which could write the same byte
+            file.write(~lastByte);
+        }
+
+        // Act
+        ProbeLog restarted = new ProbeLog(directory, TimeUnit.HOURS.toMillis(1), new SiteRegistry(16));
+        RecoveredState state = restarted.recover(now, TimeUnit.MINUTES.toMillis(2));
+        restarted.close();
+
+        // Assert
+        assertEquals(9, state.getRecordCount());
+    }
+
+    @Test
+    public void it_should_replay_a_compacted_segment_like_the_segment() throws IOException {
+        // Arrange
+        Path directory = folder.getRoot().toPath();
+        long now = System.currentTimeMillis();
+        URI uri = URI.create("http://test.fr");
+        SiteRegistry registry = new SiteRegistry(16);
+        int siteId = registry.register(uri);
+
+        ProbeLog log = new ProbeLog(directory, TimeUnit.HOURS.toMillis(1), registry);
+        log.handleStartMonitorEvent(new StartMonitorEvent(siteId, uri, 1000));
+        log.handleWebsiteUpEvent(new WebsiteUpEvent(20, 200, siteId, uri, 0, ProbeTimings.UNKNOWN, now - 3000));
+        log.handleWebsiteDownEvent(new WebsiteDownEvent(siteId, uri, now - 2000));
+        log.handleWebsiteUpEvent(new WebsiteUpEvent(30, 503, siteId, uri, 0, ProbeTimings.UNKNOWN, now - 1000));
+        log.close();
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.collect(Collectors.toList()).get(0);
+        }
+        Path compacted = CompactedSegment.compact(segment);
+
+        // Act: the segment is deleted once compacted
+        ProbeLog restarted = new ProbeLog(directory, TimeUnit.HOURS.toMillis(1), new SiteRegistry(16));
+        RecoveredState state = restarted.recover(now, TimeUnit.MINUTES.toMillis(2));
+        restarted.close();
+
+        // Assert
+        assertFalse(Files.exists(segment));
+        assertTrue(Files.exists(compacted));
+        assertEquals(3, state.getRecordCount());
+        assertNotNull(state.takeStore(uri, ""));
+        assertArrayEquals(new boolean[]{true, false, true}, state.takeOutcomes(uri, ""));
+    }
+}
@@ -0,0 +1,161 @@
+package fr.gondyb.datadog.website.monitor.pipeline;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PipelineEventBusTest {
+
+    @Test
+    public void it_should_dispatch_the_events_of_a_website_in_order() throws InterruptedException {
+        // Arrange
+        PipelineEventBus eventBus = new PipelineEventBus("test", 4, 16, 8);
+        URI uri = URI.create("http://test.fr");
+        int eventCount = 10_000;
+        CountDownLatch latch = new CountDownLatch(eventCount);
+        List<Long> responseTimes = new ArrayList<>();
+
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleWebsiteUp(WebsiteUpEvent event) {
+                responseTimes.add(event.getResponseTime());
+                latch.countDown();
+            }
+        });
+
+        // Act
+        for (long i = 0; i < eventCount; i++) {
+            eventBus.post(new WebsiteUpEvent(i, 200, 0, uri));
+        }
+
+        // Assert
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < eventCount; i++) {
+            assertEquals(i, (long) responseTimes.get(i));
+        }
+
+        long published = eventBus.getStageStatistics().stream().mapToLong(StageStatistics::getPublishedEvents).sum();
+        assertEquals(eventCount, published);
+
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void it_should_run_the_tasks_of_a_shard_on_the_thread_dispatching_its_websites() throws InterruptedException {
+        // Arrange
+        PipelineEventBus eventBus = new PipelineEventBus("test", 4, 16, 8);
+        URI uri = URI.create("http://test.fr");
+        int siteId = 6;
+        CountDownLatch latch = new CountDownLatch(2);
+        Thread[] threads = new Thread[2];
+
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleWebsiteUp(WebsiteUpEvent event) {
+                threads[0] = Thread.currentThread();
+                latch.countDown();
+            }
+        });
+
+        // Act
+        eventBus.post(new WebsiteUpEvent(100, 200, siteId, uri));
+        eventBus.execute(eventBus.shardOf(siteId), () -> {
+            threads[1] = Thread.currentThread();
+            latch.countDown();
+        });
+
+        // Assert
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(2, eventBus.shardOf(siteId));
+        assertSame(threads[0], threads[1]);
+
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void it_should_dispatch_on_its_own_partition_an_event_posted_by_another_full_consumer() throws InterruptedException {
+        // Arrange
+        PipelineEventBus eventBus = new PipelineEventBus("test", 2, 2, 1);
+        URI uri = URI.create("http://test.fr");
+        int eventCount = 100;
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        CountDownLatch dispatched = new CountDownLatch(eventCount);
+        List<Long> responseTimes = Collections.synchronizedList(new ArrayList<>());
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        eventBus.register(new Object() {
+            @Subscribe
+            @AllowConcurrentEvents
+            public void handleWebsiteUp(WebsiteUpEvent event) throws InterruptedException {
+                if (event.getSiteId() == 1) {
+                    // On the partition 1, fills the partition 0 while it is blocked
+                    eventBus.post(new WebsiteUpEvent(0, 200, 0, uri));
+                    blocked.await();
+                    for (long i = 1; i < eventCount; i++) {
+                        eventBus.post(new WebsiteUpEvent(i, 200, 0, uri));
+                    }
+                    released.countDown();
+                    return;
+                }
+                if (event.getResponseTime() == 0) {
+                    blocked.countDown();
+                    released.await();
+                }
+                threads.add(Thread.currentThread());
+                responseTimes.add(event.getResponseTime());
+                dispatched.countDown();
+            }
+        });
+
+        // Act
+        eventBus.post(new WebsiteUpEvent(0, 200, 1, uri));
+
+        // Assert
+        assertTrue(dispatched.await(10, TimeUnit.SECONDS));
+        assertEquals(1, threads.size());
+        assertTrue(threads.iterator().next().getName().endsWith("-partition-0"));
+        for (int i = 0; i < eventCount; i++) {
+            assertEquals(i, (long) responseTimes.get(i));
+        }
+        assertTrue(eventBus.getStageStatistics().get(0).getOverflowedEvents() > 0);
+
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void it_should_refuse_elements_when_the_ring_buffer_is_full() {
+        // Arrange
+        RingBuffer<Integer> ringBuffer = new RingBuffer<>(4);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ringBuffer.offer(i));
+        }
+        boolean acceptedWhenFull = ringBuffer.offer(4);
+        List<Integer> consumed = new ArrayList<>();
+        int drained = ringBuffer.drain(consumed::add, 3);
+
+        // Assert
+        assertFalse(acceptedWhenFull);
+        assertEquals(3, drained);
+        assertEquals(List.of(0, 1, 2), consumed);
+        assertTrue(ringBuffer.offer(4));
+        assertEquals(2, ringBuffer.size());
+    }
+}
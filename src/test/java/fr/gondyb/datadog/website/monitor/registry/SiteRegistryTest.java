@@ -0,0 +1,108 @@
+package fr.gondyb.datadog.website.monitor.registry;
+
+import com.google.common.eventbus.Subscribe;
+import fr.gondyb.datadog.website.monitor.pipeline.PipelineEventBus;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SiteRegistryTest {
+
+    @Test
+    public void it_should_assign_dense_identifiers_once_per_website() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(4);
+        URI first = URI.create("http://first.fr");
+        URI second = URI.create("http://second.fr");
+
+        // Act
+        int firstId = registry.register(first);
+        int secondId = registry.register(second);
+        int firstIdAgain = registry.register(first);
+
+        // Assert
+        assertEquals(0, firstId);
+        assertEquals(1, secondId);
+        assertEquals(firstId, firstIdAgain);
+        assertEquals(second, registry.uriOf(secondId));
+        assertEquals(2, registry.idLimit());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void it_should_refuse_websites_when_full() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(1);
+        registry.register(URI.create("http://first.fr"));
+
+        // Act
+        registry.register(URI.create("http://second.fr"));
+    }
+
+    @Test
+    public void it_should_release_an_identifier_once_every_subscriber_handled_the_stop() throws InterruptedException {
+        // Arrange
+        PipelineEventBus eventBus = new PipelineEventBus("test", 2, 16, 8);
+        SiteRegistry registry = new SiteRegistry(4, eventBus);
+        URI uri = URI.create("http://test.fr");
+        int siteId = registry.register(uri);
+        URI[] seenUri = new URI[1];
+        CountDownLatch handled = new CountDownLatch(1);
+        // Registered after the registry, thus notified after it
+        eventBus.register(registry);
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleStopMonitorEvent(StopMonitorEvent event) {
+                seenUri[0] = registry.uriOf(event.getSiteId());
+                handled.countDown();
+            }
+        });
+
+        // Act
+        eventBus.post(new StopMonitorEvent(siteId, uri));
+
+        // Assert
+        assertTrue(handled.await(10, TimeUnit.SECONDS));
+        assertEquals(uri, seenUri[0]);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (registry.uriOf(siteId) != null && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(-1, registry.idOf(uri));
+
+        eventBus.shutdown();
+    }
+
+    @Test
+    public void it_should_register_a_retired_website_again_under_a_new_identifier() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(4);
+        URI uri = URI.create("http://first.fr");
+        int retiredId = registry.register(uri);
+
+        // Act
+        boolean retired = registry.retire(retiredId, uri);
+        boolean retiredTwice = registry.retire(retiredId, uri);
+        int idBeforeRelease = registry.idOf(uri);
+        int newId = registry.register(uri);
+        boolean released = registry.release(retiredId, uri);
+
+        // Assert
+        assertTrue(retired);
+        assertFalse(retiredTwice);
+        assertEquals(-1, idBeforeRelease);
+        assertNotEquals(retiredId, newId);
+        assertTrue(released);
+        assertEquals(newId, registry.idOf(uri));
+        assertEquals(uri, registry.uriOf(newId));
+        assertNull(registry.uriOf(retiredId));
+    }
+}
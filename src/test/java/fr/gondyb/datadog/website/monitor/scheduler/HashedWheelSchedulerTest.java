@@ -0,0 +1,57 @@
+package fr.gondyb.datadog.website.monitor.scheduler;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelSchedulerTest {
+
+    @Test
+    public void it_should_run_50000_periodic_tasks_on_two_workers() throws InterruptedException {
+        // Arrange
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 512, 2);
+        int taskCount = 50_000;
+        CountDownLatch latch = new CountDownLatch(taskCount * 2);
+
+        // Act
+        for (int i = 0; i < taskCount; i++) {
+            scheduler.scheduleAtFixedRate(latch::countDown, i % 100, 100);
+        }
+
+        // Assert
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(taskCount, scheduler.getActiveTasks());
+        assertTrue(scheduler.getExecutedTasks() >= taskCount * 2);
+        assertTrue(scheduler.getMaxLagNanos() >= scheduler.getAverageLagNanos());
+
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void it_should_not_run_a_cancelled_task() throws InterruptedException {
+        // Arrange
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(10, TimeUnit.MILLISECONDS, 64, 1);
+        AtomicInteger runs = new AtomicInteger();
+
+        ScheduledTask task = scheduler.scheduleAtFixedRate(runs::incrementAndGet, 0, 20);
+        Thread.sleep(100);
+
+        // Act
+        task.cancel();
+        Thread.sleep(50);
+        int runsAfterCancel = runs.get();
+        Thread.sleep(100);
+
+        // Assert
+        assertTrue(runsAfterCancel > 0);
+        assertEquals(runsAfterCancel, runs.get());
+        assertEquals(0, scheduler.getActiveTasks());
+
+        scheduler.shutdown();
+    }
+}
@@ -0,0 +1,58 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencySketchTest {
+
+    @Test
+    public void it_should_compute_quantiles_within_the_relative_accuracy() {
+        // Arrange
+        LatencySketch sketch = new LatencySketch();
+        Random random = new Random(42);
+        long[] latencies = new long[100_000];
+
+        // Act: a log-normal distribution, with a long tail
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = 1 + (long) Math.exp(5 + random.nextGaussian());
+            sketch.add(latencies[i]);
+        }
+
+        // Assert
+        Arrays.sort(latencies);
+        for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long expected = latencies[(int) (quantile * (latencies.length - 1))];
+            long actual = sketch.quantile(quantile);
+            assertTrue(quantile + ": " + actual + " instead of " + expected,
+                    Math.abs(actual - expected) <= expected * LatencySketch.RELATIVE_ACCURACY + 1);
+        }
+    }
+
+    @Test
+    public void it_should_merge_sketches_like_a_single_one() {
+        // Arrange
+        LatencySketch whole = new LatencySketch();
+        LatencySketch first = new LatencySketch();
+        LatencySketch second = new LatencySketch();
+        Random random = new Random(7);
+
+        // Act
+        for (int i = 0; i < 10_000; i++) {
+            long latency = random.nextInt(5_000);
+            whole.add(latency);
+            (i % 3 == 0 ? first : second).add(latency);
+        }
+        first.merge(second);
+
+        // Assert
+        assertEquals(whole.count(), first.count());
+        for (double quantile : new double[]{0, 0.5, 0.9, 0.99, 0.999, 1}) {
+            assertEquals(whole.quantile(quantile), first.quantile(quantile));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SampleEncoderTest {
+
+    @Test
+    public void it_should_decode_the_checks_it_encoded() {
+        // Arrange
+        SampleEncoder encoder = new SampleEncoder();
+        Random random = new Random(42);
+        int count = 10_000;
+        long[] timestamps = new long[count];
+        long[] latencies = new long[count];
+        int[] responseCodes = new int[count];
+        long timestamp = 1_600_000_000_000L;
+
+        // Act: a check every second with a few milliseconds of jitter, sometimes down, sometimes late
+        for (int i = 0; i < count; i++) {
+            timestamp += 1000 + random.nextInt(5) - 2 + (i % 1000 == 0 ? 70_000 : 0);
+            timestamps[i] = timestamp;
+            latencies[i] = 100 + random.nextInt(20);
+            responseCodes[i] = i % 500 == 0 ? -1 : i % 100 == 0 ? 503 : i % 250 == 0 ? 301 : 200;
+            if (responseCodes[i] == -1) {
+                encoder.appendDown(timestamp);
+            } else {
+                encoder.appendUp(timestamp, latencies[i], responseCodes[i]);
+            }
+        }
+        SampleDecoder decoder = new SampleDecoder(encoder.toByteArray(), encoder.getCount());
+
+        // Assert
+        for (int i = 0; i < count; i++) {
+            assertTrue(decoder.next());
+            assertEquals(timestamps[i], decoder.getTimestamp());
+            assertEquals(responseCodes[i] != -1, decoder.isUp());
+            assertEquals(responseCodes[i], decoder.getResponseCode());
+            if (decoder.isUp()) {
+                assertEquals(latencies[i], decoder.getLatency());
+            }
+        }
+        assertFalse(decoder.next());
+        assertTrue(encoder.getByteLength() + " bytes", encoder.getByteLength() < 3 * count);
+    }
+}
@@ -0,0 +1,161 @@
+package fr.gondyb.datadog.website.monitor.statistics;
+
+import com.google.common.eventbus.EventBus;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.statistics.event.StatisticsUpdatedEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.ProbeTimings;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StatisticsAggregatorTest {
+
+    @Test
+    public void it_should_only_publish_the_changed_websites_of_the_window() {
+        // Arrange
+        EventBus eventBus = Mockito.mock(EventBus.class);
+        HashedWheelScheduler scheduler = Mockito.mock(HashedWheelScheduler.class);
+        SiteRegistry registry = new SiteRegistry(16);
+        URI changedSite = URI.create("http://changed.fr");
+        URI quietSite = URI.create("http://quiet.fr");
+        int changedSiteId = registry.register(changedSite);
+        int quietSiteId = registry.register(quietSite);
+        long now = System.currentTimeMillis();
+
+        StatisticsManager manager = new StatisticsManager(eventBus, ShardedExecutor.inline(), scheduler, registry);
+        ArgumentCaptor<Runnable> tenMinutesTick = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleAtFixedRate(tenMinutesTick.capture(), anyLong(), eq(TimeUnit.SECONDS.toMillis(10)));
+
+        manager.handleStartMonitor(new StartMonitorEvent(changedSiteId, changedSite, 1000));
+        manager.handleStartMonitor(new StartMonitorEvent(quietSiteId, quietSite, 1000));
+        for (int i = 0; i < 10; i++) {
+            long timestamp = now - TimeUnit.MINUTES.toMillis(30) + i * 1000;
+            manager.handleWebsiteUpEvent(new WebsiteUpEvent(1000 + i, 500, changedSiteId, changedSite, 0, ProbeTimings.UNKNOWN, timestamp));
+        }
+        for (int i = 0; i < 10; i++) {
+            long timestamp = now - TimeUnit.MINUTES.toMillis(2) + i * 1000;
+            manager.handleWebsiteUpEvent(new WebsiteUpEvent(100 + i, 200, changedSiteId, changedSite, 0, ProbeTimings.UNKNOWN, timestamp));
+        }
+        tenMinutesTick.getValue().run();
+
+        // Act
+        manager.handleWebsiteUpEvent(new WebsiteUpEvent(105, 200, changedSiteId, changedSite, 0, ProbeTimings.UNKNOWN, now));
+        tenMinutesTick.getValue().run();
+
+        // Assert
+        ArgumentCaptor<StatisticsUpdatedEvent> events = ArgumentCaptor.forClass(StatisticsUpdatedEvent.class);
+        verify(eventBus, times(2)).post(events.capture());
+
+        assertEquals(2, events.getAllValues().get(0).getSiteCount());
+
+        StatisticsUpdatedEvent event = events.getAllValues().get(1);
+        assertEquals(1, event.getSiteCount());
+        assertEquals(changedSiteId, event.getSiteIds()[0]);
+        assertEquals(100, event.getMinLatencies()[0]);
+        assertEquals(109, event.getMaxLatencies()[0]);
+        assertEquals(104, event.getAverageLatencies()[0]);
+        assertEquals(11, event.getResponseCodeHits(0, 2));
+        assertEquals(0, event.getResponseCodeHits(0, 5));
+    }
+
+    @Test
+    public void it_should_use_the_same_memory_whatever_the_polling_rate() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(16);
+        StatisticsManager manager = new StatisticsManager(Mockito.mock(EventBus.class), ShardedExecutor.inline(), Mockito.mock(HashedWheelScheduler.class), registry);
+        URI fastSite = URI.create("http://fast.fr");
+        URI slowSite = URI.create("http://slow.fr");
+        int fastSiteId = registry.register(fastSite);
+        int slowSiteId = registry.register(slowSite);
+
+        // Act
+        manager.handleStartMonitor(new StartMonitorEvent(fastSiteId, fastSite, 100));
+        manager.handleStartMonitor(new StartMonitorEvent(slowSiteId, slowSite, 1000));
+        for (int i = 0; i < 36_000; i++) {
+            manager.handleWebsiteUpEvent(new WebsiteUpEvent(120, 200, fastSiteId, fastSite, 0, ProbeTimings.UNKNOWN, i * 100L));
+        }
+        for (int i = 0; i < 3_600; i++) {
+            manager.handleWebsiteUpEvent(new WebsiteUpEvent(120, 200, slowSiteId, slowSite, 0, ProbeTimings.UNKNOWN, i * 1000L));
+        }
+
+        // Assert
+        long fastFootprint = manager.getFootprintReport().get(fastSiteId);
+        assertEquals(manager.getFootprintReport().get(slowSiteId).longValue(), fastFootprint);
+    }
+
+    @Test
+    public void it_should_report_the_footprint_of_every_monitor_of_a_same_uri() {
+        // Arrange
+        SiteRegistry registry = new SiteRegistry(16);
+        StatisticsManager manager = new StatisticsManager(Mockito.mock(EventBus.class), ShardedExecutor.inline(), Mockito.mock(HashedWheelScheduler.class), registry);
+        URI uri = URI.create("http://test.fr");
+        int frontId = registry.register(uri, "front");
+        int backId = registry.register(uri, "back");
+
+        // Act
+        manager.handleStartMonitor(new StartMonitorEvent(frontId, uri, 100));
+        manager.handleStartMonitor(new StartMonitorEvent(backId, uri, 1000));
+        Map<Integer, Long> report = manager.getFootprintReport();
+
+        // Assert
+        assertEquals(2, report.size());
+        assertTrue(report.get(frontId) > 0);
+        assertTrue(report.get(backId) > 0);
+    }
+
+    @Test
+    public void it_should_publish_a_quiet_website_again_once_its_window_slid_away_from_its_checks() {
+        // Arrange
+        EventBus eventBus = Mockito.mock(EventBus.class);
+        SiteRegistry registry = new SiteRegistry(16);
+        URI uri = URI.create("http://slow.fr");
+        int siteId = registry.register(uri);
+        RollupStore[] stores = new RollupStore[registry.capacity()];
+        stores[siteId] = new RollupStore(TimeUnit.MINUTES.toMillis(5));
+        StatisticsAggregator aggregator = new StatisticsAggregator(
+                TimeUnit.MINUTES.toMillis(10),
+                TimeUnit.SECONDS.toMillis(10),
+                stores,
+                new double[registry.capacity()],
+                registry,
+                eventBus,
+                ShardedExecutor.inline(),
+                Mockito.mock(HashedWheelScheduler.class)
+        );
+        long now = TimeUnit.DAYS.toMillis(20_000) + TimeUnit.SECONDS.toMillis(10);
+        // Checked every 5 minutes: the check leaves the 10 minutes window during the next minute
+        stores[siteId].addUp(now - TimeUnit.SECONDS.toMillis(510), 120, 200, ProbeTimings.UNKNOWN);
+        aggregator.markChanged(siteId);
+
+        // Act
+        aggregator.pushStatistics(now);
+        aggregator.pushStatistics(now + TimeUnit.SECONDS.toMillis(10));
+        aggregator.pushStatistics(now + TimeUnit.SECONDS.toMillis(60));
+        aggregator.pushStatistics(now + TimeUnit.SECONDS.toMillis(120));
+
+        // Assert
+        ArgumentCaptor<StatisticsUpdatedEvent> events = ArgumentCaptor.forClass(StatisticsUpdatedEvent.class);
+        verify(eventBus, times(2)).post(events.capture());
+        assertEquals(1, events.getAllValues().get(0).getResponseCodeHits(0, 2));
+        assertEquals(siteId, events.getAllValues().get(1).getSiteIds()[0]);
+        assertEquals(0, events.getAllValues().get(1).getResponseCodeHits(0, 2));
+    }
+}
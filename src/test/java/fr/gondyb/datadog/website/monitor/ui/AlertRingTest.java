@@ -0,0 +1,37 @@
+package fr.gondyb.datadog.website.monitor.ui;
+
+import com.googlecode.lanterna.gui2.table.Table;
+import org.junit.Test;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlertRingTest {
+
+    @Test
+    public void it_should_keep_the_latest_alerts_and_format_them_once() {
+        // Arrange
+        Table<String> table = new Table<>("");
+        AlertRing ring = new AlertRing(table, 5);
+        ring.setPageSize(2);
+        URI uri = URI.create("http://test.fr");
+
+        // Act: a flapping website, only the 5 latest alerts are kept
+        for (int i = 0; i < 100; i++) {
+            ring.append(i * 1000L, uri, i % 2 == 0 ? "" : "team-b", i, i % 2 == 0);
+        }
+        int firstFrame = ring.applyChanges();
+        ring.append(100_000, uri, "", 100, true);
+        int secondFrame = ring.applyChanges();
+        ring.scroll(10);
+        ring.applyChanges();
+
+        // Assert
+        assertEquals(2, firstFrame);
+        assertEquals(1, secondFrame);
+        assertEquals(2, table.getTableModel().getRowCount());
+        assertTrue(table.getTableModel().getCell(0, 0).startsWith("Website http://test.fr (team-b) is up.\t\tavailability: 97.0%"));
+    }
+}
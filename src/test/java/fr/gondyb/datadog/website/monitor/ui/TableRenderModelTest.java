@@ -0,0 +1,47 @@
+package fr.gondyb.datadog.website.monitor.ui;
+
+import com.googlecode.lanterna.gui2.table.Table;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TableRenderModelTest {
+
+    @Test
+    public void it_should_display_a_page_of_the_worst_websites() {
+        // Arrange
+        Table<String> table = new Table<>("URL", "Availability (%)");
+        TableRenderModel model = new TableRenderModel(table, 16);
+        model.setPageSize(2);
+        model.update(0, new String[]{"http://zero.fr", "100.0"}, 100, 100, 0);
+        model.update(1, new String[]{"http://one.fr", "50.0"}, 50, 900, 0.5);
+        model.update(2, new String[]{"http://two.fr", ""}, -1, -1, -1);
+        model.update(3, new String[]{"http://three.fr", "75.0"}, 75, 300, 0.1);
+        model.applyChanges();
+
+        // Act
+        model.update(1, new String[]{"http://one.fr", "60.0"}, 60, 900, 0.5);
+        model.update(1, new String[]{"http://one.fr", "99.0"}, 99, 900, 0.5);
+        model.movePage(1);
+        int updated = model.applyChanges();
+
+        // Assert: the website without availability is ranked last
+        assertEquals(4, updated);
+        assertEquals(List.of(
+                List.of("http://zero.fr", "100.0"),
+                List.of("http://two.fr", "")
+        ), table.getTableModel().getRows());
+        assertEquals(2, model.getPageCount());
+        assertEquals(0, model.applyChanges());
+
+        model.setSortKey(SiteRanking.SortKey.P99);
+        model.remove(3);
+        model.applyChanges();
+        assertEquals(List.of(
+                List.of("http://one.fr", "99.0"),
+                List.of("http://zero.fr", "100.0")
+        ), table.getTableModel().getRows());
+    }
+}
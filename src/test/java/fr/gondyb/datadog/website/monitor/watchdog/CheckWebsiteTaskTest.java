@@ -0,0 +1,91 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CheckWebsiteTaskTest {
+
+    @Test
+    public void it_should_drop_the_outcome_of_a_monitor_that_left_before_its_shard_delivered_it() throws Exception {
+        // Arrange
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+
+        // The shards hold the deliveries, run by the test as a shard thread would
+        BlockingQueue<Runnable> deliveries = new LinkedBlockingQueue<>();
+        ShardedExecutor shards = new ShardedExecutor() {
+            @Override
+            public int getShardCount() {
+                return 2;
+            }
+
+            @Override
+            public void execute(int shard, Runnable task) {
+                deliveries.add(task);
+            }
+        };
+        EventBus eventBus = Mockito.mock(EventBus.class);
+        ProbeHttpClient client = new ProbeHttpClient(
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).build()),
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).build()),
+                6,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(1)
+        );
+        ProbeSubscriber staying = new ProbeSubscriber(0, 100, 0);
+        ProbeSubscriber leaving = new ProbeSubscriber(1, 100, 0);
+        CheckWebsiteTask task = new CheckWebsiteTask(
+                () -> new ProbeSubscriber[]{staying, leaving},
+                uri,
+                TimeUnit.SECONDS.toMillis(5),
+                ProbeSettings.DEFAULT,
+                eventBus,
+                shards,
+                client
+        );
+
+        try {
+            // Act
+            task.run();
+            Runnable first = deliveries.poll(5, TimeUnit.SECONDS);
+            Runnable second = deliveries.poll(5, TimeUnit.SECONDS);
+            // The monitor leaves on its shard, after the check completed and before its outcome is delivered
+            leaving.active = false;
+            assertNotNull(first);
+            assertNotNull(second);
+            first.run();
+            second.run();
+
+            // Assert
+            ArgumentCaptor<Object> events = ArgumentCaptor.forClass(Object.class);
+            verify(eventBus, times(1)).post(events.capture());
+            assertEquals(staying.siteId, ((WebsiteUpEvent) events.getValue()).getSiteId());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OriginGateTest {
+
+    @Test
+    public void it_should_drop_the_waiting_requests_once_their_result_is_completed() {
+        // Arrange
+        OriginGate gate = new OriginGate(1, TimeUnit.SECONDS.toNanos(1), 2);
+        AtomicInteger started = new AtomicInteger();
+        gate.acquire(started::incrementAndGet, new CompletableFuture<>());
+        CompletableFuture<Object> timedOut = new CompletableFuture<>();
+        CompletableFuture<Object> cancelled = new CompletableFuture<>();
+        CompletableFuture<Object> waiting = new CompletableFuture<>();
+        CompletableFuture<Object> rejected = new CompletableFuture<>();
+
+        // Act
+        gate.acquire(started::incrementAndGet, timedOut);
+        gate.acquire(started::incrementAndGet, cancelled);
+        timedOut.completeExceptionally(new TimeoutException());
+        cancelled.cancel(true);
+        gate.acquire(started::incrementAndGet, waiting);
+        gate.acquire(started::incrementAndGet, new CompletableFuture<>());
+        gate.acquire(started::incrementAndGet, rejected);
+
+        // Assert
+        assertEquals(2, gate.getWaitingCount());
+        assertTrue(rejected.isCompletedExceptionally());
+        try {
+            rejected.join();
+        } catch (CompletionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+
+        gate.release(false, false);
+        assertEquals(2, started.get());
+        assertEquals(1, gate.getWaitingCount());
+        assertFalse(gate.isIdle());
+    }
+}
@@ -0,0 +1,86 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PhaseTimedProbeTest {
+
+    @Test
+    public void it_should_count_only_the_data_of_a_chunked_body() throws IOException {
+        // Arrange
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            // A length of 0 makes the server send a chunked body
+            exchange.sendResponseHeaders(503, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write("hello".getBytes(StandardCharsets.US_ASCII));
+                body.flush();
+                body.write(" world".getBytes(StandardCharsets.US_ASCII));
+            }
+        });
+        server.start();
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        PhaseTimedProbe probe = new PhaseTimedProbe(uri, ProbeSettings.DEFAULT, TimeUnit.SECONDS.toMillis(5));
+
+        try {
+            // Act
+            ProbeResult result = probe.probe(new CompletableFuture<>());
+
+            // Assert
+            assertEquals(503, result.statusCode);
+            assertEquals(11, result.bytesTransferred);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void it_should_close_the_connection_as_soon_as_the_check_times_out() throws IOException {
+        // Arrange
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread acceptor = new Thread(() -> {
+                // Accepts the connection, and never responds
+                try (Socket ignored = server.accept()) {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+                } catch (IOException | InterruptedException ignored) {
+                    // The test is over
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+            URI uri = URI.create("http://127.0.0.1:" + server.getLocalPort() + "/");
+            PhaseTimedProbe probe = new PhaseTimedProbe(uri, ProbeSettings.DEFAULT, TimeUnit.SECONDS.toMillis(30));
+            CompletableFuture<ProbeResult> check = new CompletableFuture<>();
+            check.orTimeout(100, TimeUnit.MILLISECONDS);
+            long startNanos = System.nanoTime();
+
+            // Act
+            try {
+                probe.probe(check);
+                fail("The probe should fail once the check timed out");
+            } catch (UncheckedIOException e) {
+                // Assert
+                assertTrue(check.isCompletedExceptionally());
+                assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(5));
+            } finally {
+                acceptor.interrupt();
+            }
+        }
+    }
+}
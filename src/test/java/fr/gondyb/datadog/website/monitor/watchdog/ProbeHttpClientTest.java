@@ -0,0 +1,81 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ProbeHttpClientTest {
+
+    @Test
+    public void it_should_free_the_slot_of_a_hung_request_when_its_check_times_out() throws Exception {
+        // Arrange
+        CountDownLatch hung = new CountDownLatch(1);
+        ExecutorService handlers = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).build());
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(handlers);
+        server.createContext("/hung", exchange -> {
+            try {
+                hung.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        ProbeHttpClient client = new ProbeHttpClient(
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).build()),
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).build()),
+                1,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(1)
+        );
+
+        try {
+            // Act
+            CompletableFuture<HttpResponse<Void>> hungCheck = client.sendAsync(
+                    HttpRequest.newBuilder(URI.create(base + "/hung")).build(),
+                    HttpResponse.BodyHandlers.discarding()
+            ).orTimeout(100, TimeUnit.MILLISECONDS);
+            CompletableFuture<HttpResponse<Void>> nextCheck = client.sendAsync(
+                    HttpRequest.newBuilder(URI.create(base + "/")).build(),
+                    HttpResponse.BodyHandlers.discarding()
+            );
+
+            // Assert
+            try {
+                hungCheck.get(5, TimeUnit.SECONDS);
+                fail("The hung check should time out");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            assertEquals(200, nextCheck.get(5, TimeUnit.SECONDS).statusCode());
+            assertEquals(1, client.getQueuedRequests());
+        } finally {
+            hung.countDown();
+            server.stop(0);
+            handlers.shutdownNow();
+        }
+    }
+}
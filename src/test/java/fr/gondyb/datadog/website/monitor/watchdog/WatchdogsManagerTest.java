@@ -0,0 +1,98 @@
+package fr.gondyb.datadog.website.monitor.watchdog;
+
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpServer;
+import fr.gondyb.datadog.website.monitor.pipeline.ShardedExecutor;
+import fr.gondyb.datadog.website.monitor.registry.SiteRegistry;
+import fr.gondyb.datadog.website.monitor.scheduler.HashedWheelScheduler;
+import fr.gondyb.datadog.website.monitor.ui.event.StartMonitorEvent;
+import fr.gondyb.datadog.website.monitor.ui.event.StopMonitorEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteDownEvent;
+import fr.gondyb.datadog.website.monitor.watchdog.event.WebsiteUpEvent;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WatchdogsManagerTest {
+
+    @Test
+    public void it_should_share_one_probe_stream_between_the_monitors_of_a_same_uri() throws IOException, InterruptedException {
+        // Arrange
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+
+        EventBus eventBus = new EventBus("test");
+        SiteRegistry registry = new SiteRegistry(16);
+        HashedWheelScheduler scheduler = new HashedWheelScheduler(1, TimeUnit.MILLISECONDS, 64, 1);
+        ProbeHttpClient client = new ProbeHttpClient(
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).build()),
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).build()),
+                6,
+                Duration.ofSeconds(1),
+                Duration.ofSeconds(1)
+        );
+        WatchdogsManager manager = new WatchdogsManager(eventBus, ShardedExecutor.inline(), scheduler, client, registry);
+        eventBus.register(manager);
+        AtomicIntegerArray outcomes = new AtomicIntegerArray(16);
+        eventBus.register(new Object() {
+            @Subscribe
+            public void handleWebsiteUpEvent(WebsiteUpEvent event) {
+                outcomes.incrementAndGet(event.getSiteId());
+            }
+
+            @Subscribe
+            public void handleWebsiteDownEvent(WebsiteDownEvent event) {
+                // The first checks may time out while the client warms up
+                outcomes.incrementAndGet(event.getSiteId());
+            }
+        });
+
+        int fast = registry.register(uri, "fast");
+        int slow = registry.register(uri, "slow");
+
+        // Act
+        eventBus.post(new StartMonitorEvent(fast, uri, 100));
+        eventBus.post(new StartMonitorEvent(slow, uri, 200));
+        int sharedStreams = manager.getStreamCount();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (outcomes.get(fast) < 10 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        boolean probed = manager.isProbed(fast) && manager.isProbed(slow);
+        eventBus.post(new StopMonitorEvent(fast, uri));
+        eventBus.post(new StopMonitorEvent(slow, uri));
+        int streams = manager.getStreamCount();
+
+        // Assert
+        assertEquals(1, sharedStreams);
+        assertEquals(0, streams);
+        assertTrue(probed);
+        assertFalse(manager.isProbed(fast));
+        // One check per outcome of the fast monitor, and at most one more in flight
+        assertTrue("The website was checked " + requests.get() + " times", requests.get() <= outcomes.get(fast) + 1);
+        assertTrue("The slow monitor received " + outcomes.get(slow) + " outcomes", outcomes.get(slow) >= 4 && outcomes.get(slow) <= 6);
+
+        scheduler.shutdown();
+        server.stop(0);
+    }
+}